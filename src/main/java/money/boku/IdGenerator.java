@@ -0,0 +1,19 @@
+package money.boku;
+
+import java.util.UUID;
+
+/**
+ * Generates ids for entities created by the service, e.g. accounts and withdrawal requests.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+    IdGenerator RANDOM = UUID::randomUUID;
+
+    /**
+     * Returns new id. Ids are expected to be unique with overwhelming probability, but callers still have to check
+     * for collisions.
+     *
+     * @return new id
+     */
+    UUID nextId();
+}
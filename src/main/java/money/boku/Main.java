@@ -3,49 +3,174 @@ package money.boku;
 import io.javalin.Javalin;
 import io.javalin.http.HttpStatus;
 import money.boku.account.*;
+import money.boku.audit.AuditAPI;
+import money.boku.audit.MoneyAuditor;
+import money.boku.cluster.*;
+import money.boku.diagnostics.AdminAPI;
+import money.boku.diagnostics.RecordingAPI;
+import money.boku.diagnostics.RecordingManager;
+import money.boku.diagnostics.RecordingNotFoundException;
+import money.boku.diagnostics.TooManyRecordingsException;
+import money.boku.history.HistoryAPI;
+import money.boku.history.SegmentedTransactionHistory;
+import money.boku.history.TransactionHistory;
 import money.boku.operations.*;
+import money.boku.operations.fx.ExchangeRateAPI;
+import money.boku.operations.fx.ExchangeRateCache;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import money.boku.operations.hold.HoldAPI;
+import money.boku.operations.hold.HoldNotFoundException;
+import money.boku.operations.hold.InternalHoldException;
+import money.boku.operations.hold.HoldRequest;
+import money.boku.operations.hold.HoldService;
+import money.boku.operations.limits.VelocityLimitExceededException;
+import money.boku.operations.limits.VelocityLimiter;
+import money.boku.operations.scheduled.FileScheduledTransferStore;
+import money.boku.operations.scheduled.ScheduledTransfer;
+import money.boku.operations.scheduled.ScheduledTransferNotFoundException;
+import money.boku.operations.scheduled.ScheduledTransferRequest;
+import money.boku.operations.scheduled.ScheduledTransferStore;
+import money.boku.operations.scheduled.TransferScheduler;
 import money.boku.operations.withdrawal.WithdrawalNotFoundException;
+import money.boku.operations.withdrawal.WithdrawalRequest;
 import money.boku.operations.withdrawal.WithdrawalRequestWatcher;
 import money.boku.operations.withdrawal.WithdrawalServiceStub;
+import money.boku.operations.withdrawal.WithdrawalStateCache;
+import money.boku.replication.ReplicaUnavailableException;
+import money.boku.replication.ReplicationAPI;
+import money.boku.replication.ReplicationManager;
+import money.boku.stream.BalanceStream;
+import money.boku.stream.BalanceStreamAPI;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Starts up the server.
  */
 public class Main {
     public static void main(String[] args) throws InterruptedException {
-        try (Javalin javalin = javalinApp()) {
-            // Can be configurable
-            javalin.start(7070);
+        ServerConfig serverConfig = ServerConfig.fromArgs(args);
+        try (Javalin javalin = javalinApp(serverConfig)) {
+            javalin.start(serverConfig.port());
             Thread.currentThread().join();
         }
     }
 
     /**
-     * Creates {@code Javalin} app.
+     * Creates {@code Javalin} app of a standalone server.
      *
      * @return Javalin app
      */
     public static Javalin javalinApp() {
-        AccountDatastore accountDatastore = new InMemoryAccountDatastore();
+        return javalinApp(ServerConfig.standalone());
+    }
+
+    /**
+     * Creates {@code Javalin} app.
+     *
+     * @param serverConfig server configuration
+     * @return Javalin app
+     */
+    public static Javalin javalinApp(ServerConfig serverConfig) {
+        // Standalone server is a cluster of one node, which owns all accounts.
+        Cluster cluster = serverConfig.isClustered()
+                ? new Cluster(serverConfig.nodeId(), serverConfig.clusterNodes())
+                : new Cluster(serverConfig.nodeId(), List.of(new ClusterNode(serverConfig.nodeId(), URI.create("http://localhost:" + serverConfig.port()))));
+        IdGenerator idGenerator = cluster.localIdGenerator();
+        AccountDatastore accountDatastore = new InMemoryAccountDatastore(idGenerator);
+        MoneyAuditor moneyAuditor = new MoneyAuditor();
+        accountDatastore.addBalanceChangeListener(moneyAuditor);
+        TransactionHistory transactionHistory = new SegmentedTransactionHistory();
+        ExchangeRateCache exchangeRateCache = new ExchangeRateCache();
         WithdrawalServiceStub withdrawalService = new WithdrawalServiceStub();
-        WithdrawalRequestWatcher withdrawalRequestWatcher = new WithdrawalRequestWatcher(accountDatastore, withdrawalService);
+        VelocityLimiter velocityLimiter = new VelocityLimiter(serverConfig.velocityLimits());
+        HoldService holdService = new HoldService(accountDatastore, transactionHistory, exchangeRateCache, velocityLimiter, idGenerator);
+        holdService.startExpiring();
+        WithdrawalStateCache withdrawalStateCache = new WithdrawalStateCache();
+        WithdrawalRequestWatcher withdrawalRequestWatcher = new WithdrawalRequestWatcher(holdService, withdrawalService, transactionHistory, withdrawalStateCache);
         withdrawalRequestWatcher.startWatching();
-        MoneyService moneyService = new MoneyServiceImpl(
+        ScheduledTransferStore scheduledTransferStore = serverConfig.scheduledTransfersFile() == null
+                ? ScheduledTransferStore.IN_MEMORY
+                : new FileScheduledTransferStore(serverConfig.scheduledTransfersFile());
+        TransferScheduler transferScheduler = new TransferScheduler(scheduledTransferStore);
+        MoneyService localMoneyService = new MoneyServiceImpl(
                 accountDatastore,
                 withdrawalService,
-                withdrawalRequestWatcher
+                withdrawalRequestWatcher,
+                withdrawalStateCache,
+                transactionHistory,
+                exchangeRateCache,
+                transferScheduler,
+                holdService,
+                velocityLimiter,
+                idGenerator
         );
+        ClusterClient clusterClient = new ClusterClient(cluster.getSelf(), serverConfig.clusterSecret());
+        ClusterRouter router = new ClusterRouter(cluster, clusterClient);
+        CommitIntentStore commitIntentStore = serverConfig.clusterIntentsFile() == null
+                ? CommitIntentStore.IN_MEMORY
+                : new FileCommitIntentStore(serverConfig.clusterIntentsFile());
+        ClusteredMoneyService clusteredMoneyService = serverConfig.isClustered()
+                ? new ClusteredMoneyService(localMoneyService, cluster, clusterClient, accountDatastore, transactionHistory, exchangeRateCache, velocityLimiter, commitIntentStore)
+                : null;
+        MoneyService moneyService = clusteredMoneyService == null ? localMoneyService : clusteredMoneyService;
+        // Due transfers go through the same path as transfers requested via API.
+        TransferScheduler.TransferAction scheduledTransferAction = (ScheduledTransfer t) -> moneyService.transfer(t.from(), t.to(), t.amount(), t.currency());
         MoneyAPI moneyAPI = new MoneyAPI(moneyService);
+        HoldAPI holdAPI = new HoldAPI(holdService);
+        HistoryAPI historyAPI = new HistoryAPI(accountDatastore, transactionHistory);
+        ExchangeRateAPI exchangeRateAPI = new ExchangeRateAPI(exchangeRateCache);
+        ReplicationManager replicationManager = new ReplicationManager(accountDatastore,
+                holdService,
+                new InetSocketAddress(serverConfig.replicationBindAddress(), serverConfig.replicationPort()),
+                serverConfig.replicaOf(),
+                serverConfig.replicationSecret());
+        ReplicationAPI replicationAPI = new ReplicationAPI(replicationManager);
+        BalanceStream balanceStream = new BalanceStream();
+        accountDatastore.addBalanceChangeListener(balanceStream);
+        BalanceStreamAPI balanceStreamAPI = new BalanceStreamAPI(accountDatastore, balanceStream);
+        RecordingManager recordingManager = new RecordingManager();
+        RecordingAPI recordingAPI = new RecordingAPI(recordingManager);
+        AuditAPI auditAPI = new AuditAPI(moneyAuditor);
         // Not part of the task, rather helps with testing.
         AccountAPI accountAPI = new AccountAPI(accountDatastore);
-        return Javalin.create(config -> {
+        Javalin app = Javalin.create(config -> {
                     config.http.prefer405over404 = true;
                 })
+                .events(events -> {
+                    events.serverStarted(replicationManager::start);
+                    events.serverStarted(() -> transferScheduler.start(scheduledTransferAction));
+                    events.serverStarted(moneyAuditor::start);
+                    events.serverStarted(velocityLimiter::start);
+                    events.serverStopped(replicationManager::close);
+                    events.serverStopped(transferScheduler::close);
+                    events.serverStopped(holdService::close);
+                    events.serverStopped(balanceStream::close);
+                    events.serverStopped(recordingManager::close);
+                    events.serverStopped(moneyAuditor::close);
+                    events.serverStopped(velocityLimiter::close);
+                })
+                .before(replicationAPI::handleBeforeRequest)
                 .post(AccountAPI.OPEN_ACCOUNT_PATH, accountAPI::handleOpenAccountRequest)
-                .get(AccountAPI.BALANCE_PATH, accountAPI::handleBalanceRequest)
-                .post(MoneyAPI.TRANSFER_PATH, moneyAPI::handleTransferRequest)
-                .post(MoneyAPI.WITHDRAW_PATH, moneyAPI::handleWithdrawRequest)
-                .get(MoneyAPI.WITHDRAWAL_STATE_PATH, moneyAPI::handleWithdrawalStateRequest)
+                .get(AccountAPI.BALANCE_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("accountId")), accountAPI::handleBalanceRequest))
+                .post(MoneyAPI.TRANSFER_PATH, router.route(ctx -> ctx.bodyAsClass(Transfer.class).from(), moneyAPI::handleTransferRequest))
+                .post(MoneyAPI.SCHEDULED_TRANSFER_PATH, router.route(ctx -> ctx.bodyAsClass(ScheduledTransferRequest.class).from(), moneyAPI::handleScheduleTransferRequest))
+                .get(MoneyAPI.SCHEDULED_TRANSFER_ID_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("id")), moneyAPI::handleScheduledTransferRequest))
+                .delete(MoneyAPI.SCHEDULED_TRANSFER_ID_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("id")), moneyAPI::handleCancelScheduledTransferRequest))
+                .post(MoneyAPI.WITHDRAW_PATH, router.route(ctx -> ctx.bodyAsClass(WithdrawalRequest.class).accountId(), moneyAPI::handleWithdrawRequest))
+                .get(MoneyAPI.WITHDRAWAL_STATE_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("id")), moneyAPI::handleWithdrawalStateRequest))
+                .get(AccountAPI.BALANCE_DETAILS_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("accountId")), accountAPI::handleBalanceDetailsRequest))
+                .get(BalanceStreamAPI.BALANCE_STREAM_PATH, balanceStreamAPI::handleSubscribeRequest)
+                .post(HoldAPI.HOLDS_PATH, router.route(ctx -> ctx.bodyAsClass(HoldRequest.class).accountId(), holdAPI::handleHoldRequest))
+                .get(HoldAPI.HOLD_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("id")), holdAPI::handleGetHoldRequest))
+                .post(HoldAPI.CAPTURE_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("id")), holdAPI::handleCaptureRequest))
+                .post(HoldAPI.RELEASE_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("id")), holdAPI::handleReleaseRequest))
+                .get(HistoryAPI.HISTORY_PATH, router.route(ctx -> UUID.fromString(ctx.pathParam("accountId")), historyAPI::handleHistoryRequest))
+                .get(ReplicationAPI.STATUS_PATH, replicationAPI::handleStatusRequest)
+                .get(ExchangeRateAPI.RATES_PATH, exchangeRateAPI::handleRatesRequest)
                 .exception(AccountNotFoundException.class, ((exception, ctx) -> {
                     ctx.status(HttpStatus.NOT_FOUND);
                 }))
@@ -60,6 +185,70 @@ public class Main {
                 }))
                 .exception(WithdrawalNotFoundException.class, ((exception, ctx) -> {
                     ctx.status(HttpStatus.NOT_FOUND);
+                }))
+                .exception(RecordingNotFoundException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.NOT_FOUND);
+                }))
+                .exception(TooManyRecordingsException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.TOO_MANY_REQUESTS);
+                    ctx.result(exception.getMessage());
+                }))
+                .exception(HoldNotFoundException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.NOT_FOUND);
+                }))
+                .exception(InternalHoldException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.CONFLICT);
+                    ctx.result(exception.getMessage());
+                }))
+                .exception(ScheduledTransferNotFoundException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.NOT_FOUND);
+                }))
+                .exception(VelocityLimitExceededException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.TOO_MANY_REQUESTS);
+                    ctx.result(exception.getMessage());
+                }))
+                .exception(ExchangeRateNotFoundException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.UNPROCESSABLE_CONTENT);
+                }))
+                .exception(NodeUnavailableException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+                }))
+                .exception(CreditNotPreparedException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.CONFLICT);
+                }))
+                .exception(ReplicaUnavailableException.class, ((exception, ctx) -> {
+                    ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+                    ctx.result(exception.getMessage());
                 }));
+        if (serverConfig.adminToken() != null) {
+            AdminAPI adminAPI = new AdminAPI(serverConfig.adminToken());
+            app.before(AdminAPI.ADMIN_PATHS, adminAPI::handleBeforeRequest)
+                    .get(RecordingAPI.RECORDINGS_PATH, recordingAPI::handleListRequest)
+                    .post(RecordingAPI.RECORDINGS_PATH, recordingAPI::handleStartRequest)
+                    .post(RecordingAPI.STOP_RECORDING_PATH, recordingAPI::handleStopRequest)
+                    .get(AuditAPI.AUDIT_PATH, auditAPI::handleAuditRequest)
+                    .put(ExchangeRateAPI.ADMIN_RATES_PATH, exchangeRateAPI::handleUpdateRatesRequest)
+                    .post(ReplicationAPI.PROMOTE_PATH, replicationAPI::handlePromoteRequest)
+                    .get(HoldAPI.ORPHANED_HOLDS_PATH, holdAPI::handleOrphanedHoldsRequest)
+                    .post(HoldAPI.ORPHANED_CAPTURE_PATH, holdAPI::handleCaptureOrphanedRequest)
+                    .post(HoldAPI.ORPHANED_RELEASE_PATH, holdAPI::handleReleaseOrphanedRequest);
+        }
+        if (clusteredMoneyService != null) {
+            CreditParticipant creditParticipant = new CreditParticipant(accountDatastore, transactionHistory, exchangeRateCache);
+            app.events(events -> {
+                events.serverStarted(clusteredMoneyService::start);
+                events.serverStarted(creditParticipant::start);
+                events.serverStopped(clusteredMoneyService::close);
+                events.serverStopped(creditParticipant::close);
+            });
+            // Other nodes are the only callers of the internal API.
+            ClusterAPI clusterAPI = new ClusterAPI(creditParticipant, serverConfig.clusterSecret());
+            app.before(ClusterAPI.INTERNAL_PATHS, clusterAPI::handleBeforeRequest)
+                    .get(ClusterAPI.CREDIT_PATH, clusterAPI::handleCreditStateRequest)
+                    .post(ClusterAPI.PREPARE_CREDIT_PATH, clusterAPI::handlePrepareCreditRequest)
+                    .post(ClusterAPI.COMMIT_CREDIT_PATH, clusterAPI::handleCommitCreditRequest)
+                    .post(ClusterAPI.ABORT_CREDIT_PATH, clusterAPI::handleAbortCreditRequest);
+        }
+        return app;
     }
 }
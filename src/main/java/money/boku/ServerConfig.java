@@ -0,0 +1,181 @@
+package money.boku;
+
+import money.boku.cluster.ClusterNode;
+import money.boku.operations.limits.VelocityLimits;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Configuration of a single server process.
+ *
+ * @param port                   port to listen on
+ * @param nodeId                 id of this node within the cluster
+ * @param clusterNodes           all nodes of the cluster including this one; empty list means standalone mode
+ * @param replicationPort        port to stream balance changes to replicas from; 0 disables replication
+ * @param replicaOf              replication address of the primary to follow; null if this server is a primary
+ * @param scheduledTransfersFile file to keep pending scheduled transfers in; null keeps them only in memory
+ * @param velocityLimits         limits on money leaving every account
+ * @param clusterSecret          secret shared by all cluster nodes, required on their internal API; null if standalone
+ * @param clusterIntentsFile     file to keep unacknowledged commits of cross-node transfers in; null keeps them only
+ *                               in memory
+ * @param replicationBindAddress address to accept replica connections on, loopback by default
+ * @param replicationSecret      secret shared by the primary and its replicas; null if there's no replication
+ * @param adminToken             token required on the admin API; null disables the admin API
+ */
+public record ServerConfig(int port,
+                           String nodeId,
+                           List<ClusterNode> clusterNodes,
+                           int replicationPort,
+                           InetSocketAddress replicaOf,
+                           Path scheduledTransfersFile,
+                           VelocityLimits velocityLimits,
+                           String clusterSecret,
+                           Path clusterIntentsFile,
+                           InetAddress replicationBindAddress,
+                           String replicationSecret,
+                           String adminToken) {
+    public static final int DEFAULT_PORT = 7070;
+
+    public ServerConfig {
+        clusterNodes = List.copyOf(clusterNodes);
+        Objects.requireNonNull(velocityLimits);
+        Objects.requireNonNull(replicationBindAddress);
+        if (!clusterNodes.isEmpty() && clusterNodes.stream().noneMatch(n -> n.id().equals(nodeId))) {
+            throw new IllegalArgumentException("Node %s is not a member of the cluster".formatted(nodeId));
+        }
+        if (!clusterNodes.isEmpty() && (clusterSecret == null || clusterSecret.isBlank())) {
+            throw new IllegalArgumentException("Cluster secret is required in a cluster");
+        }
+        if ((replicationPort > 0 || replicaOf != null) && (replicationSecret == null || replicationSecret.isBlank())) {
+            throw new IllegalArgumentException("Replication secret is required for replication");
+        }
+        if (adminToken != null && adminToken.isBlank()) {
+            throw new IllegalArgumentException("Admin token shouldn't be blank");
+        }
+    }
+
+    /**
+     * Returns configuration of a standalone server owning all accounts.
+     */
+    public static ServerConfig standalone() {
+        return new ServerConfig(DEFAULT_PORT, "standalone", List.of(), 0, null, null, VelocityLimits.UNLIMITED, null, null, InetAddress.getLoopbackAddress(), null, null);
+    }
+
+    /**
+     * Parses command line arguments, e.g.
+     * {@code --port=7071 --node=b --cluster=a=http://localhost:7070,b=http://localhost:7071 --cluster-secret=s3cr3t} or
+     * {@code --port=7071 --replica-of=localhost:7170 --replication-secret=s3cr3t} or {@code --hourly-limit=1000 --daily-limit=5000}
+     * or {@code --admin-token=t0k3n}.
+     *
+     * @param args command line arguments
+     * @return parsed configuration
+     * @throws IllegalArgumentException if arguments are malformed
+     */
+    public static ServerConfig fromArgs(String[] args) {
+        ServerConfig config = standalone();
+        int port = config.port();
+        String nodeId = config.nodeId();
+        List<ClusterNode> nodes = new ArrayList<>();
+        int replicationPort = config.replicationPort();
+        InetSocketAddress replicaOf = config.replicaOf();
+        Path scheduledTransfersFile = config.scheduledTransfersFile();
+        BigDecimal hourlyLimit = config.velocityLimits().hourly();
+        BigDecimal dailyLimit = config.velocityLimits().daily();
+        String clusterSecret = config.clusterSecret();
+        Path clusterIntentsFile = config.clusterIntentsFile();
+        InetAddress replicationBindAddress = config.replicationBindAddress();
+        String replicationSecret = config.replicationSecret();
+        String adminToken = config.adminToken();
+        for (String arg : args) {
+            String[] keyValue = arg.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Malformed argument " + arg);
+            }
+            switch (keyValue[0]) {
+                case "--port" -> port = Integer.parseInt(keyValue[1]);
+                case "--node" -> nodeId = keyValue[1];
+                case "--cluster" -> {
+                    for (String node : keyValue[1].split(",")) {
+                        String[] idUri = node.split("=", 2);
+                        if (idUri.length != 2) {
+                            throw new IllegalArgumentException("Malformed cluster node " + node);
+                        }
+                        nodes.add(new ClusterNode(idUri[0], URI.create(idUri[1])));
+                    }
+                }
+                case "--cluster-secret" -> clusterSecret = keyValue[1];
+                case "--cluster-intents-file" -> clusterIntentsFile = Path.of(keyValue[1]);
+                case "--replication-port" -> replicationPort = Integer.parseInt(keyValue[1]);
+                case "--replica-of" -> replicaOf = parseAddress(keyValue[1]);
+                case "--replication-bind-address" -> replicationBindAddress = parseHost(keyValue[1]);
+                case "--replication-secret" -> replicationSecret = keyValue[1];
+                case "--admin-token" -> adminToken = keyValue[1];
+                case "--scheduled-transfers-file" -> scheduledTransfersFile = Path.of(keyValue[1]);
+                case "--hourly-limit" -> hourlyLimit = new BigDecimal(keyValue[1]);
+                case "--daily-limit" -> dailyLimit = new BigDecimal(keyValue[1]);
+                default -> throw new IllegalArgumentException("Unknown argument " + keyValue[0]);
+            }
+        }
+        return new ServerConfig(port, nodeId, nodes, replicationPort, replicaOf, scheduledTransfersFile, new VelocityLimits(hourlyLimit, dailyLimit), clusterSecret, clusterIntentsFile, replicationBindAddress, replicationSecret, adminToken);
+    }
+
+    public ServerConfig withPort(int port) {
+        return new ServerConfig(port, nodeId, clusterNodes, replicationPort, replicaOf, scheduledTransfersFile, velocityLimits, clusterSecret, clusterIntentsFile, replicationBindAddress, replicationSecret, adminToken);
+    }
+
+    public ServerConfig withCluster(String nodeId, List<ClusterNode> clusterNodes, String clusterSecret) {
+        return new ServerConfig(port, nodeId, clusterNodes, replicationPort, replicaOf, scheduledTransfersFile, velocityLimits, clusterSecret, clusterIntentsFile, replicationBindAddress, replicationSecret, adminToken);
+    }
+
+    public ServerConfig withReplication(int replicationPort, InetSocketAddress replicaOf, String replicationSecret) {
+        return new ServerConfig(port, nodeId, clusterNodes, replicationPort, replicaOf, scheduledTransfersFile, velocityLimits, clusterSecret, clusterIntentsFile, replicationBindAddress, replicationSecret, adminToken);
+    }
+
+    public ServerConfig withScheduledTransfersFile(Path scheduledTransfersFile) {
+        return new ServerConfig(port, nodeId, clusterNodes, replicationPort, replicaOf, scheduledTransfersFile, velocityLimits, clusterSecret, clusterIntentsFile, replicationBindAddress, replicationSecret, adminToken);
+    }
+
+    public ServerConfig withClusterIntentsFile(Path clusterIntentsFile) {
+        return new ServerConfig(port, nodeId, clusterNodes, replicationPort, replicaOf, scheduledTransfersFile, velocityLimits, clusterSecret, clusterIntentsFile, replicationBindAddress, replicationSecret, adminToken);
+    }
+
+    public ServerConfig withVelocityLimits(VelocityLimits velocityLimits) {
+        return new ServerConfig(port, nodeId, clusterNodes, replicationPort, replicaOf, scheduledTransfersFile, velocityLimits, clusterSecret, clusterIntentsFile, replicationBindAddress, replicationSecret, adminToken);
+    }
+
+    public ServerConfig withAdminToken(String adminToken) {
+        return new ServerConfig(port, nodeId, clusterNodes, replicationPort, replicaOf, scheduledTransfersFile, velocityLimits, clusterSecret, clusterIntentsFile, replicationBindAddress, replicationSecret, adminToken);
+    }
+
+    public boolean isClustered() {
+        return !clusterNodes.isEmpty();
+    }
+
+    public boolean isReplica() {
+        return replicaOf != null;
+    }
+
+    private static InetSocketAddress parseAddress(String hostPort) {
+        int separator = hostPort.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Malformed address " + hostPort);
+        }
+        return new InetSocketAddress(hostPort.substring(0, separator), Integer.parseInt(hostPort.substring(separator + 1)));
+    }
+
+    private static InetAddress parseHost(String host) {
+        try {
+            return InetAddress.getByName(host);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Unknown host " + host, e);
+        }
+    }
+}
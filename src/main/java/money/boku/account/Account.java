@@ -1,51 +1,125 @@
 package money.boku.account;
 
+import money.boku.diagnostics.BalanceUpdateEvent;
+import money.boku.diagnostics.Events;
+
 import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Encapsulates information about user account. Provides functions to increase/decrease balance, can handle
- * concurrent requests.
+ * Encapsulates information about user account. Provides functions to increase/decrease balance and to hold funds,
+ * can handle concurrent requests.
+ * <p>
+ * Balance is the amount available for new operations. Held funds are already taken out of it, but not yet out of
+ * the account: a hold is either captured (money leaves the account) or released (money becomes available again).
  */
 public class Account {
     // Serves as unique identifier and "address" of the account at the same time.
     private final UUID id;
-    private final AtomicReference<BigDecimal> balance;
+    private final Currency currency;
+    // Balance, held amount and version are swapped together, so every change of the balance gets its own version.
+    private final AtomicReference<State> state;
+
+    public Account(UUID id, Currency currency, BigDecimal balance) {
+        this(id, currency, balance, BigDecimal.ZERO, 0);
+    }
 
-    public Account(UUID id, BigDecimal balance) {
+    Account(UUID id, Currency currency, BigDecimal balance, BigDecimal held, long version) {
         this.id = Objects.requireNonNull(id);
-        this.balance = new AtomicReference<>(balance);
+        this.currency = Objects.requireNonNull(currency);
+        this.state = new AtomicReference<>(new State(balance, held, version));
     }
 
     public UUID getId() {
         return id;
     }
 
+    public Currency getCurrency() {
+        return currency;
+    }
+
     public BigDecimal getBalance() {
-        return balance.get();
+        return state.get().balance();
+    }
+
+    public BigDecimal getHeld() {
+        return state.get().held();
+    }
+
+    /**
+     * Returns current balance together with its version.
+     *
+     * @return current state of the account
+     */
+    public BalanceChange snapshot() {
+        return toChange(state.get());
     }
 
     /**
      * Adds specified amount to the account balance.
      *
      * @param amount amount to add
+     * @param flow   why the amount is added
+     * @return resulting state of the account
      */
-    public void add(BigDecimal amount) {
-        this.balance.accumulateAndGet(amount, BigDecimal::add);
+    public BalanceChange add(BigDecimal amount, Flow flow) {
+        return update("add", flow, oldState -> oldState.next(oldState.balance().add(amount), oldState.held()));
     }
 
     /**
      * Subtracts specified amount from the account balance.
      *
      * @param amount amount to subtract
+     * @param flow   why the amount is subtracted
+     * @return resulting state of the account
      * @throws NegativeBalanceRequestException if subtracting specified amount would result in negative account balance
      */
-    public void subtract(BigDecimal amount) throws NegativeBalanceRequestException {
-        while (true) {
-            BigDecimal oldVal = balance.get();
-            BigDecimal newVal = oldVal.subtract(amount);
+    public BalanceChange subtract(BigDecimal amount, Flow flow) throws NegativeBalanceRequestException {
+        return takeFromBalance("subtract", flow, amount, BigDecimal.ZERO);
+    }
+
+    /**
+     * Moves specified amount from the account balance to held funds.
+     *
+     * @param amount amount to hold
+     * @param flow   why the amount is held
+     * @return resulting state of the account
+     * @throws NegativeBalanceRequestException if holding specified amount would result in negative account balance
+     */
+    public BalanceChange reserve(BigDecimal amount, Flow flow) throws NegativeBalanceRequestException {
+        return takeFromBalance("reserve", flow, amount, amount);
+    }
+
+    /**
+     * Takes specified amount out of held funds, i.e. out of the account.
+     *
+     * @param amount amount to capture
+     * @param flow   where the amount goes
+     * @return resulting state of the account
+     * @throws IllegalStateException if less than {@code amount} is held
+     */
+    public BalanceChange capture(BigDecimal amount, Flow flow) {
+        return update("capture", flow, oldState -> oldState.next(oldState.balance(), oldState.heldWithout(amount)));
+    }
+
+    /**
+     * Returns specified amount from held funds to the account balance.
+     *
+     * @param amount amount to release
+     * @param flow   why the amount was held
+     * @return resulting state of the account
+     * @throws IllegalStateException if less than {@code amount} is held
+     */
+    public BalanceChange release(BigDecimal amount, Flow flow) {
+        return update("release", flow, oldState -> oldState.next(oldState.balance().add(amount), oldState.heldWithout(amount)));
+    }
+
+    private BalanceChange takeFromBalance(String operation, Flow flow, BigDecimal amount, BigDecimal toHold) throws NegativeBalanceRequestException {
+        return update(operation, flow, oldState -> {
+            BigDecimal newVal = oldState.balance().subtract(amount);
             // In case of negative balance we can try to optimize for the number of successful operations by waiting for
             // other operations on the same account to complete.
             // However, it seems to be perfectly reasonable behaviour to fail to go into negative despite potential
@@ -53,9 +127,88 @@ public class Account {
             if (newVal.signum() == -1) {
                 throw new NegativeBalanceRequestException("Rejected attempt to transfer/withdraw money that would make balance negative.");
             }
-            if (balance.compareAndSet(oldVal, newVal)) {
-                return;
+            return oldState.next(newVal, oldState.held().add(toHold));
+        });
+    }
+
+    private <E extends Exception> BalanceChange update(String operation, Flow flow, StateUpdate<E> update) throws E {
+        BalanceUpdateEvent event = new BalanceUpdateEvent();
+        event.begin();
+        int retries = 0;
+        while (true) {
+            State oldState = state.get();
+            State newState = update.apply(oldState);
+            if (state.compareAndSet(oldState, newState)) {
+                int casRetries = retries;
+                Events.commit(event, e -> {
+                    e.accountId = id.toString();
+                    e.operation = operation;
+                    e.casRetries = casRetries;
+                });
+                // Deltas come from the swapped states, so they match the change exactly however it raced.
+                return toChange(oldState, newState, flow);
+            }
+            retries++;
+        }
+    }
+
+    /**
+     * Overwrites the balance with the one received from elsewhere (e.g. from replication stream), unless the account
+     * already has the same or a newer version.
+     *
+     * @param balance new balance
+     * @param held    new held amount
+     * @param version version of the new balance
+     * @return the change if the balance was overwritten, null otherwise
+     */
+    BalanceChange applyIfNewer(BigDecimal balance, BigDecimal held, long version) {
+        while (true) {
+            State oldState = state.get();
+            if (oldState.version() >= version) {
+                return null;
+            }
+            State newState = new State(balance, held, version);
+            if (state.compareAndSet(oldState, newState)) {
+                return toChange(oldState, newState, Flow.REPLICATION);
+            }
+        }
+    }
+
+    /**
+     * Returns the current state as the change that brought it from nothing, i.e. with the whole balance as delta.
+     *
+     * @param flow where the balance came from
+     * @return current state of the account
+     */
+    BalanceChange opened(Flow flow) {
+        return toChange(new State(BigDecimal.ZERO, BigDecimal.ZERO, 0), state.get(), flow);
+    }
+
+    private BalanceChange toChange(State state) {
+        return new BalanceChange(id, currency, state.balance(), state.held(), state.version());
+    }
+
+    private BalanceChange toChange(State oldState, State newState, Flow flow) {
+        return new BalanceChange(id, currency, newState.balance(), newState.held(), newState.version(),
+                newState.balance().subtract(oldState.balance()), newState.held().subtract(oldState.held()), flow);
+    }
+
+    @FunctionalInterface
+    private interface StateUpdate<E extends Exception> {
+        State apply(State oldState) throws E;
+    }
+
+    private record State(BigDecimal balance, BigDecimal held, long version) {
+        private State next(BigDecimal newBalance, BigDecimal newHeld) {
+            return new State(newBalance, newHeld, version + 1);
+        }
+
+        private BigDecimal heldWithout(BigDecimal amount) {
+            BigDecimal newHeld = held.subtract(amount);
+            if (newHeld.signum() == -1) {
+                throw new IllegalStateException("Attempt to take %s out of %s held funds".formatted(amount, held));
             }
+            return newHeld;
         }
     }
 }
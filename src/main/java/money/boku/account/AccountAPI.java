@@ -4,6 +4,7 @@ import io.javalin.http.Context;
 import org.jetbrains.annotations.NotNull;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -13,6 +14,8 @@ import java.util.UUID;
 public class AccountAPI {
     public final static String OPEN_ACCOUNT_PATH = "/open-account";
     public final static String BALANCE_PATH = "/balance/{accountId}";
+    public final static String BALANCE_DETAILS_PATH = "/balance/{accountId}/details";
+    public final static Currency DEFAULT_CURRENCY = Currency.getInstance("EUR");
 
     private final AccountDatastore accountDatastore;
 
@@ -21,7 +24,8 @@ public class AccountAPI {
     }
 
     /**
-     * Handles HTTP request to open new account.
+     * Handles HTTP request to open new account. Account currency is taken from {@code currency} parameter,
+     * {@link #DEFAULT_CURRENCY} is used if it's not specified.
      *
      * @param ctx request context
      */
@@ -30,7 +34,9 @@ public class AccountAPI {
         if (balanceStr == null || balanceStr.isEmpty()) {
             throw new IllegalArgumentException("initialBalance parameter is not specified properly");
         }
-        Account account = accountDatastore.createNewAccount(new BigDecimal(balanceStr));
+        String currencyStr = ctx.queryParam("currency");
+        Currency currency = currencyStr == null || currencyStr.isEmpty() ? DEFAULT_CURRENCY : Currency.getInstance(currencyStr);
+        Account account = accountDatastore.createNewAccount(new BigDecimal(balanceStr), currency);
         // opted out for returning just value instead of JSON to simplify testing
         ctx.result(account.getId().toString());
     }
@@ -48,4 +54,16 @@ public class AccountAPI {
         // opted out for returning just value instead of JSON to simplify testing
         ctx.result(account.getBalance().toString());
     }
+
+    /**
+     * Handles HTTP request to look at account balance together with held funds.
+     *
+     * @param ctx request context
+     * @throws AccountNotFoundException if no account with such id exists
+     */
+    public void handleBalanceDetailsRequest(@NotNull Context ctx) throws AccountNotFoundException {
+        UUID accountId = UUID.fromString(ctx.pathParam("accountId"));
+        BalanceChange state = accountDatastore.getAccount(accountId).snapshot();
+        ctx.json(new BalanceDetails(state.currency(), state.balance(), state.held()));
+    }
 }
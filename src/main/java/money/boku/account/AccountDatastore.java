@@ -1,6 +1,8 @@
 package money.boku.account;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Currency;
 import java.util.UUID;
 
 /**
@@ -11,9 +13,10 @@ public interface AccountDatastore {
      * Creates new account in the system.
      *
      * @param initialBalance initial balance in the account
+     * @param currency       currency of the account
      * @return new account
      */
-    Account createNewAccount(BigDecimal initialBalance);
+    Account createNewAccount(BigDecimal initialBalance, Currency currency);
 
     /**
      * Returns account by id.
@@ -28,17 +31,80 @@ public interface AccountDatastore {
      *
      * @param accountId id of the account
      * @param amount    to add to the balance
+     * @param flow      why the balance is increased
      * @throws AccountNotFoundException when no account with such id exists
      */
-    void increaseBalance(UUID accountId, BigDecimal amount) throws AccountNotFoundException;
+    void increaseBalance(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException;
 
     /**
      * Decreases balance in the account. Can be called concurrently.
      *
      * @param accountId id of the account
      * @param amount    to subtract from the balance
+     * @param flow      why the balance is decreased
      * @throws AccountNotFoundException        when no account with such id exists
      * @throws NegativeBalanceRequestException when executing operation would result in negative balance
      */
-    void decreaseBalance(UUID accountId, BigDecimal amount) throws AccountNotFoundException, NegativeBalanceRequestException;
+    void decreaseBalance(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException, NegativeBalanceRequestException;
+
+    /**
+     * Moves amount from the account balance to its held funds. Can be called concurrently.
+     *
+     * @param accountId id of the account
+     * @param amount    to hold
+     * @param flow      why the amount is held
+     * @throws AccountNotFoundException        when no account with such id exists
+     * @throws NegativeBalanceRequestException when executing operation would result in negative balance
+     */
+    void reserve(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException, NegativeBalanceRequestException;
+
+    /**
+     * Takes amount out of the account held funds. Can be called concurrently.
+     *
+     * @param accountId id of the account
+     * @param amount    to take out of held funds
+     * @param flow      where the amount goes
+     * @throws AccountNotFoundException when no account with such id exists
+     */
+    void captureHeld(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException;
+
+    /**
+     * Returns amount from the account held funds to its balance. Can be called concurrently.
+     *
+     * @param accountId id of the account
+     * @param amount    to return to the balance
+     * @param flow      why the amount was held
+     * @throws AccountNotFoundException when no account with such id exists
+     */
+    void releaseHeld(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException;
+
+    /**
+     * Returns all accounts in the system. The collection is a live view, it's safe to iterate it concurrently with
+     * creation of new accounts.
+     *
+     * @return all accounts
+     */
+    Collection<Account> getAccounts();
+
+    /**
+     * Applies balance change that happened elsewhere, e.g. on replication primary. Creates the account if it doesn't
+     * exist; ignores the change if the account already has the same or a newer version.
+     *
+     * @param change balance change to apply
+     */
+    void applyBalanceChange(BalanceChange change);
+
+    /**
+     * Registers listener of all balance changes.
+     *
+     * @param listener listener to register
+     */
+    void addBalanceChangeListener(BalanceChangeListener listener);
+
+    /**
+     * Unregisters listener registered with {@link #addBalanceChangeListener}.
+     *
+     * @param listener listener to unregister
+     */
+    void removeBalanceChangeListener(BalanceChangeListener listener);
 }
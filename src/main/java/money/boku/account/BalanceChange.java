@@ -0,0 +1,35 @@
+package money.boku.account;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * State of the account right after its balance has changed, together with the change itself.
+ * <p>
+ * Deltas and flow are only known where the balance is changed; a snapshot of the current state or a change received
+ * from elsewhere has zero deltas and no flow. They aren't part of the published state.
+ *
+ * @param accountId    id of the account
+ * @param currency     currency of the account
+ * @param balance      new balance available for operations
+ * @param held         new amount of held funds
+ * @param version      number of changes the account balance went through; later changes have greater versions
+ * @param balanceDelta how much the balance changed by
+ * @param heldDelta    how much held funds changed by
+ * @param flow         why the balance changed; null for a snapshot
+ */
+public record BalanceChange(UUID accountId,
+                            Currency currency,
+                            BigDecimal balance,
+                            BigDecimal held,
+                            long version,
+                            @JsonIgnore BigDecimal balanceDelta,
+                            @JsonIgnore BigDecimal heldDelta,
+                            @JsonIgnore Flow flow) {
+    public BalanceChange(UUID accountId, Currency currency, BigDecimal balance, BigDecimal held, long version) {
+        this(accountId, currency, balance, held, version, BigDecimal.ZERO, BigDecimal.ZERO, null);
+    }
+}
@@ -0,0 +1,13 @@
+package money.boku.account;
+
+/**
+ * Gets notified about every change of account balances, including creation of new accounts.
+ * <p>
+ * Listener is called synchronously on the thread that changed the balance, right after the change. It should never
+ * block. Changes of the same account made by concurrent threads may be delivered out of order, listeners should use
+ * {@link BalanceChange#version()} to find the latest one.
+ */
+@FunctionalInterface
+public interface BalanceChangeListener {
+    void onBalanceChange(BalanceChange change);
+}
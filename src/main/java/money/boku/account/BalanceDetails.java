@@ -0,0 +1,13 @@
+package money.boku.account;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Returned by API when requesting account balance details.
+ *
+ * @param available balance available for new operations
+ * @param held      funds held in the account until they are captured or released
+ */
+public record BalanceDetails(Currency currency, BigDecimal available, BigDecimal held) {
+}
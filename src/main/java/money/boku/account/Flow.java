@@ -0,0 +1,21 @@
+package money.boku.account;
+
+/**
+ * Why the balance of an account changed, i.e. where the money came from or went to. Lets balance changes be
+ * audited one at a time: every flow but {@link #HOLD} moves money into or out of accounts, holds only move it within
+ * the account.
+ */
+public enum Flow {
+    /** Account was opened with its initial balance. */
+    OPENING,
+    /** Money came from another account. */
+    TRANSFER_IN,
+    /** Money went to another account, or came back from a transfer that didn't complete. */
+    TRANSFER_OUT,
+    /** Money was held for a withdrawal, left the account with it, or came back from a failed one. */
+    WITHDRAWAL,
+    /** Money was held for a later capture or came back from an expired or released hold. */
+    HOLD,
+    /** Balance was overwritten with the one received from the replication primary. */
+    REPLICATION
+}
@@ -1,9 +1,17 @@
 package money.boku.account;
 
+import money.boku.IdGenerator;
+
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * In-memory implementation of {@link AccountDatastore}.
@@ -11,16 +19,29 @@ import java.util.concurrent.ConcurrentMap;
 public class InMemoryAccountDatastore implements AccountDatastore {
     // Could've been ConcurrentMap<UUID, BigInteger>, but having an account class makes it more extendable.
     private final ConcurrentMap<UUID, Account> idToAccount = new ConcurrentHashMap<>();
+    private final IdGenerator idGenerator;
+    // Listeners are seldom registered or removed (on startup and on replication role changes), but iterated on every
+    // balance change.
+    private final List<BalanceChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryAccountDatastore() {
+        this(IdGenerator.RANDOM);
+    }
+
+    public InMemoryAccountDatastore(IdGenerator idGenerator) {
+        this.idGenerator = Objects.requireNonNull(idGenerator);
+    }
 
     @Override
-    public Account createNewAccount(BigDecimal initialBalance) {
+    public Account createNewAccount(BigDecimal initialBalance, Currency currency) {
         // Ensure account ID is unique.
-        UUID accountId = UUID.randomUUID();
-        Account account = new Account(accountId, initialBalance);
+        UUID accountId = idGenerator.nextId();
+        Account account = new Account(accountId, currency, initialBalance);
         while (idToAccount.putIfAbsent(accountId, account) != null) {
-            accountId = UUID.randomUUID();
-            account = new Account(accountId, initialBalance);
+            accountId = idGenerator.nextId();
+            account = new Account(accountId, currency, initialBalance);
         }
+        notifyListeners(account.opened(Flow.OPENING));
         return account;
     }
 
@@ -34,20 +55,73 @@ public class InMemoryAccountDatastore implements AccountDatastore {
     }
 
     @Override
-    public void increaseBalance(UUID accountId, BigDecimal amount) throws AccountNotFoundException {
+    public void increaseBalance(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException {
         Account account = idToAccount.get(accountId);
         if (account == null) {
             throw new AccountNotFoundException("Account %s is not found".formatted(accountId));
         }
-        account.add(amount);
+        notifyListeners(account.add(amount, flow));
     }
 
     @Override
-    public void decreaseBalance(UUID accountId, BigDecimal amount) throws AccountNotFoundException, NegativeBalanceRequestException {
+    public void decreaseBalance(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException, NegativeBalanceRequestException {
         Account account = idToAccount.get(accountId);
         if (account == null) {
             throw new AccountNotFoundException("Account %s is not found".formatted(accountId));
         }
-        account.subtract(amount);
+        notifyListeners(account.subtract(amount, flow));
+    }
+
+    @Override
+    public void reserve(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException, NegativeBalanceRequestException {
+        notifyListeners(getAccount(accountId).reserve(amount, flow));
+    }
+
+    @Override
+    public void captureHeld(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException {
+        notifyListeners(getAccount(accountId).capture(amount, flow));
+    }
+
+    @Override
+    public void releaseHeld(UUID accountId, BigDecimal amount, Flow flow) throws AccountNotFoundException {
+        notifyListeners(getAccount(accountId).release(amount, flow));
+    }
+
+    @Override
+    public Collection<Account> getAccounts() {
+        return Collections.unmodifiableCollection(idToAccount.values());
+    }
+
+    @Override
+    public void applyBalanceChange(BalanceChange change) {
+        Account account = idToAccount.get(change.accountId());
+        if (account == null) {
+            Account newAccount = new Account(change.accountId(), change.currency(), change.balance(), change.held(), change.version());
+            account = idToAccount.putIfAbsent(change.accountId(), newAccount);
+            if (account == null) {
+                notifyListeners(newAccount.opened(Flow.REPLICATION));
+                return;
+            }
+        }
+        BalanceChange applied = account.applyIfNewer(change.balance(), change.held(), change.version());
+        if (applied != null) {
+            notifyListeners(applied);
+        }
+    }
+
+    @Override
+    public void addBalanceChangeListener(BalanceChangeListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    @Override
+    public void removeBalanceChangeListener(BalanceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(BalanceChange change) {
+        for (BalanceChangeListener listener : listeners) {
+            listener.onBalanceChange(change);
+        }
     }
 }
@@ -0,0 +1,28 @@
+package money.boku.audit;
+
+import io.javalin.http.Context;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * Admin API for the money conservation audit.
+ */
+public class AuditAPI {
+    public static final String AUDIT_PATH = "/admin/audit";
+
+    private final MoneyAuditor moneyAuditor;
+
+    public AuditAPI(MoneyAuditor moneyAuditor) {
+        this.moneyAuditor = Objects.requireNonNull(moneyAuditor);
+    }
+
+    /**
+     * Handles HTTP request for current audited totals and drift of every currency.
+     *
+     * @param ctx request context
+     */
+    public void handleAuditRequest(@NotNull Context ctx) {
+        ctx.json(moneyAuditor.report());
+    }
+}
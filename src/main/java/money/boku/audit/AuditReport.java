@@ -0,0 +1,12 @@
+package money.boku.audit;
+
+import java.util.List;
+
+/**
+ * Result of the money conservation audit.
+ *
+ * @param consistent whether no currency has an alert
+ * @param currencies totals of every currency seen so far
+ */
+public record AuditReport(boolean consistent, List<CurrencyAudit> currencies) {
+}
@@ -0,0 +1,33 @@
+package money.boku.audit;
+
+import java.math.BigDecimal;
+
+/**
+ * Audited totals of a single currency. Money is conserved when
+ * {@code available + held + completedWithdrawals == issued + transferredIn - transferredOut}; {@code drift} is the
+ * difference between the two sides. Totals are read one by one while money moves, so only the drift is exact.
+ *
+ * @param currency             currency code
+ * @param available            sum of balances available for operations
+ * @param held                 sum of held funds, including in-flight withdrawals
+ * @param inFlightWithdrawals  sum of requested withdrawals that are neither completed nor failed yet
+ * @param completedWithdrawals sum of completed withdrawals, i.e. money that has left the system
+ * @param issued               sum of balances accounts were opened with
+ * @param transferredIn        sum of transfers into accounts, in this currency
+ * @param transferredOut       sum of transfers out of accounts, in this currency
+ * @param drift                money that appeared ({@code > 0}) or disappeared ({@code < 0}) unaccounted for
+ * @param driftingMillis       for how long the drift has been non-zero; 0 if it's zero
+ * @param alert                whether the drift was non-zero on the last check
+ */
+public record CurrencyAudit(String currency,
+                            BigDecimal available,
+                            BigDecimal held,
+                            BigDecimal inFlightWithdrawals,
+                            BigDecimal completedWithdrawals,
+                            BigDecimal issued,
+                            BigDecimal transferredIn,
+                            BigDecimal transferredOut,
+                            BigDecimal drift,
+                            long driftingMillis,
+                            boolean alert) {
+}
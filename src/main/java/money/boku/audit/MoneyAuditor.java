@@ -0,0 +1,156 @@
+package money.boku.audit;
+
+import money.boku.account.BalanceChange;
+import money.boku.account.BalanceChangeListener;
+import money.boku.diagnostics.Events;
+import money.boku.diagnostics.MoneyDriftEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that money is neither created nor destroyed: for every currency, money in accounts plus completed
+ * withdrawals should always equal money accounts were opened with plus net transfers (see {@link CurrencyAudit}).
+ * <p>
+ * Every balance change carries its deltas and its {@link money.boku.account.Flow}, so both sides of the equation are
+ * updated from the same change and a check costs the same however many accounts there are. The part of a change its
+ * flow doesn't explain, e.g. a hold that changed the total of the account, is summed up as drift right away. Drift is
+ * therefore exact at any moment, however busy the server is, and any non-zero drift is alerted on.
+ */
+public class MoneyAuditor implements BalanceChangeListener, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MoneyAuditor.class);
+    private static final long CHECK_INTERVAL_MILLIS = 1000; // can be configurable
+
+    private final ConcurrentMap<Currency, Totals> totals = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Starts separate thread that checks drift of every currency.
+     */
+    public void start() {
+        checker.scheduleAtFixedRate(() -> {
+            try {
+                check(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                // Uncaught exception would cancel all further checks.
+                logger.error("Failed to audit money totals", e);
+            }
+        }, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onBalanceChange(BalanceChange change) {
+        Totals currencyTotals = totals.computeIfAbsent(change.currency(), c -> new Totals());
+        BigDecimal balanceDelta = change.balanceDelta();
+        BigDecimal heldDelta = change.heldDelta();
+        BigDecimal totalDelta = balanceDelta.add(heldDelta);
+        currencyTotals.available.add(balanceDelta);
+        currencyTotals.held.add(heldDelta);
+        if (change.flow() == null) {
+            currencyTotals.unaccounted.add(totalDelta);
+            return;
+        }
+        switch (change.flow()) {
+            case OPENING, REPLICATION -> currencyTotals.issued.add(totalDelta);
+            case TRANSFER_IN -> currencyTotals.transferredIn.add(totalDelta);
+            case TRANSFER_OUT -> currencyTotals.transferredOut.add(totalDelta.negate());
+            case WITHDRAWAL -> {
+                currencyTotals.inFlightWithdrawals.add(heldDelta);
+                currencyTotals.completedWithdrawals.add(totalDelta.negate());
+            }
+            // Holds only move money within the account.
+            case HOLD -> currencyTotals.unaccounted.add(totalDelta);
+        }
+    }
+
+    /**
+     * @return current totals and drift of every currency
+     */
+    public AuditReport report() {
+        long now = System.currentTimeMillis();
+        List<CurrencyAudit> audits = totals.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparing(Currency::getCurrencyCode)))
+                .map(e -> e.getValue().audit(e.getKey(), now))
+                .toList();
+        return new AuditReport(audits.stream().allMatch(a -> !a.alert()), audits);
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+    }
+
+    void check(long now) {
+        totals.forEach((currency, currencyTotals) -> {
+            BigDecimal drift = currencyTotals.unaccounted.sum();
+            if (drift.signum() == 0) {
+                if (currencyTotals.alert) {
+                    logger.info("Money of {} adds up again", currency);
+                }
+                currencyTotals.driftingSince = 0;
+                currencyTotals.alert = false;
+                return;
+            }
+            if (currencyTotals.driftingSince == 0) {
+                currencyTotals.driftingSince = now;
+            }
+            // Every new leak is reported, not just the first one.
+            if (currencyTotals.alert && drift.compareTo(currencyTotals.alertedDrift) == 0) {
+                return;
+            }
+            long driftingMillis = now - currencyTotals.driftingSince;
+            currencyTotals.alert = true;
+            currencyTotals.alertedDrift = drift;
+            logger.error("Money of {} doesn't add up: {} unaccounted for during {} ms", currency, drift, driftingMillis);
+            Events.commit(new MoneyDriftEvent(), e -> {
+                e.currency = currency.getCurrencyCode();
+                e.drift = drift.toPlainString();
+                e.driftingMillis = driftingMillis;
+            });
+        });
+    }
+
+    private static final class Totals {
+        private final StripedSum available = new StripedSum();
+        private final StripedSum held = new StripedSum();
+        private final StripedSum inFlightWithdrawals = new StripedSum();
+        private final StripedSum completedWithdrawals = new StripedSum();
+        private final StripedSum issued = new StripedSum();
+        private final StripedSum transferredIn = new StripedSum();
+        private final StripedSum transferredOut = new StripedSum();
+        // Sides of the equation are summed separately, so under load they seldom add up at the moment they're read;
+        // unexplained parts of changes are summed on their own and always do.
+        private final StripedSum unaccounted = new StripedSum();
+        // Only written by the checker thread: since when the drift has been non-zero, 0 if it was zero on the last
+        // check.
+        private volatile long driftingSince;
+        private BigDecimal alertedDrift = BigDecimal.ZERO;
+        private volatile boolean alert;
+
+        private CurrencyAudit audit(Currency currency, long now) {
+            long since = driftingSince;
+            return new CurrencyAudit(currency.getCurrencyCode(),
+                    available.sum(),
+                    held.sum(),
+                    inFlightWithdrawals.sum(),
+                    completedWithdrawals.sum(),
+                    issued.sum(),
+                    transferredIn.sum(),
+                    transferredOut.sum(),
+                    unaccounted.sum(),
+                    since == 0 ? 0 : now - since,
+                    alert);
+        }
+    }
+}
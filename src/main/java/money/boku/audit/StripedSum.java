@@ -0,0 +1,44 @@
+package money.boku.audit;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sum of amounts updated by many threads at once. Like {@link java.util.concurrent.atomic.LongAdder}, it's split into
+ * stripes picked by the updating thread, so concurrent updates rarely compete for the same value; reading the sum
+ * adds up all stripes. Sum read while it's being updated may miss some of the concurrent updates.
+ */
+class StripedSum {
+    private static final int STRIPES = 16; // can be configurable, should be a power of 2
+    // Stripes are spread apart, so that each of them is on its own cache line.
+    private static final int PADDING = 16;
+
+    private final AtomicReferenceArray<BigDecimal> stripes = new AtomicReferenceArray<>(STRIPES * PADDING);
+
+    StripedSum() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.set(i * PADDING, BigDecimal.ZERO);
+        }
+    }
+
+    void add(BigDecimal amount) {
+        if (amount.signum() == 0) {
+            return;
+        }
+        int idx = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+        while (true) {
+            BigDecimal current = stripes.get(idx);
+            if (stripes.compareAndSet(idx, current, current.add(amount))) {
+                return;
+            }
+        }
+    }
+
+    BigDecimal sum() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < STRIPES; i++) {
+            sum = sum.add(stripes.get(i * PADDING));
+        }
+        return sum;
+    }
+}
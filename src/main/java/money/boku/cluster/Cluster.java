@@ -0,0 +1,62 @@
+package money.boku.cluster;
+
+import money.boku.IdGenerator;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * View of the cluster from a single node: which node owns which ids.
+ * <p>
+ * Every id created by the node (accounts, withdrawal requests) is generated so that it's owned by the node itself.
+ * This way requests can be routed by id alone and no directory of accounts is needed.
+ */
+public class Cluster {
+    private final ClusterNode self;
+    private final List<ClusterNode> nodes;
+    private final ConsistentHashRing ring;
+
+    public Cluster(String selfId, List<ClusterNode> nodes) {
+        this.nodes = List.copyOf(nodes);
+        this.self = this.nodes.stream()
+                .filter(n -> n.id().equals(selfId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Node %s is not a member of the cluster".formatted(selfId)));
+        this.ring = new ConsistentHashRing(this.nodes);
+    }
+
+    public ClusterNode getSelf() {
+        return self;
+    }
+
+    public List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    public ClusterNode ownerOf(UUID id) {
+        return ring.ownerOf(id);
+    }
+
+    public boolean isLocal(UUID id) {
+        return nodes.size() == 1 || ownerOf(id).equals(self);
+    }
+
+    /**
+     * Returns generator of ids owned by this node. With N nodes it takes N attempts on average to find one.
+     */
+    public IdGenerator localIdGenerator() {
+        return () -> {
+            UUID id = UUID.randomUUID();
+            while (!isLocal(id)) {
+                id = UUID.randomUUID();
+            }
+            return id;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Cluster{self=%s, nodes=%s}".formatted(self.id(), nodes.stream().map(ClusterNode::id).toList());
+    }
+}
@@ -0,0 +1,95 @@
+package money.boku.cluster;
+
+import io.javalin.http.Context;
+import io.javalin.http.UnauthorizedResponse;
+import money.boku.account.AccountNotFoundException;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Internal API used by cluster nodes to execute transfers between accounts owned by different nodes. Only served in
+ * a cluster, and only to callers presenting the cluster secret.
+ */
+public class ClusterAPI {
+    public static final String INTERNAL_PATHS = "/internal/*";
+    public static final String CREDIT_PATH = "/internal/transfers/{transferId}";
+    public static final String PREPARE_CREDIT_PATH = "/internal/transfers/{transferId}/prepare";
+    public static final String COMMIT_CREDIT_PATH = "/internal/transfers/{transferId}/commit";
+    public static final String ABORT_CREDIT_PATH = "/internal/transfers/{transferId}/abort";
+
+    private final CreditParticipant creditParticipant;
+    private final byte[] clusterSecret;
+
+    public ClusterAPI(CreditParticipant creditParticipant, String clusterSecret) {
+        this.creditParticipant = Objects.requireNonNull(creditParticipant);
+        this.clusterSecret = clusterSecret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rejects internal requests which don't come from another cluster node.
+     *
+     * @param ctx request context
+     */
+    public void handleBeforeRequest(@NotNull Context ctx) {
+        String secret = ctx.header(ClusterClient.CLUSTER_SECRET_HEADER);
+        // Constant-time comparison doesn't tell how much of the secret was guessed right.
+        if (secret == null || !MessageDigest.isEqual(clusterSecret, secret.getBytes(StandardCharsets.UTF_8))) {
+            throw new UnauthorizedResponse();
+        }
+    }
+
+    /**
+     * Handles request to prepare credit of a cross-node transfer.
+     *
+     * @param ctx request context
+     * @throws AccountNotFoundException      if there's no receiver account
+     * @throws ExchangeRateNotFoundException if the amount can't be converted into the currency of the receiver account
+     */
+    public void handlePrepareCreditRequest(@NotNull Context ctx) throws AccountNotFoundException, ExchangeRateNotFoundException {
+        PrepareCreditRequest request = ctx.bodyValidator(PrepareCreditRequest.class)
+                .check(r -> r.from() != null, "sender shouldn't be empty")
+                .check(r -> r.to() != null, "receiver shouldn't be empty")
+                .check(r -> r.amount() != null && r.amount().signum() > 0, "amount is required and should be positive number")
+                .check(r -> r.currency() != null, "currency shouldn't be empty")
+                .get();
+        creditParticipant.prepare(transferId(ctx), request.from(), request.to(), request.amount(), request.currency());
+    }
+
+    /**
+     * Handles request to commit credit of a cross-node transfer.
+     *
+     * @param ctx request context
+     * @throws AccountNotFoundException   if there's no receiver account
+     * @throws CreditNotPreparedException if the transfer wasn't prepared
+     */
+    public void handleCommitCreditRequest(@NotNull Context ctx) throws AccountNotFoundException, CreditNotPreparedException {
+        creditParticipant.commit(transferId(ctx));
+    }
+
+    /**
+     * Handles request to abort credit of a cross-node transfer.
+     *
+     * @param ctx request context
+     */
+    public void handleAbortCreditRequest(@NotNull Context ctx) {
+        creditParticipant.abort(transferId(ctx));
+    }
+
+    /**
+     * Handles request for the state of a cross-node transfer credit.
+     *
+     * @param ctx request context
+     */
+    public void handleCreditStateRequest(@NotNull Context ctx) {
+        ctx.json(creditParticipant.state(transferId(ctx)));
+    }
+
+    private static UUID transferId(Context ctx) {
+        return UUID.fromString(ctx.pathParam("transferId"));
+    }
+}
@@ -0,0 +1,180 @@
+package money.boku.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import money.boku.account.AccountNotFoundException;
+import money.boku.operations.MoneyAPI;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP client for talking to other cluster nodes.
+ */
+public class ClusterClient {
+    /**
+     * Set on requests forwarded between nodes. A forwarded request is always handled by the receiving node, which
+     * prevents forwarding loops if nodes temporarily disagree about the ring.
+     */
+    public static final String FORWARDED_BY_HEADER = "X-Forwarded-By-Node";
+    /**
+     * Authenticates calls to {@link ClusterAPI}.
+     */
+    public static final String CLUSTER_SECRET_HEADER = "X-Cluster-Secret";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5); // can be configurable
+    // Forwarded requests may be long polls, see MoneyAPI#MAX_WAIT_MILLIS.
+    private static final Duration FORWARD_TIMEOUT = TIMEOUT.plusMillis(MoneyAPI.MAX_WAIT_MILLIS);
+    // Conditional request headers and caching response headers are passed through.
+    private static final List<String> FORWARDED_REQUEST_HEADERS = List.of(Header.CONTENT_TYPE, Header.IF_NONE_MATCH);
+    private static final List<String> FORWARDED_RESPONSE_HEADERS = List.of(Header.CONTENT_TYPE, Header.ETAG, Header.CACHE_CONTROL);
+
+    private final ClusterNode self;
+    private final String clusterSecret;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(TIMEOUT)
+            .build();
+
+    /**
+     * @param self          this node
+     * @param clusterSecret secret shared by all cluster nodes; null if standalone
+     */
+    public ClusterClient(ClusterNode self, String clusterSecret) {
+        this.self = self;
+        this.clusterSecret = clusterSecret;
+    }
+
+    /**
+     * Sends the request to another node as is and copies its response back to the context.
+     *
+     * @param ctx  request context
+     * @param node node to forward the request to
+     * @return future completed when the response is copied
+     */
+    public CompletableFuture<Void> forward(Context ctx, ClusterNode node) {
+        String query = ctx.queryString();
+        URI uri = node.uri().resolve(ctx.path() + (query == null ? "" : "?" + query));
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(FORWARD_TIMEOUT)
+                .header(FORWARDED_BY_HEADER, self.id())
+                .method(ctx.method().name(), HttpRequest.BodyPublishers.ofByteArray(ctx.bodyAsBytes()));
+        for (String header : FORWARDED_REQUEST_HEADERS) {
+            String value = ctx.header(header);
+            if (value != null) {
+                request.header(header, value);
+            }
+        }
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw new NodeUnavailableException("Failed to forward request to node " + node.id(), error);
+                    }
+                    ctx.status(response.statusCode());
+                    for (String header : FORWARDED_RESPONSE_HEADERS) {
+                        response.headers().firstValue(header).ifPresent(value -> ctx.header(header, value));
+                    }
+                    ctx.result(response.body());
+                    return null;
+                });
+    }
+
+    /**
+     * First phase of a cross-node transfer, see {@link CreditParticipant#prepare}.
+     */
+    public void prepareCredit(ClusterNode node, UUID transferId, UUID from, UUID to, BigDecimal amount, Currency currency) throws AccountNotFoundException, ExchangeRateNotFoundException {
+        HttpResponse<String> response = post(node, "/internal/transfers/%s/prepare".formatted(transferId), new PrepareCreditRequest(from, to, amount, currency));
+        switch (response.statusCode()) {
+            case 200 -> {
+            }
+            case 400 -> throw new IllegalArgumentException(response.body());
+            case 404 -> throw new AccountNotFoundException("Account %s is not found".formatted(to));
+            case 422 -> throw new ExchangeRateNotFoundException("No exchange rate from %s on node %s".formatted(currency, node.id()));
+            default -> throw unexpectedResponse(node, response);
+        }
+    }
+
+    /**
+     * Second phase of a cross-node transfer, see {@link CreditParticipant#commit(UUID)}.
+     *
+     * @throws NodeUnavailableException if the receiver node can't be reached or fails, so the commit can be retried
+     * @throws CreditRejectedException  if the receiver node refused the commit, e.g. because the credit has expired
+     */
+    public void commitCredit(ClusterNode node, UUID transferId) throws CreditRejectedException {
+        HttpResponse<String> response = post(node, "/internal/transfers/%s/commit".formatted(transferId), null);
+        if (response.statusCode() == 200) {
+            return;
+        }
+        if (response.statusCode() >= 500) {
+            throw unexpectedResponse(node, response);
+        }
+        throw new CreditRejectedException("Node %s responded with %d to commit of transfer %s".formatted(node.id(), response.statusCode(), transferId));
+    }
+
+    /**
+     * Asks the receiver node about the credit of a cross-node transfer, see {@link CreditParticipant#state(UUID)}.
+     *
+     * @throws NodeUnavailableException if the receiver node can't be reached or doesn't answer
+     */
+    public CreditState creditState(ClusterNode node, UUID transferId) {
+        HttpResponse<String> response = send(node, HttpRequest.newBuilder(node.uri().resolve("/internal/transfers/%s".formatted(transferId))).GET());
+        if (response.statusCode() != 200) {
+            throw unexpectedResponse(node, response);
+        }
+        try {
+            return objectMapper.readValue(response.body(), CreditState.class);
+        } catch (IOException e) {
+            throw new NodeUnavailableException("Node %s responded with unknown credit state %s".formatted(node.id(), response.body()), e);
+        }
+    }
+
+    /**
+     * Cancels prepared cross-node transfer, see {@link CreditParticipant#abort(UUID)}.
+     */
+    public void abortCredit(ClusterNode node, UUID transferId) {
+        post(node, "/internal/transfers/%s/abort".formatted(transferId), null);
+    }
+
+    private static NodeUnavailableException unexpectedResponse(ClusterNode node, HttpResponse<String> response) {
+        return new NodeUnavailableException("Node %s responded with %d to %s".formatted(node.id(), response.statusCode(), response.uri().getPath()));
+    }
+
+    private HttpResponse<String> post(ClusterNode node, String path, Object body) {
+        String json;
+        try {
+            json = body == null ? "" : objectMapper.writeValueAsString(body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to serialize request to node " + node.id(), e);
+        }
+        return send(node, HttpRequest.newBuilder(node.uri().resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)));
+    }
+
+    private HttpResponse<String> send(ClusterNode node, HttpRequest.Builder request) {
+        try {
+            return httpClient.send(request
+                    .timeout(TIMEOUT)
+                    .header(FORWARDED_BY_HEADER, self.id())
+                    .header(CLUSTER_SECRET_HEADER, clusterSecret)
+                    .build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new NodeUnavailableException("Failed to reach node " + node.id(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NodeUnavailableException("Interrupted while calling node " + node.id(), e);
+        }
+    }
+}
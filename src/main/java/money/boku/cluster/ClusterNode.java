@@ -0,0 +1,17 @@
+package money.boku.cluster;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Member of the cluster.
+ *
+ * @param id  unique id of the node, also determines its position on the hash ring
+ * @param uri base URI of the node HTTP API
+ */
+public record ClusterNode(String id, URI uri) {
+    public ClusterNode {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(uri);
+    }
+}
@@ -0,0 +1,64 @@
+package money.boku.cluster;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Wraps HTTP handlers so that requests are handled by the node owning the account (or withdrawal request) they
+ * refer to. Requests for ids owned by other nodes are forwarded there.
+ */
+public class ClusterRouter {
+    private final Cluster cluster;
+    private final ClusterClient clusterClient;
+
+    public ClusterRouter(Cluster cluster, ClusterClient clusterClient) {
+        this.cluster = Objects.requireNonNull(cluster);
+        this.clusterClient = Objects.requireNonNull(clusterClient);
+    }
+
+    /**
+     * Returns handler that executes {@code localHandler} if the routing key is owned by this node and forwards
+     * the request to the owner otherwise.
+     *
+     * @param routingKey   extracts id the request refers to
+     * @param localHandler handler to execute on the owner node
+     * @return routing handler
+     */
+    public Handler route(RoutingKey routingKey, Handler localHandler) {
+        if (cluster.getNodes().size() == 1) {
+            return localHandler;
+        }
+        return ctx -> {
+            UUID key = null;
+            if (ctx.header(ClusterClient.FORWARDED_BY_HEADER) == null) {
+                try {
+                    key = routingKey.extract(ctx);
+                } catch (Exception e) {
+                    // Malformed request, let the local handler validate it and report the error.
+                }
+            }
+            if (key == null || cluster.isLocal(key)) {
+                localHandler.handle(ctx);
+            } else {
+                ClusterNode owner = cluster.ownerOf(key);
+                ctx.future(() -> clusterClient.forward(ctx, owner));
+            }
+        };
+    }
+
+    /**
+     * Extracts id from the request.
+     */
+    @FunctionalInterface
+    public interface RoutingKey {
+        /**
+         * @param ctx request context
+         * @return id the request refers to; null if it can't be determined
+         * @throws Exception if request is malformed
+         */
+        UUID extract(Context ctx) throws Exception;
+    }
+}
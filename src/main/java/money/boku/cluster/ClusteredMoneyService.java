@@ -0,0 +1,232 @@
+package money.boku.cluster;
+
+import money.boku.account.AccountDatastore;
+import money.boku.account.AccountNotFoundException;
+import money.boku.account.Flow;
+import money.boku.account.NegativeBalanceRequestException;
+import money.boku.history.PostingType;
+import money.boku.history.TransactionHistory;
+import money.boku.operations.MoneyService;
+import money.boku.operations.fx.ExchangeRateCache;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import money.boku.operations.limits.VelocityLimitExceededException;
+import money.boku.operations.limits.VelocityLimiter;
+import money.boku.operations.scheduled.ScheduledTransfer;
+import money.boku.operations.scheduled.ScheduledTransferNotFoundException;
+import money.boku.operations.withdrawal.WithdrawalNotFoundException;
+import money.boku.operations.withdrawal.WithdrawalService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MoneyService} of a cluster node. Expects to be called only for senders owned by this node (see
+ * {@link ClusterRouter}); everything that doesn't involve another node is delegated to the local service.
+ * <p>
+ * Transfer to an account owned by another node is executed in two phases:
+ * <ol>
+ *     <li>receiver node prepares the credit, which checks that the receiver exists and converts the amount into
+ *     its currency. Only the prepared amount can be credited later;</li>
+ *     <li>money is reserved by debiting the sender account with the usual {@link AccountDatastore#decreaseBalance};</li>
+ *     <li>receiver node commits the credit. Commit is idempotent and is retried while the receiver node can't be
+ *     reached or fails. Unacknowledged commits are kept in {@link CommitIntentStore} and resumed when the node
+ *     restarts.</li>
+ * </ol>
+ * If the sender can't be debited, prepared credit is aborted. If the receiver node refuses the commit, e.g. because
+ * the prepared credit expired while it was unreachable, the sender node asks it how the credit ended: an aborted
+ * credit is refunded to the sender, a committed one only lost its acknowledgement. A credit the receiver doesn't know
+ * about can't be settled either way without risking to create money, so it's left to an operator.
+ */
+public class ClusteredMoneyService implements MoneyService, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ClusteredMoneyService.class);
+    private static final long MAX_COMMIT_RETRY_DELAY_MILLIS = 5_000; // can be configurable
+
+    private final MoneyService localMoneyService;
+    private final Cluster cluster;
+    private final ClusterClient clusterClient;
+    private final AccountDatastore accountDatastore;
+    private final TransactionHistory transactionHistory;
+    private final ExchangeRateCache exchangeRateCache;
+    private final VelocityLimiter velocityLimiter;
+    private final CommitIntentStore commitIntentStore;
+    private final ScheduledExecutorService commitRetryExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public ClusteredMoneyService(MoneyService localMoneyService,
+                                 Cluster cluster,
+                                 ClusterClient clusterClient,
+                                 AccountDatastore accountDatastore,
+                                 TransactionHistory transactionHistory,
+                                 ExchangeRateCache exchangeRateCache,
+                                 VelocityLimiter velocityLimiter,
+                                 CommitIntentStore commitIntentStore) {
+        this.localMoneyService = Objects.requireNonNull(localMoneyService);
+        this.cluster = Objects.requireNonNull(cluster);
+        this.clusterClient = Objects.requireNonNull(clusterClient);
+        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+        this.transactionHistory = Objects.requireNonNull(transactionHistory);
+        this.exchangeRateCache = Objects.requireNonNull(exchangeRateCache);
+        this.velocityLimiter = Objects.requireNonNull(velocityLimiter);
+        this.commitIntentStore = Objects.requireNonNull(commitIntentStore);
+    }
+
+    /**
+     * Resumes commits which weren't acknowledged before restart.
+     *
+     * @throws IOException if unacknowledged commits can't be read
+     */
+    public void start() throws IOException {
+        for (CommitIntent intent : commitIntentStore.load()) {
+            ClusterNode receiverNode = cluster.getNodes().stream()
+                    .filter(n -> n.id().equals(intent.nodeId()))
+                    .findFirst()
+                    .orElse(null);
+            if (receiverNode == null) {
+                logger.error("Can't commit transfer {} on node {} which is no longer in the cluster", intent.transferId(), intent.nodeId());
+                continue;
+            }
+            logger.info("Resuming commit of transfer {} on node {}", intent.transferId(), intent.nodeId());
+            commitRetryExecutor.execute(() -> commit(receiverNode, intent, 0));
+        }
+    }
+
+    @Override
+    public void transfer(UUID from, UUID to, BigDecimal amount, Currency currency) throws NegativeBalanceRequestException, AccountNotFoundException, ExchangeRateNotFoundException, VelocityLimitExceededException {
+        if (cluster.isLocal(to)) {
+            localMoneyService.transfer(from, to, amount, currency);
+            return;
+        }
+        ClusterNode receiverNode = cluster.ownerOf(to);
+        Currency fromCurrency = accountDatastore.getAccount(from).getCurrency();
+        Currency amountCurrency = currency == null ? fromCurrency : currency;
+        BigDecimal debitAmount = exchangeRateCache.convert(amount, amountCurrency, fromCurrency, RoundingMode.CEILING);
+        if (debitAmount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount is too small to be converted");
+        }
+        UUID transferId = UUID.randomUUID();
+        clusterClient.prepareCredit(receiverNode, transferId, from, to, amount, amountCurrency);
+
+        try {
+            long recordedAt = velocityLimiter.record(from, debitAmount);
+            try {
+                accountDatastore.decreaseBalance(from, debitAmount, Flow.TRANSFER_OUT);
+            } catch (NegativeBalanceRequestException | AccountNotFoundException e) {
+                velocityLimiter.unrecord(from, debitAmount, recordedAt);
+                throw e;
+            }
+        } catch (Exception e) {
+            abortQuietly(receiverNode, transferId);
+            throw e;
+        }
+        CommitIntent intent = new CommitIntent(transferId, receiverNode.id(), from, to, debitAmount);
+        commitIntentStore.save(intent);
+        transactionHistory.record(from, PostingType.TRANSFER_OUT, debitAmount, to);
+        commit(receiverNode, intent, 0);
+    }
+
+    @Override
+    public WithdrawalService.WithdrawalId withdraw(UUID from, WithdrawalService.Address to, BigDecimal amount) throws NegativeBalanceRequestException, AccountNotFoundException, VelocityLimitExceededException {
+        return localMoneyService.withdraw(from, to, amount);
+    }
+
+    @Override
+    public WithdrawalService.WithdrawalState withdrawRequestState(WithdrawalService.WithdrawalId withdrawalId) throws WithdrawalNotFoundException {
+        return localMoneyService.withdrawRequestState(withdrawalId);
+    }
+
+    @Override
+    public CompletableFuture<WithdrawalService.WithdrawalState> awaitWithdrawRequestState(WithdrawalService.WithdrawalId withdrawalId, long waitMillis) throws WithdrawalNotFoundException {
+        return localMoneyService.awaitWithdrawRequestState(withdrawalId, waitMillis);
+    }
+
+    @Override
+    public ScheduledTransfer scheduleTransfer(UUID from, UUID to, BigDecimal amount, Currency currency, long executeAt, long intervalMillis) throws AccountNotFoundException {
+        return localMoneyService.scheduleTransfer(from, to, amount, currency, executeAt, intervalMillis);
+    }
+
+    @Override
+    public ScheduledTransfer getScheduledTransfer(UUID id) throws ScheduledTransferNotFoundException {
+        return localMoneyService.getScheduledTransfer(id);
+    }
+
+    @Override
+    public void cancelScheduledTransfer(UUID id) throws ScheduledTransferNotFoundException {
+        localMoneyService.cancelScheduledTransfer(id);
+    }
+
+    private void commit(ClusterNode receiverNode, CommitIntent intent, int attempt) {
+        try {
+            clusterClient.commitCredit(receiverNode, intent.transferId());
+            commitIntentStore.remove(intent.transferId());
+        } catch (CreditRejectedException e) {
+            settleRejected(receiverNode, intent, attempt, e);
+        } catch (NodeUnavailableException e) {
+            retryCommit(receiverNode, intent, attempt, e);
+        }
+    }
+
+    private void settleRejected(ClusterNode receiverNode, CommitIntent intent, int attempt, CreditRejectedException rejection) {
+        CreditState state;
+        try {
+            state = clusterClient.creditState(receiverNode, intent.transferId());
+        } catch (NodeUnavailableException e) {
+            retryCommit(receiverNode, intent, attempt, e);
+            return;
+        }
+        switch (state) {
+            case COMMITTED -> commitIntentStore.remove(intent.transferId());
+            case ABORTED -> refund(intent);
+            // Intent is kept, so the commit is tried again after restart.
+            case PENDING, UNKNOWN -> logger.error("{}, credit is {} there; transfer has to be reconciled manually", rejection.getMessage(), state);
+        }
+    }
+
+    private void refund(CommitIntent intent) {
+        try {
+            // Velocity limits keep counting the amount: the limiter doesn't outlive restarts to undo it reliably.
+            accountDatastore.increaseBalance(intent.from(), intent.amount(), Flow.TRANSFER_OUT);
+        } catch (AccountNotFoundException e) {
+            // Accounts are never removed.
+            throw new IllegalStateException(e);
+        }
+        transactionHistory.record(intent.from(), PostingType.TRANSFER_REFUND, intent.amount(), intent.to());
+        commitIntentStore.remove(intent.transferId());
+        logger.warn("Refunded transfer {} which node {} aborted", intent.transferId(), intent.nodeId());
+    }
+
+    private void retryCommit(ClusterNode receiverNode, CommitIntent intent, int attempt, NodeUnavailableException failure) {
+        long delay = Math.min(MAX_COMMIT_RETRY_DELAY_MILLIS, 50L << Math.min(attempt, 10));
+        logger.warn("Failed to commit transfer %s on node %s, retrying in %d ms".formatted(intent.transferId(), receiverNode.id(), delay), failure);
+        try {
+            commitRetryExecutor.schedule(() -> commit(receiverNode, intent, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException stopped) {
+            logger.warn("Node is stopping, commit of transfer {} is resumed after restart", intent.transferId());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        commitRetryExecutor.shutdownNow();
+        commitIntentStore.close();
+    }
+
+    private void abortQuietly(ClusterNode receiverNode, UUID transferId) {
+        try {
+            clusterClient.abortCredit(receiverNode, transferId);
+        } catch (NodeUnavailableException e) {
+            // Receiver node only keeps a small pending record, nothing was credited.
+            logger.warn("Failed to abort transfer %s on node %s".formatted(transferId, receiverNode.id()), e);
+        }
+    }
+}
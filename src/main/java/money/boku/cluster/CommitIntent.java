@@ -0,0 +1,16 @@
+package money.boku.cluster;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Cross-node transfer which sender is already debited, but which credit isn't acknowledged by the receiver node yet.
+ *
+ * @param transferId id of the cross-node transfer
+ * @param nodeId     id of the receiver node
+ * @param from       sender account id
+ * @param to         receiver account id
+ * @param amount     amount the sender was debited, in the currency of the sender account
+ */
+public record CommitIntent(UUID transferId, String nodeId, UUID from, UUID to, BigDecimal amount) {
+}
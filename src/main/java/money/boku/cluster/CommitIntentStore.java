@@ -0,0 +1,56 @@
+package money.boku.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps unacknowledged commits of cross-node transfers across restarts of the sender node.
+ */
+public interface CommitIntentStore extends Closeable {
+    /**
+     * Store that doesn't keep anything, unacknowledged commits are lost on restart.
+     */
+    CommitIntentStore IN_MEMORY = new CommitIntentStore() {
+        @Override
+        public Collection<CommitIntent> load() {
+            return List.of();
+        }
+
+        @Override
+        public void save(CommitIntent intent) {
+        }
+
+        @Override
+        public void remove(UUID transferId) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Reads commits which weren't acknowledged before restart. Called once before any other method.
+     *
+     * @return unacknowledged commits
+     * @throws IOException if stored data can't be read
+     */
+    Collection<CommitIntent> load() throws IOException;
+
+    /**
+     * Saves commit of a transfer which sender was just debited.
+     *
+     * @param intent commit to be acknowledged
+     */
+    void save(CommitIntent intent);
+
+    /**
+     * Forgets commit acknowledged by the receiver node.
+     *
+     * @param transferId id of the cross-node transfer
+     */
+    void remove(UUID transferId);
+}
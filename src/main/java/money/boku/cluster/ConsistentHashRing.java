@@ -0,0 +1,86 @@
+package money.boku.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maps ids to cluster nodes with consistent hashing. Every node is placed on the ring many times (virtual nodes),
+ * which evens out the share of ids owned by each node. Adding or removing a node moves only ids adjacent to its
+ * virtual nodes.
+ */
+public class ConsistentHashRing {
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    // Sorted positions of virtual nodes and their owners, kept in parallel arrays for cache-friendly binary search.
+    private final long[] positions;
+    private final ClusterNode[] owners;
+
+    public ConsistentHashRing(List<ClusterNode> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(List<ClusterNode> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Ring should have at least one node");
+        }
+        record VirtualNode(long position, ClusterNode owner) {
+        }
+        VirtualNode[] virtual = new VirtualNode[nodes.size() * virtualNodes];
+        int i = 0;
+        for (ClusterNode node : nodes) {
+            for (int v = 0; v < virtualNodes; v++) {
+                virtual[i++] = new VirtualNode(hash(node.id() + "#" + v), node);
+            }
+        }
+        // Ties are practically impossible, but ordering by node id keeps the ring identical on every node anyway.
+        Arrays.sort(virtual, (a, b) -> a.position() != b.position()
+                ? Long.compare(a.position(), b.position())
+                : a.owner().id().compareTo(b.owner().id()));
+        positions = new long[virtual.length];
+        owners = new ClusterNode[virtual.length];
+        for (int j = 0; j < virtual.length; j++) {
+            positions[j] = virtual[j].position();
+            owners[j] = virtual[j].owner();
+        }
+    }
+
+    /**
+     * Returns node owning the id: the first virtual node clockwise from the id position.
+     *
+     * @param id id of an account or a withdrawal request
+     * @return owner node
+     */
+    public ClusterNode ownerOf(UUID id) {
+        int idx = Arrays.binarySearch(positions, hash(id));
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        return owners[idx == positions.length ? 0 : idx];
+    }
+
+    private static long hash(UUID id) {
+        return mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+    }
+
+    private static long hash(String value) {
+        // 64-bit FNV-1a: String#hashCode is only 32 bits wide and clusters similar strings.
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // Finalization step of MurmurHash3, spreads bits of the input over the whole long.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
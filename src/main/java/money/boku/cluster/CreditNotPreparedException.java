@@ -0,0 +1,10 @@
+package money.boku.cluster;
+
+/**
+ * Thrown when a cross-node transfer is committed without being prepared on this node, e.g. after a restart.
+ */
+public class CreditNotPreparedException extends Exception {
+    public CreditNotPreparedException(String errorMessage) {
+        super(errorMessage);
+    }
+}
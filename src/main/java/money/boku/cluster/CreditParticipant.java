@@ -0,0 +1,195 @@
+package money.boku.cluster;
+
+import money.boku.account.AccountDatastore;
+import money.boku.account.AccountNotFoundException;
+import money.boku.account.Flow;
+import money.boku.history.PostingType;
+import money.boku.history.TransactionHistory;
+import money.boku.operations.fx.ExchangeRateCache;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Currency;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receiver side of a cross-node transfer.
+ * <p>
+ * Prepare checks that the receiver account exists, converts the amount into its currency and remembers the pending
+ * credit. Commit credits exactly the prepared amount at most once per transfer, so the sender node can safely retry
+ * it until it gets an acknowledgement. Pending credit is forgotten once the receiver is credited, or aborted if it
+ * isn't committed within {@link #PREPARED_TTL_MILLIS}, e.g. because the sender failed to debit and couldn't tell.
+ * Ids of recently committed and aborted transfers are kept to answer repeated commits and state queries.
+ */
+public class CreditParticipant implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CreditParticipant.class);
+    static final long PREPARED_TTL_MILLIS = Duration.ofMinutes(10).toMillis(); // can be configurable
+    private static final long EXPIRY_INTERVAL_MILLIS = 10_000; // can be configurable
+    private static final int RECENT_CAPACITY = 100_000; // can be configurable
+
+    private final AccountDatastore accountDatastore;
+    private final TransactionHistory transactionHistory;
+    private final ExchangeRateCache exchangeRateCache;
+    private final ConcurrentMap<UUID, PendingCredit> pendingCredits = new ConcurrentHashMap<>();
+    private final RecentIds committed = new RecentIds();
+    private final RecentIds aborted = new RecentIds();
+    private final ScheduledExecutorService expiryExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public CreditParticipant(AccountDatastore accountDatastore, TransactionHistory transactionHistory, ExchangeRateCache exchangeRateCache) {
+        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+        this.transactionHistory = Objects.requireNonNull(transactionHistory);
+        this.exchangeRateCache = Objects.requireNonNull(exchangeRateCache);
+    }
+
+    /**
+     * Starts separate thread that aborts pending credits which weren't committed in time.
+     */
+    public void start() {
+        expiryExecutor.scheduleAtFixedRate(() -> {
+            try {
+                expire(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                // Uncaught exception would cancel all further expiries.
+                logger.error("Failed to expire pending credits", e);
+            }
+        }, EXPIRY_INTERVAL_MILLIS, EXPIRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers pending credit.
+     *
+     * @param transferId id of the cross-node transfer
+     * @param from       sender account id
+     * @param to         receiver account id
+     * @param amount     transfer amount
+     * @param currency   currency of the amount
+     * @throws AccountNotFoundException      if there's no receiver account
+     * @throws ExchangeRateNotFoundException if there's no exchange rate into the currency of the receiver account
+     */
+    public void prepare(UUID transferId, UUID from, UUID to, BigDecimal amount, Currency currency) throws AccountNotFoundException, ExchangeRateNotFoundException {
+        BigDecimal creditAmount = exchangeRateCache.convert(amount, currency, accountDatastore.getAccount(to).getCurrency(), RoundingMode.DOWN);
+        if (creditAmount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount is too small to be converted");
+        }
+        pendingCredits.putIfAbsent(transferId, new PendingCredit(from, to, creditAmount, System.currentTimeMillis()));
+    }
+
+    /**
+     * Credits receiver account of a prepared transfer with the prepared amount. Does nothing if the transfer was
+     * already committed.
+     *
+     * @param transferId id of the cross-node transfer
+     * @throws AccountNotFoundException   if receiver account has disappeared since prepare
+     * @throws CreditNotPreparedException if the transfer is neither pending nor recently committed
+     */
+    public void commit(UUID transferId) throws AccountNotFoundException, CreditNotPreparedException {
+        PendingCredit credit = pendingCredits.get(transferId);
+        if (credit != null) {
+            // Retried commit may arrive while the previous one is still crediting, or while the credit expires.
+            synchronized (credit) {
+                if (pendingCredits.get(transferId) == credit) {
+                    accountDatastore.increaseBalance(credit.to(), credit.amount(), Flow.TRANSFER_IN);
+                    transactionHistory.record(credit.to(), PostingType.TRANSFER_IN, credit.amount(), credit.from());
+                    committed.add(transferId);
+                    pendingCredits.remove(transferId);
+                    return;
+                }
+            }
+        }
+        if (!committed.contains(transferId)) {
+            throw new CreditNotPreparedException("Transfer %s is not prepared".formatted(transferId));
+        }
+    }
+
+    /**
+     * Forgets prepared transfer, e.g. when the sender didn't have enough money.
+     *
+     * @param transferId id of the cross-node transfer
+     */
+    public void abort(UUID transferId) {
+        PendingCredit credit = pendingCredits.get(transferId);
+        if (credit != null) {
+            abort(transferId, credit);
+        }
+    }
+
+    /**
+     * Tells whether the transfer was credited, so the sender can find out how a rejected commit ended.
+     *
+     * @param transferId id of the cross-node transfer
+     * @return state of the credit
+     */
+    public CreditState state(UUID transferId) {
+        // Ids are added to committed or aborted before the pending credit is removed.
+        if (committed.contains(transferId)) {
+            return CreditState.COMMITTED;
+        }
+        if (aborted.contains(transferId)) {
+            return CreditState.ABORTED;
+        }
+        return pendingCredits.containsKey(transferId) ? CreditState.PENDING : CreditState.UNKNOWN;
+    }
+
+    @Override
+    public void close() {
+        expiryExecutor.shutdownNow();
+    }
+
+    void expire(long now) {
+        for (Map.Entry<UUID, PendingCredit> entry : pendingCredits.entrySet()) {
+            if (now - entry.getValue().preparedAt() >= PREPARED_TTL_MILLIS && abort(entry.getKey(), entry.getValue())) {
+                logger.warn("Aborted transfer {} which wasn't committed within {} ms", entry.getKey(), PREPARED_TTL_MILLIS);
+            }
+        }
+    }
+
+    private boolean abort(UUID transferId, PendingCredit credit) {
+        synchronized (credit) {
+            if (pendingCredits.get(transferId) != credit) {
+                return false;
+            }
+            aborted.add(transferId);
+            pendingCredits.remove(transferId);
+            return true;
+        }
+    }
+
+    private record PendingCredit(UUID from, UUID to, BigDecimal amount, long preparedAt) {
+    }
+
+    private static final class RecentIds {
+        private final Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        // Insertion order for eviction. Every id is added once, since a pending credit ends once.
+        private final Queue<UUID> order = new ConcurrentLinkedQueue<>();
+
+        private void add(UUID id) {
+            ids.add(id);
+            order.add(id);
+            while (order.size() > RECENT_CAPACITY) {
+                UUID evicted = order.poll();
+                if (evicted != null) {
+                    ids.remove(evicted);
+                }
+            }
+        }
+
+        private boolean contains(UUID id) {
+            return ids.contains(id);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package money.boku.cluster;
+
+/**
+ * Thrown when the receiver node answers a commit with a definite error, so retrying the commit can't succeed.
+ */
+public class CreditRejectedException extends Exception {
+    public CreditRejectedException(String errorMessage) {
+        super(errorMessage);
+    }
+}
@@ -0,0 +1,15 @@
+package money.boku.cluster;
+
+/**
+ * What the receiver node knows about the credit of a cross-node transfer.
+ */
+public enum CreditState {
+    /** Prepared, neither committed nor aborted yet. */
+    PENDING,
+    /** Receiver account is credited. */
+    COMMITTED,
+    /** Aborted or expired before commit; it will never be credited. */
+    ABORTED,
+    /** Never prepared on this node, or forgotten since, e.g. after restart. */
+    UNKNOWN
+}
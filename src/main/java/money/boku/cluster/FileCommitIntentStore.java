@@ -0,0 +1,187 @@
+package money.boku.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * {@link CommitIntentStore} backed by an append-only binary log file, the same way as
+ * {@link money.boku.operations.scheduled.FileScheduledTransferStore}. The file is rewritten with only unacknowledged
+ * commits on startup and whenever obsolete records start to dominate it.
+ * <pre>
+ * header: magic (int), format version (byte)
+ * SAVE:   type (byte), transfer id (2 longs), receiver node id (UTF), from, to (2 longs each), amount scale (int),
+ *         amount unscaled value (short length + bytes)
+ * REMOVE: type (byte), transfer id (2 longs)
+ * </pre>
+ * Records are flushed to the OS on every write, but not forced to disk: a machine crash may lose the latest changes,
+ * a process crash doesn't. A record torn by a crash at the end of the file is ignored.
+ */
+public class FileCommitIntentStore implements CommitIntentStore {
+    private static final Logger logger = LoggerFactory.getLogger(FileCommitIntentStore.class);
+    private static final int MAGIC = 0x42434349; // "BCCI"
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte SAVE = 1;
+    private static final byte REMOVE = 2;
+    private static final long MIN_RECORDS_TO_COMPACT = 10_000;
+
+    private final Path path;
+    // Commits are acknowledged within milliseconds unless the receiver node is down, so this stays small.
+    private final Map<UUID, CommitIntent> pending = new LinkedHashMap<>();
+    private DataOutputStream out;
+    private long recordsSinceCompaction;
+
+    public FileCommitIntentStore(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized Collection<CommitIntent> load() throws IOException {
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                readHeader(in);
+                while (true) {
+                    byte type;
+                    try {
+                        type = in.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    try {
+                        if (type == SAVE) {
+                            CommitIntent intent = readIntent(in);
+                            pending.put(intent.transferId(), intent);
+                        } else if (type == REMOVE) {
+                            pending.remove(readUuid(in));
+                        } else {
+                            throw new IOException("Unknown record type %d in %s".formatted(type, path));
+                        }
+                    } catch (EOFException e) {
+                        logger.warn("Ignoring incomplete record at the end of {}", path);
+                        break;
+                    }
+                }
+            }
+        }
+        rewrite();
+        return List.copyOf(pending.values());
+    }
+
+    @Override
+    public synchronized void save(CommitIntent intent) {
+        try {
+            append(intent);
+            pending.put(intent.transferId(), intent);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save commit of transfer " + intent.transferId(), e);
+        }
+    }
+
+    @Override
+    public synchronized void remove(UUID transferId) {
+        try {
+            out.writeByte(REMOVE);
+            writeUuid(transferId);
+            out.flush();
+            recordsSinceCompaction++;
+            pending.remove(transferId);
+            if (recordsSinceCompaction > MIN_RECORDS_TO_COMPACT + 2L * pending.size()) {
+                rewrite();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove commit of transfer " + transferId, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    private void append(CommitIntent intent) throws IOException {
+        out.writeByte(SAVE);
+        writeUuid(intent.transferId());
+        out.writeUTF(intent.nodeId());
+        writeUuid(intent.from());
+        writeUuid(intent.to());
+        out.writeInt(intent.amount().scale());
+        byte[] unscaled = intent.amount().unscaledValue().toByteArray();
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+        out.flush();
+        recordsSinceCompaction++;
+    }
+
+    private void rewrite() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileOutputStream tmpFile = new FileOutputStream(tmp.toFile());
+        out = new DataOutputStream(new BufferedOutputStream(tmpFile));
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        for (CommitIntent intent : pending.values()) {
+            append(intent);
+        }
+        out.flush();
+        tmpFile.getFD().sync();
+        out.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile(), true)));
+        recordsSinceCompaction = 0;
+    }
+
+    private void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(path + " is not a commit intents file");
+        }
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version %d of %s".formatted(version, path));
+        }
+    }
+
+    private void writeUuid(UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static CommitIntent readIntent(DataInputStream in) throws IOException {
+        UUID transferId = readUuid(in);
+        String nodeId = in.readUTF();
+        UUID from = readUuid(in);
+        UUID to = readUuid(in);
+        int scale = in.readInt();
+        int length = in.readUnsignedShort();
+        byte[] unscaled = in.readNBytes(length);
+        if (unscaled.length != length) {
+            throw new EOFException();
+        }
+        return new CommitIntent(transferId, nodeId, from, to, new BigDecimal(new BigInteger(unscaled), scale));
+    }
+}
@@ -0,0 +1,14 @@
+package money.boku.cluster;
+
+/**
+ * Thrown when a request to another cluster node could not be completed.
+ */
+public class NodeUnavailableException extends RuntimeException {
+    public NodeUnavailableException(String errorMessage) {
+        super(errorMessage);
+    }
+
+    public NodeUnavailableException(String errorMessage, Throwable cause) {
+        super(errorMessage, cause);
+    }
+}
@@ -0,0 +1,17 @@
+package money.boku.cluster;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * Sent by the node owning the sender account to the node owning the receiver account in the first phase of
+ * a cross-node transfer.
+ *
+ * @param from     sender account id, recorded in receiver account history
+ * @param to       receiver account id
+ * @param amount   transfer amount
+ * @param currency currency of the amount
+ */
+public record PrepareCreditRequest(UUID from, UUID to, BigDecimal amount, Currency currency) {
+}
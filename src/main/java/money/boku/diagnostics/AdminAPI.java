@@ -0,0 +1,35 @@
+package money.boku.diagnostics;
+
+import io.javalin.http.Context;
+import io.javalin.http.UnauthorizedResponse;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Guards the admin API, which is only served if an admin token is configured, and only to callers presenting it.
+ */
+public class AdminAPI {
+    public static final String ADMIN_PATHS = "/admin/*";
+    public static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    private final byte[] adminToken;
+
+    public AdminAPI(String adminToken) {
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rejects admin requests which don't carry the admin token.
+     *
+     * @param ctx request context
+     */
+    public void handleBeforeRequest(@NotNull Context ctx) {
+        String token = ctx.header(ADMIN_TOKEN_HEADER);
+        // Constant-time comparison doesn't tell how much of the token was guessed right.
+        if (token == null || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+            throw new UnauthorizedResponse();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Single change of account balance. Retries show contention on the account.
+ */
+@Name("money.boku.BalanceUpdate")
+@Label("Balance Update")
+@Category({"Boku", "Accounts"})
+@Description("Compare-and-set update of account balance")
+public class BalanceUpdateEvent extends Event {
+    @Label("Account")
+    public String accountId;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("CAS Retries")
+    @Description("Number of failed compare-and-set attempts caused by concurrent updates of the same account")
+    public int casRetries;
+}
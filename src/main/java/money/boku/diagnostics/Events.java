@@ -0,0 +1,29 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Event;
+
+import java.util.function.Consumer;
+
+/**
+ * Helpers for the service's own flight recorder events.
+ */
+public final class Events {
+    private Events() {
+    }
+
+    /**
+     * Ends the event and commits it if it's being recorded. Fields are only filled in then, so an event costs next to
+     * nothing while no recording is running.
+     *
+     * @param event  event to end
+     * @param fields fills in fields of the event
+     * @param <E>    type of the event
+     */
+    public static <E extends Event> void commit(E event, Consumer<? super E> fields) {
+        event.end();
+        if (event.shouldCommit()) {
+            fields.accept(event);
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Money of some currency has been created or destroyed unaccounted for, and it wasn't caused by in-flight operations.
+ */
+@Name("money.boku.MoneyDrift")
+@Label("Money Drift")
+@Category({"Boku", "Audit"})
+@Description("Audited totals of a currency don't add up")
+public class MoneyDriftEvent extends Event {
+    @Label("Currency")
+    public String currency;
+
+    @Label("Drift")
+    public String drift;
+
+    @Label("Drifting For (ms)")
+    public long driftingMillis;
+}
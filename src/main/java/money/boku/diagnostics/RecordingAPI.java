@@ -0,0 +1,73 @@
+package money.boku.diagnostics;
+
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Admin API for JDK Flight Recorder recordings of the running server.
+ */
+public class RecordingAPI {
+    public static final String RECORDINGS_PATH = "/admin/recordings";
+    public static final String STOP_RECORDING_PATH = "/admin/recordings/{id}/stop";
+
+    private static final long DEFAULT_MAX_AGE_SECONDS = 600;
+
+    private final RecordingManager recordingManager;
+
+    public RecordingAPI(RecordingManager recordingManager) {
+        this.recordingManager = Objects.requireNonNull(recordingManager);
+    }
+
+    /**
+     * Handles HTTP request to start a recording. Supports {@code settings} ("default" or "profile") and
+     * {@code maxAgeSeconds} query parameters.
+     *
+     * @param ctx request context
+     * @throws TooManyRecordingsException if as many recordings as allowed are already running
+     * @throws IOException                if JFR configuration can't be read
+     */
+    public void handleStartRequest(@NotNull Context ctx) throws TooManyRecordingsException, IOException {
+        String settings = Objects.requireNonNullElse(ctx.queryParam("settings"), "default");
+        long maxAgeSeconds = ctx.queryParamAsClass("maxAgeSeconds", Long.class)
+                .check(a -> a > 0, "maxAgeSeconds should be positive")
+                .getOrDefault(DEFAULT_MAX_AGE_SECONDS);
+        ctx.json(recordingManager.start(settings, Duration.ofSeconds(maxAgeSeconds)));
+    }
+
+    /**
+     * Handles HTTP request to list running recordings.
+     *
+     * @param ctx request context
+     */
+    public void handleListRequest(@NotNull Context ctx) {
+        ctx.json(recordingManager.list());
+    }
+
+    /**
+     * Handles HTTP request to stop a recording. Responds with the recording in JFR format, which can be opened in
+     * JDK Mission Control or with {@code jfr print}.
+     *
+     * @param ctx request context
+     * @throws RecordingNotFoundException if there's no running recording with such id
+     * @throws IOException                if the recording can't be written
+     */
+    public void handleStopRequest(@NotNull Context ctx) throws RecordingNotFoundException, IOException {
+        long id = ctx.pathParamAsClass("id", Long.class).get();
+        Path file = recordingManager.stop(id);
+        try {
+            ctx.contentType(ContentType.APPLICATION_OCTET_STREAM);
+            ctx.header(Header.CONTENT_DISPOSITION, "attachment; filename=\"recording-%d.jfr\"".formatted(id));
+            ctx.result(Files.readAllBytes(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
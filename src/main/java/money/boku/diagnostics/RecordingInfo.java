@@ -0,0 +1,13 @@
+package money.boku.diagnostics;
+
+/**
+ * Returned by API when describing flight recordings.
+ *
+ * @param id             id of the recording
+ * @param name           name of the recording
+ * @param state          state of the recording, e.g. RUNNING
+ * @param settings       name of the JFR configuration the recording was started with
+ * @param startTimeMillis time the recording was started, in milliseconds since epoch
+ */
+public record RecordingInfo(long id, String name, String state, String settings, long startTimeMillis) {
+}
@@ -0,0 +1,103 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Starts and stops JDK Flight Recorder recordings in the running server. Recordings include the service's own
+ * events (see this package) along with JVM events of the chosen configuration.
+ */
+public class RecordingManager implements Closeable {
+    // Configurations shipped with the JDK: "default" has low overhead, "profile" collects more details.
+    private static final Set<String> SETTINGS = Set.of("default", "profile");
+    private static final Duration MAX_RECORDING_AGE = Duration.ofMinutes(30); // can be configurable
+    private static final int MAX_RECORDINGS = 4; // can be configurable
+
+    private final ConcurrentMap<Long, ManagedRecording> recordings = new ConcurrentHashMap<>();
+
+    /**
+     * Starts new recording. Only the last {@code maxAge} of it is kept, so it can't fill the disk if it's never
+     * stopped.
+     *
+     * @param settings name of JFR configuration
+     * @param maxAge   how much of the recording to keep; capped at 30 minutes
+     * @return started recording
+     * @throws TooManyRecordingsException if 4 recordings are already running
+     * @throws IOException                if the configuration can't be read
+     */
+    public synchronized RecordingInfo start(String settings, Duration maxAge) throws TooManyRecordingsException, IOException {
+        if (!SETTINGS.contains(settings)) {
+            throw new IllegalArgumentException("settings should be one of " + SETTINGS);
+        }
+        // Every recording costs CPU and disk; stopping one frees the slot.
+        if (recordings.size() >= MAX_RECORDINGS) {
+            throw new TooManyRecordingsException("At most %d recordings can run at once".formatted(MAX_RECORDINGS));
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (ParseException e) {
+            throw new IOException("Failed to parse JFR configuration " + settings, e);
+        }
+        Recording recording = new Recording(configuration);
+        recording.setName("boku-" + recording.getId());
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge.compareTo(MAX_RECORDING_AGE) > 0 ? MAX_RECORDING_AGE : maxAge);
+        recording.start();
+        ManagedRecording managed = new ManagedRecording(recording, settings);
+        recordings.put(recording.getId(), managed);
+        return managed.toInfo();
+    }
+
+    /**
+     * @return recordings started via this manager and not stopped yet
+     */
+    public List<RecordingInfo> list() {
+        return recordings.values().stream().map(ManagedRecording::toInfo).toList();
+    }
+
+    /**
+     * Stops recording and writes it to a temporary file, which the caller should delete.
+     *
+     * @param id id of the recording
+     * @return file with the recording in JFR format
+     * @throws RecordingNotFoundException if there's no running recording with such id
+     * @throws IOException                if the recording can't be written
+     */
+    public Path stop(long id) throws RecordingNotFoundException, IOException {
+        ManagedRecording managed = recordings.remove(id);
+        if (managed == null) {
+            throw new RecordingNotFoundException("Recording %d is not found".formatted(id));
+        }
+        try (Recording recording = managed.recording()) {
+            recording.stop();
+            Path file = Files.createTempFile(recording.getName(), ".jfr");
+            recording.dump(file);
+            return file;
+        }
+    }
+
+    @Override
+    public void close() {
+        recordings.values().forEach(r -> r.recording().close());
+        recordings.clear();
+    }
+
+    private record ManagedRecording(Recording recording, String settings) {
+        private RecordingInfo toInfo() {
+            long startTime = recording.getStartTime() == null ? 0 : recording.getStartTime().toEpochMilli();
+            return new RecordingInfo(recording.getId(), recording.getName(), recording.getState().name(), settings, startTime);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package money.boku.diagnostics;
+
+/**
+ * Thrown when there's no such flight recording started via API.
+ */
+public class RecordingNotFoundException extends Exception {
+    public RecordingNotFoundException(String errorMessage) {
+        super(errorMessage);
+    }
+}
@@ -0,0 +1,19 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Reading, parsing and validating request body.
+ */
+@Name("money.boku.RequestBinding")
+@Label("Request Binding")
+@Category({"Boku", "Requests"})
+@Description("JSON binding and validation of request body")
+public class RequestBindingEvent extends Event {
+    @Label("Path")
+    public String path;
+}
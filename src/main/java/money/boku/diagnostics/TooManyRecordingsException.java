@@ -0,0 +1,10 @@
+package money.boku.diagnostics;
+
+/**
+ * Thrown when as many flight recordings as allowed are already running.
+ */
+public class TooManyRecordingsException extends Exception {
+    public TooManyRecordingsException(String errorMessage) {
+        super(errorMessage);
+    }
+}
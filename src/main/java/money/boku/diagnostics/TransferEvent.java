@@ -0,0 +1,29 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Whole transfer request, from reading the body to writing the response.
+ */
+@Name("money.boku.Transfer")
+@Label("Transfer")
+@Category({"Boku", "Requests"})
+@Description("Transfer request handling")
+public class TransferEvent extends Event {
+    @Label("Sender")
+    public String from;
+
+    @Label("Receiver")
+    public String to;
+
+    @Label("Amount")
+    public String amount;
+
+    @Label("Outcome")
+    @Description("OK or the name of the exception the request failed with")
+    public String outcome;
+}
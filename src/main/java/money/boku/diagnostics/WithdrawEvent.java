@@ -0,0 +1,26 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Whole withdraw request, from reading the body to writing the response.
+ */
+@Name("money.boku.Withdraw")
+@Label("Withdraw")
+@Category({"Boku", "Requests"})
+@Description("Withdraw request handling")
+public class WithdrawEvent extends Event {
+    @Label("Account")
+    public String accountId;
+
+    @Label("Amount")
+    public String amount;
+
+    @Label("Outcome")
+    @Description("OK or the name of the exception the request failed with")
+    public String outcome;
+}
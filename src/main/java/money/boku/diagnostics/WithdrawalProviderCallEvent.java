@@ -0,0 +1,26 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Call to the withdrawal service.
+ */
+@Name("money.boku.WithdrawalProviderCall")
+@Label("Withdrawal Provider Call")
+@Category({"Boku", "Withdrawals"})
+@Description("Call to the external withdrawal service")
+public class WithdrawalProviderCallEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Withdrawal")
+    public String withdrawalId;
+
+    @Label("Attempts")
+    @Description("Number of calls made, e.g. because of withdrawal id collisions")
+    public int attempts;
+}
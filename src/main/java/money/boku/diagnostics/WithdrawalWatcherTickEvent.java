@@ -0,0 +1,25 @@
+package money.boku.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Single pass of the withdrawal watcher over watched withdrawal requests.
+ */
+@Name("money.boku.WithdrawalWatcherTick")
+@Label("Withdrawal Watcher Tick")
+@Category({"Boku", "Withdrawals"})
+@Description("Pass over watched withdrawal requests")
+public class WithdrawalWatcherTickEvent extends Event {
+    @Label("Checked")
+    public int checked;
+
+    @Label("Completed")
+    public int completed;
+
+    @Label("Failed")
+    public int failed;
+}
@@ -0,0 +1,46 @@
+package money.boku.history;
+
+import io.javalin.http.Context;
+import money.boku.account.AccountDatastore;
+import money.boku.account.AccountNotFoundException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * API for reading account statement history.
+ */
+public class HistoryAPI {
+    public static final String HISTORY_PATH = "/history/{accountId}";
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final AccountDatastore accountDatastore;
+    private final TransactionHistory transactionHistory;
+
+    public HistoryAPI(AccountDatastore accountDatastore, TransactionHistory transactionHistory) {
+        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+        this.transactionHistory = Objects.requireNonNull(transactionHistory);
+    }
+
+    /**
+     * Handles HTTP request for a page of account history. Supports {@code cursor} and {@code limit} query parameters.
+     *
+     * @param ctx request context
+     * @throws AccountNotFoundException if no account with such id exists
+     */
+    public void handleHistoryRequest(@NotNull Context ctx) throws AccountNotFoundException {
+        UUID accountId = UUID.fromString(ctx.pathParam("accountId"));
+        long cursor = ctx.queryParamAsClass("cursor", Long.class)
+                .check(c -> c >= 0, "cursor should not be negative")
+                .getOrDefault(0L);
+        int limit = ctx.queryParamAsClass("limit", Integer.class)
+                .check(l -> l > 0 && l <= MAX_PAGE_SIZE, "limit should be between 1 and " + MAX_PAGE_SIZE)
+                .getOrDefault(DEFAULT_PAGE_SIZE);
+        // Fails with 404 for unknown accounts instead of returning an empty history.
+        accountDatastore.getAccount(accountId);
+        ctx.json(transactionHistory.query(accountId, cursor, limit));
+    }
+}
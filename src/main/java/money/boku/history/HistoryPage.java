@@ -0,0 +1,13 @@
+package money.boku.history;
+
+import java.util.List;
+
+/**
+ * Page of account history.
+ *
+ * @param postings   postings in the order they were recorded
+ * @param nextCursor cursor to pass to get the next page
+ * @param hasMore    whether there were more postings after this page at the moment of the query
+ */
+public record HistoryPage(List<Posting> postings, long nextCursor, boolean hasMore) {
+}
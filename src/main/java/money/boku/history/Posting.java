@@ -0,0 +1,17 @@
+package money.boku.history;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Single entry of account history.
+ *
+ * @param sequence  global sequence number of the posting, defines order between postings
+ * @param accountId account which balance has changed
+ * @param type      kind of change
+ * @param amount    absolute value of the change
+ * @param reference counterparty account for transfers, withdrawal id for withdrawals
+ * @param timestamp time of the change, in milliseconds since epoch
+ */
+public record Posting(long sequence, UUID accountId, PostingType type, BigDecimal amount, UUID reference, long timestamp) {
+}
@@ -0,0 +1,8 @@
+package money.boku.history;
+
+/**
+ * Kind of balance change recorded in account history.
+ */
+public enum PostingType {
+    TRANSFER_OUT, TRANSFER_IN, WITHDRAWAL, WITHDRAWAL_REFUND, TRANSFER_REFUND
+}
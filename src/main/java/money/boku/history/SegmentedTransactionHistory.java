@@ -0,0 +1,180 @@
+package money.boku.history;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory implementation of {@link TransactionHistory}.
+ * <p>
+ * Postings are stored column by column in fixed-size segments of primitive arrays, so recording a posting does not
+ * allocate anything except occasionally a new segment. Position of a posting is its global sequence number, which is
+ * claimed with a single atomic increment. Every account has an index of sequence numbers of its postings, so queries
+ * never scan postings of other accounts.
+ */
+public class SegmentedTransactionHistory implements TransactionHistory {
+    private static final int DEFAULT_SEGMENT_SHIFT = 14; // 16384 postings per segment
+    private static final PostingType[] POSTING_TYPES = PostingType.values();
+
+    private final int segmentShift;
+    private final int segmentMask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final ConcurrentMap<UUID, AccountIndex> accountIndexes = new ConcurrentHashMap<>();
+    // Only grows. Segments are never moved, so readers can use a stale copy of the directory for old postings.
+    private volatile Segment[] segments = new Segment[16];
+
+    public SegmentedTransactionHistory() {
+        this(DEFAULT_SEGMENT_SHIFT);
+    }
+
+    SegmentedTransactionHistory(int segmentShift) {
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+    }
+
+    @Override
+    public void record(UUID accountId, PostingType type, BigDecimal amount, UUID reference) {
+        long sequence = nextSequence.getAndIncrement();
+        Segment segment = segment((int) (sequence >>> segmentShift));
+        segment.write((int) (sequence & segmentMask), sequence, accountId, type, amount, reference, System.currentTimeMillis());
+        // Index is updated after the posting is written, so whoever sees the sequence in the index sees the posting.
+        accountIndexes.computeIfAbsent(accountId, id -> new AccountIndex()).append(sequence);
+    }
+
+    @Override
+    public HistoryPage query(UUID accountId, long cursor, int limit) {
+        if (cursor < 0) {
+            throw new IllegalArgumentException("cursor should not be negative");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit should be positive");
+        }
+        AccountIndex index = accountIndexes.get(accountId);
+        if (index == null) {
+            return new HistoryPage(List.of(), cursor, false);
+        }
+        AccountIndex.Range range = index.range(cursor, limit);
+        Segment[] directory = segments;
+        List<Posting> postings = new ArrayList<>(range.sequences().length);
+        for (long sequence : range.sequences()) {
+            Segment segment = directory[(int) (sequence >>> segmentShift)];
+            postings.add(segment.read((int) (sequence & segmentMask), sequence));
+        }
+        return new HistoryPage(postings, cursor + postings.size(), range.hasMore());
+    }
+
+    private Segment segment(int segmentIndex) {
+        Segment[] directory = segments;
+        if (segmentIndex < directory.length) {
+            Segment segment = directory[segmentIndex];
+            if (segment != null) {
+                return segment;
+            }
+        }
+        return allocateSegment(segmentIndex);
+    }
+
+    private synchronized Segment allocateSegment(int segmentIndex) {
+        Segment[] directory = segments;
+        if (segmentIndex >= directory.length) {
+            directory = Arrays.copyOf(directory, Math.max(directory.length * 2, segmentIndex + 1));
+        }
+        if (directory[segmentIndex] == null) {
+            directory[segmentIndex] = new Segment(1 << segmentShift);
+        }
+        // Volatile write publishes the new segment (and, if the array was copied, the new directory).
+        segments = directory;
+        return directory[segmentIndex];
+    }
+
+    /**
+     * Columnar storage of postings. Each slot is written exactly once by the thread that claimed its sequence.
+     */
+    private static class Segment {
+        private final long[] accountMsb;
+        private final long[] accountLsb;
+        private final long[] referenceMsb;
+        private final long[] referenceLsb;
+        private final long[] unscaledAmounts;
+        private final int[] scales;
+        private final byte[] types;
+        private final long[] timestamps;
+        // Amounts which unscaled value doesn't fit into long. Practically never used.
+        private final Map<Integer, BigDecimal> largeAmounts = new ConcurrentHashMap<>();
+
+        private Segment(int capacity) {
+            accountMsb = new long[capacity];
+            accountLsb = new long[capacity];
+            referenceMsb = new long[capacity];
+            referenceLsb = new long[capacity];
+            unscaledAmounts = new long[capacity];
+            scales = new int[capacity];
+            types = new byte[capacity];
+            timestamps = new long[capacity];
+        }
+
+        private void write(int slot, long sequence, UUID accountId, PostingType type, BigDecimal amount, UUID reference, long timestamp) {
+            accountMsb[slot] = accountId.getMostSignificantBits();
+            accountLsb[slot] = accountId.getLeastSignificantBits();
+            referenceMsb[slot] = reference.getMostSignificantBits();
+            referenceLsb[slot] = reference.getLeastSignificantBits();
+            BigInteger unscaled = amount.unscaledValue();
+            if (unscaled.bitLength() < Long.SIZE) {
+                unscaledAmounts[slot] = unscaled.longValue();
+                scales[slot] = amount.scale();
+            } else {
+                largeAmounts.put(slot, amount);
+            }
+            types[slot] = (byte) type.ordinal();
+            timestamps[slot] = timestamp;
+        }
+
+        private Posting read(int slot, long sequence) {
+            BigDecimal amount = largeAmounts.isEmpty() ? null : largeAmounts.get(slot);
+            if (amount == null) {
+                amount = BigDecimal.valueOf(unscaledAmounts[slot], scales[slot]);
+            }
+            return new Posting(
+                    sequence,
+                    new UUID(accountMsb[slot], accountLsb[slot]),
+                    POSTING_TYPES[types[slot]],
+                    amount,
+                    new UUID(referenceMsb[slot], referenceLsb[slot]),
+                    timestamps[slot]
+            );
+        }
+    }
+
+    /**
+     * Sequence numbers of postings of a single account, in the order they were appended.
+     */
+    private static class AccountIndex {
+        private long[] sequences = new long[4];
+        private int size;
+
+        private synchronized void append(long sequence) {
+            if (size == sequences.length) {
+                sequences = Arrays.copyOf(sequences, size * 2);
+            }
+            sequences[size++] = sequence;
+        }
+
+        private synchronized Range range(long from, int limit) {
+            if (from >= size) {
+                return new Range(new long[0], false);
+            }
+            int to = (int) Math.min(size, from + limit);
+            return new Range(Arrays.copyOfRange(sequences, (int) from, to), to < size);
+        }
+
+        private record Range(long[] sequences, boolean hasMore) {
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package money.boku.history;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Append-only log of balance changes of all accounts.
+ */
+public interface TransactionHistory {
+    /**
+     * Appends posting to the history of the account. Can be called concurrently.
+     *
+     * @param accountId account which balance has changed
+     * @param type      kind of change
+     * @param amount    absolute value of the change
+     * @param reference counterparty account for transfers, withdrawal id for withdrawals
+     */
+    void record(UUID accountId, PostingType type, BigDecimal amount, UUID reference);
+
+    /**
+     * Returns postings of the account, oldest first.
+     *
+     * @param accountId id of the account
+     * @param cursor    position to start from; 0 for the first page, {@link HistoryPage#nextCursor()} for the next ones
+     * @param limit     maximum number of postings to return
+     * @return page of account history; empty if account has no history
+     */
+    HistoryPage query(UUID accountId, long cursor, int limit);
+}
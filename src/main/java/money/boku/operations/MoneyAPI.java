@@ -1,22 +1,44 @@
 package money.boku.operations;
 
 import io.javalin.http.Context;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
 import money.boku.account.AccountNotFoundException;
 import money.boku.account.NegativeBalanceRequestException;
+import money.boku.diagnostics.Events;
+import money.boku.diagnostics.RequestBindingEvent;
+import money.boku.diagnostics.TransferEvent;
+import money.boku.diagnostics.WithdrawEvent;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import money.boku.operations.limits.VelocityLimitExceededException;
+import money.boku.operations.scheduled.ScheduledTransfer;
+import money.boku.operations.scheduled.ScheduledTransferNotFoundException;
+import money.boku.operations.scheduled.ScheduledTransferRequest;
+import money.boku.operations.scheduled.TransferScheduler;
 import money.boku.operations.withdrawal.*;
 import org.jetbrains.annotations.NotNull;
 
+import java.time.Duration;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Encapsulates API related to money transactions.
  */
 public class MoneyAPI {
     public static final String TRANSFER_PATH = "/transfer";
+    public static final String SCHEDULED_TRANSFER_PATH = "/transfer/scheduled";
+    public static final String SCHEDULED_TRANSFER_ID_PATH = "/transfer/scheduled/{id}";
     public static final String WITHDRAW_PATH = "/withdraw";
     public static final String WITHDRAWAL_STATE_PATH = "/withdraw/{id}/state";
 
+    public static final long MAX_WAIT_MILLIS = 30_000; // can be configurable
+    // Keeps scheduled times far from overflow and the timing wheel shallow.
+    public static final long MAX_SCHEDULE_AHEAD_MILLIS = Duration.ofDays(3660).toMillis(); // can be configurable
+    // Terminal withdrawal states never change.
+    private static final String TERMINAL_STATE_CACHE_CONTROL = "private, max-age=31536000, immutable";
+
     private final MoneyService moneyService;
 
     public MoneyAPI(MoneyService moneyService) {
@@ -30,16 +52,85 @@ public class MoneyAPI {
      * @param ctx request context
      * @throws NegativeBalanceRequestException when executing transfer request would've resulted in a negative balance
      * @throws AccountNotFoundException        when there's no sender or receiver account with specified account id
+     * @throws ExchangeRateNotFoundException   when there's no exchange rate for currencies involved in transfer
+     * @throws VelocityLimitExceededException  when executing transfer request would've exceeded sender velocity limits
+     */
+    public void handleTransferRequest(@NotNull Context ctx) throws NegativeBalanceRequestException, AccountNotFoundException, ExchangeRateNotFoundException, VelocityLimitExceededException {
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        Transfer transferRequest = null;
+        String outcome = "OK";
+        try {
+            RequestBindingEvent bindingEvent = new RequestBindingEvent();
+            bindingEvent.begin();
+            transferRequest = ctx.bodyValidator(Transfer.class)
+                    .check(t -> t.from() != null, "sender shouldn't be empty")
+                    .check(t -> t.to() != null, "receiver shouldn't be empty")
+                    // nothing will break if they are the same, but such operations are pointless
+                    .check(t -> !Objects.equals(t.from(), t.to()), "sender should be different from receiver")
+                    .check(t -> t.amount() != null && t.amount().signum() > 0, "amount is required and should be positive number")
+                    .get();
+            Events.commit(bindingEvent, e -> e.path = TRANSFER_PATH);
+            moneyService.transfer(transferRequest.from(), transferRequest.to(), transferRequest.amount(), transferRequest.currency());
+        } catch (Exception e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            Transfer transfer = transferRequest;
+            String transferOutcome = outcome;
+            Events.commit(event, e -> {
+                if (transfer != null) {
+                    e.from = String.valueOf(transfer.from());
+                    e.to = String.valueOf(transfer.to());
+                    e.amount = String.valueOf(transfer.amount());
+                }
+                e.outcome = transferOutcome;
+            });
+        }
+    }
+
+    /**
+     * Handles HTTP request to schedule a one-off or recurring transfer
+     *
+     * @param ctx request context
+     * @throws AccountNotFoundException when there's no sender account with specified account id
      */
-    public void handleTransferRequest(@NotNull Context ctx) throws NegativeBalanceRequestException, AccountNotFoundException {
-        Transfer transferRequest = ctx.bodyValidator(Transfer.class)
+    public void handleScheduleTransferRequest(@NotNull Context ctx) throws AccountNotFoundException {
+        ScheduledTransferRequest request = ctx.bodyValidator(ScheduledTransferRequest.class)
                 .check(t -> t.from() != null, "sender shouldn't be empty")
                 .check(t -> t.to() != null, "receiver shouldn't be empty")
-                // nothing will break if they are the same, but such operations are pointless
                 .check(t -> !Objects.equals(t.from(), t.to()), "sender should be different from receiver")
                 .check(t -> t.amount() != null && t.amount().signum() > 0, "amount is required and should be positive number")
+                .check(t -> t.executeAt() != null, "execution time shouldn't be empty")
+                .check(t -> t.executeAt() == null || t.executeAt() >= 0 && t.executeAt() <= System.currentTimeMillis() + MAX_SCHEDULE_AHEAD_MILLIS,
+                        "execution time should be within %d ms from now".formatted(MAX_SCHEDULE_AHEAD_MILLIS))
+                .check(t -> t.intervalMs() == null || t.intervalMs() == 0
+                                || t.intervalMs() >= TransferScheduler.TICK_MILLIS && t.intervalMs() <= MAX_SCHEDULE_AHEAD_MILLIS,
+                        "interval should be 0 or between %d and %d ms".formatted(TransferScheduler.TICK_MILLIS, MAX_SCHEDULE_AHEAD_MILLIS))
                 .get();
-        moneyService.transfer(transferRequest.from(), transferRequest.to(), transferRequest.amount());
+        long interval = request.intervalMs() == null ? 0 : request.intervalMs();
+        ScheduledTransfer transfer = moneyService.scheduleTransfer(request.from(), request.to(), request.amount(), request.currency(), request.executeAt(), interval);
+        ctx.json(transfer);
+    }
+
+    /**
+     * Handles HTTP request for a pending scheduled transfer
+     *
+     * @param ctx request context
+     * @throws ScheduledTransferNotFoundException when there's no pending scheduled transfer with specified id
+     */
+    public void handleScheduledTransferRequest(@NotNull Context ctx) throws ScheduledTransferNotFoundException {
+        ctx.json(moneyService.getScheduledTransfer(UUID.fromString(ctx.pathParam("id"))));
+    }
+
+    /**
+     * Handles HTTP request to cancel a pending scheduled transfer
+     *
+     * @param ctx request context
+     * @throws ScheduledTransferNotFoundException when there's no pending scheduled transfer with specified id
+     */
+    public void handleCancelScheduledTransferRequest(@NotNull Context ctx) throws ScheduledTransferNotFoundException {
+        moneyService.cancelScheduledTransfer(UUID.fromString(ctx.pathParam("id")));
     }
 
     /**
@@ -48,20 +139,45 @@ public class MoneyAPI {
      * @param ctx request context
      * @throws NegativeBalanceRequestException when executing withdraw request would've resulted in a negative balance
      * @throws AccountNotFoundException        when there's no sender account with specified account id
+     * @throws VelocityLimitExceededException  when executing withdraw request would've exceeded account velocity limits
      */
-    public void handleWithdrawRequest(@NotNull Context ctx) throws NegativeBalanceRequestException, AccountNotFoundException {
-        WithdrawalRequest withdrawalRequest = ctx.bodyValidator(WithdrawalRequest.class)
-                .check(r -> r.accountId() != null, "sender shouldn't be empty")
-                .check(r -> r.withdrawalAddress() != null && !r.withdrawalAddress().isEmpty(), "withdrawal address shouldn't be empty")
-                .check(t -> t.amount() != null && t.amount().signum() > 0, "amount is required and should be positive number")
-                .get();
-        WithdrawalService.Address withdrawalAddress = new WithdrawalService.Address(withdrawalRequest.withdrawalAddress());
-        WithdrawalService.WithdrawalId withdrawalId = moneyService.withdraw(withdrawalRequest.accountId(), withdrawalAddress, withdrawalRequest.amount());
-        ctx.json(new WithdrawalRequestResponse(withdrawalId.value()));
+    public void handleWithdrawRequest(@NotNull Context ctx) throws NegativeBalanceRequestException, AccountNotFoundException, VelocityLimitExceededException {
+        WithdrawEvent event = new WithdrawEvent();
+        event.begin();
+        WithdrawalRequest withdrawalRequest = null;
+        String outcome = "OK";
+        try {
+            RequestBindingEvent bindingEvent = new RequestBindingEvent();
+            bindingEvent.begin();
+            withdrawalRequest = ctx.bodyValidator(WithdrawalRequest.class)
+                    .check(r -> r.accountId() != null, "sender shouldn't be empty")
+                    .check(r -> r.withdrawalAddress() != null && !r.withdrawalAddress().isEmpty(), "withdrawal address shouldn't be empty")
+                    .check(t -> t.amount() != null && t.amount().signum() > 0, "amount is required and should be positive number")
+                    .get();
+            Events.commit(bindingEvent, e -> e.path = WITHDRAW_PATH);
+            WithdrawalService.Address withdrawalAddress = new WithdrawalService.Address(withdrawalRequest.withdrawalAddress());
+            WithdrawalService.WithdrawalId withdrawalId = moneyService.withdraw(withdrawalRequest.accountId(), withdrawalAddress, withdrawalRequest.amount());
+            ctx.json(new WithdrawalRequestResponse(withdrawalId.value()));
+        } catch (Exception e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            WithdrawalRequest request = withdrawalRequest;
+            String withdrawOutcome = outcome;
+            Events.commit(event, e -> {
+                if (request != null) {
+                    e.accountId = String.valueOf(request.accountId());
+                    e.amount = String.valueOf(request.amount());
+                }
+                e.outcome = withdrawOutcome;
+            });
+        }
     }
 
     /**
-     * Handles withdrawal state HTTP request
+     * Handles withdrawal state HTTP request. Supports long polling: with {@code waitMs} query parameter, the response
+     * is sent once the withdrawal completes or fails, or after {@code waitMs} if it's still processing. State is
+     * returned with an ETag, so clients may poll with {@code If-None-Match} and get 304 while it doesn't change.
      *
      * @param ctx request context
      * @throws WithdrawalNotFoundException when there's no withdrawal request with specified id
@@ -70,8 +186,26 @@ public class MoneyAPI {
         String idStr = ctx.pathParamAsClass("id", String.class)
                 .check(s -> s != null && !s.isEmpty(), "withdrawal id shouldn't be empty")
                 .get();
+        long waitMillis = ctx.queryParamAsClass("waitMs", Long.class)
+                .check(w -> w >= 0 && w <= MAX_WAIT_MILLIS, "waitMs should be between 0 and " + MAX_WAIT_MILLIS)
+                .getOrDefault(0L);
         WithdrawalService.WithdrawalId withdrawalId = new WithdrawalService.WithdrawalId(UUID.fromString(idStr));
-        WithdrawalService.WithdrawalState state = moneyService.withdrawRequestState(withdrawalId);
+        if (waitMillis == 0) {
+            respondWithWithdrawalState(ctx, moneyService.withdrawRequestState(withdrawalId));
+            return;
+        }
+        CompletableFuture<WithdrawalService.WithdrawalState> state = moneyService.awaitWithdrawRequestState(withdrawalId, waitMillis);
+        ctx.future(() -> state.thenAccept(s -> respondWithWithdrawalState(ctx, s)));
+    }
+
+    private static void respondWithWithdrawalState(Context ctx, WithdrawalService.WithdrawalState state) {
+        String etag = "\"" + state.name() + "\"";
+        ctx.header(Header.ETAG, etag);
+        ctx.header(Header.CACHE_CONTROL, WithdrawalStateCache.isTerminal(state) ? TERMINAL_STATE_CACHE_CONTROL : "no-cache");
+        if (etag.equals(ctx.header(Header.IF_NONE_MATCH))) {
+            ctx.status(HttpStatus.NOT_MODIFIED);
+            return;
+        }
         ctx.json(new WithdrawalStateResponse(state));
     }
 }
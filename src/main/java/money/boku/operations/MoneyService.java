@@ -2,26 +2,36 @@ package money.boku.operations;
 
 import money.boku.account.AccountNotFoundException;
 import money.boku.account.NegativeBalanceRequestException;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import money.boku.operations.limits.VelocityLimitExceededException;
+import money.boku.operations.scheduled.ScheduledTransfer;
+import money.boku.operations.scheduled.ScheduledTransferNotFoundException;
 import money.boku.operations.withdrawal.WithdrawalNotFoundException;
 import money.boku.operations.withdrawal.WithdrawalService;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service that handles money transactions.
  */
 public interface MoneyService {
     /**
-     * Transfers money between two accounts.
+     * Transfers money between two accounts. If accounts have different currencies, amount debited from the sender
+     * and amount credited to the receiver are converted from {@code currency} using current exchange rates.
      *
-     * @param from   sender account id
-     * @param to     receiver account id
-     * @param amount amount to transfer
+     * @param from     sender account id
+     * @param to       receiver account id
+     * @param amount   amount to transfer
+     * @param currency currency of the {@code amount}; if null, currency of the sender account
      * @throws NegativeBalanceRequestException if there's not enough money in sender account to transfer the {@code amount}
      * @throws AccountNotFoundException        if {@code from} or {@code to} account is not found
+     * @throws ExchangeRateNotFoundException   if there's no exchange rate for currencies involved in transfer
+     * @throws VelocityLimitExceededException  if the transfer would exceed velocity limits of the sender account
      */
-    void transfer(UUID from, UUID to, BigDecimal amount) throws NegativeBalanceRequestException, AccountNotFoundException;
+    void transfer(UUID from, UUID to, BigDecimal amount, Currency currency) throws NegativeBalanceRequestException, AccountNotFoundException, ExchangeRateNotFoundException, VelocityLimitExceededException;
 
     /**
      * Withdraws money from the account.
@@ -32,8 +42,9 @@ public interface MoneyService {
      * @return id of withdrawal request
      * @throws NegativeBalanceRequestException if there's not enough money in sender account to withdraw the {@code amount}
      * @throws AccountNotFoundException        if {@code from} account is not found
+     * @throws VelocityLimitExceededException  if the withdrawal would exceed velocity limits of the account
      */
-    WithdrawalService.WithdrawalId withdraw(UUID from, WithdrawalService.Address to, BigDecimal amount) throws NegativeBalanceRequestException, AccountNotFoundException;
+    WithdrawalService.WithdrawalId withdraw(UUID from, WithdrawalService.Address to, BigDecimal amount) throws NegativeBalanceRequestException, AccountNotFoundException, VelocityLimitExceededException;
 
     /**
      * Returns the state of withdrawal request.
@@ -43,4 +54,47 @@ public interface MoneyService {
      * @throws WithdrawalNotFoundException if there's no withdrawal request with such id
      */
     WithdrawalService.WithdrawalState withdrawRequestState(WithdrawalService.WithdrawalId withdrawalId) throws WithdrawalNotFoundException;
+
+    /**
+     * Waits for withdrawal request to reach its terminal state.
+     *
+     * @param withdrawalId id of withdrawal request
+     * @param waitMillis   maximum time to wait
+     * @return future of the terminal state, or of the current state if it's still processing after {@code waitMillis}
+     * @throws WithdrawalNotFoundException if there's no withdrawal request with such id
+     */
+    CompletableFuture<WithdrawalService.WithdrawalState> awaitWithdrawRequestState(WithdrawalService.WithdrawalId withdrawalId, long waitMillis) throws WithdrawalNotFoundException;
+
+    /**
+     * Schedules transfer to be executed later, once or repeatedly. When due, it's executed the same way as
+     * {@link #transfer}; if the execution fails (e.g. there's not enough money at that moment), the occurrence is
+     * skipped.
+     *
+     * @param from           sender account id
+     * @param to             receiver account id
+     * @param amount         amount to transfer
+     * @param currency       currency of the {@code amount}; if null, currency of the sender account
+     * @param executeAt      time of the (first) execution, in milliseconds since epoch
+     * @param intervalMillis time between executions of a recurring transfer; 0 for a one-off transfer
+     * @return scheduled transfer
+     * @throws AccountNotFoundException if {@code from} account is not found
+     */
+    ScheduledTransfer scheduleTransfer(UUID from, UUID to, BigDecimal amount, Currency currency, long executeAt, long intervalMillis) throws AccountNotFoundException;
+
+    /**
+     * Returns pending scheduled transfer.
+     *
+     * @param id id of the scheduled transfer
+     * @return scheduled transfer with the time of its next execution
+     * @throws ScheduledTransferNotFoundException if there's no pending scheduled transfer with such id
+     */
+    ScheduledTransfer getScheduledTransfer(UUID id) throws ScheduledTransferNotFoundException;
+
+    /**
+     * Cancels pending scheduled transfer, including all further occurrences of a recurring one.
+     *
+     * @param id id of the scheduled transfer
+     * @throws ScheduledTransferNotFoundException if there's no pending scheduled transfer with such id
+     */
+    void cancelScheduledTransfer(UUID id) throws ScheduledTransferNotFoundException;
 }
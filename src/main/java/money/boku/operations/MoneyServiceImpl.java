@@ -1,15 +1,34 @@
 package money.boku.operations;
 
+import money.boku.IdGenerator;
 import money.boku.account.AccountDatastore;
 import money.boku.account.AccountNotFoundException;
+import money.boku.account.Flow;
 import money.boku.account.NegativeBalanceRequestException;
+import money.boku.diagnostics.Events;
+import money.boku.diagnostics.WithdrawalProviderCallEvent;
+import money.boku.history.PostingType;
+import money.boku.history.TransactionHistory;
+import money.boku.operations.fx.ExchangeRateCache;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import money.boku.operations.hold.Hold;
+import money.boku.operations.hold.HoldService;
+import money.boku.operations.limits.VelocityLimitExceededException;
+import money.boku.operations.limits.VelocityLimiter;
+import money.boku.operations.scheduled.ScheduledTransfer;
+import money.boku.operations.scheduled.ScheduledTransferNotFoundException;
+import money.boku.operations.scheduled.TransferScheduler;
 import money.boku.operations.withdrawal.WithdrawalNotFoundException;
 import money.boku.operations.withdrawal.WithdrawalRequestWatcher;
 import money.boku.operations.withdrawal.WithdrawalService;
+import money.boku.operations.withdrawal.WithdrawalStateCache;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implementation of {@link MoneyService}.
@@ -18,55 +37,159 @@ public class MoneyServiceImpl implements MoneyService {
     private final AccountDatastore accountDatastore;
     private final WithdrawalService withdrawalService;
     private final WithdrawalRequestWatcher withdrawalRequestWatcher;
+    private final WithdrawalStateCache withdrawalStateCache;
+    private final TransactionHistory transactionHistory;
+    private final ExchangeRateCache exchangeRateCache;
+    private final TransferScheduler transferScheduler;
+    private final HoldService holdService;
+    private final VelocityLimiter velocityLimiter;
+    private final IdGenerator idGenerator;
 
-    public MoneyServiceImpl(AccountDatastore accountDatastore, WithdrawalService withdrawalService, WithdrawalRequestWatcher withdrawalRequestWatcher) {
+    public MoneyServiceImpl(AccountDatastore accountDatastore,
+                            WithdrawalService withdrawalService,
+                            WithdrawalRequestWatcher withdrawalRequestWatcher,
+                            WithdrawalStateCache withdrawalStateCache,
+                            TransactionHistory transactionHistory,
+                            ExchangeRateCache exchangeRateCache,
+                            TransferScheduler transferScheduler,
+                            HoldService holdService,
+                            VelocityLimiter velocityLimiter,
+                            IdGenerator idGenerator) {
         this.accountDatastore = Objects.requireNonNull(accountDatastore);
         this.withdrawalService = Objects.requireNonNull(withdrawalService);
         this.withdrawalRequestWatcher = Objects.requireNonNull(withdrawalRequestWatcher);
+        this.withdrawalStateCache = Objects.requireNonNull(withdrawalStateCache);
+        this.transactionHistory = Objects.requireNonNull(transactionHistory);
+        this.exchangeRateCache = Objects.requireNonNull(exchangeRateCache);
+        this.transferScheduler = Objects.requireNonNull(transferScheduler);
+        this.holdService = Objects.requireNonNull(holdService);
+        this.velocityLimiter = Objects.requireNonNull(velocityLimiter);
+        this.idGenerator = Objects.requireNonNull(idGenerator);
     }
 
     @Override
-    public void transfer(UUID from, UUID to, BigDecimal amount) throws NegativeBalanceRequestException, AccountNotFoundException {
-        accountDatastore.decreaseBalance(from, amount);
+    public void transfer(UUID from, UUID to, BigDecimal amount, Currency currency) throws NegativeBalanceRequestException, AccountNotFoundException, ExchangeRateNotFoundException, VelocityLimitExceededException {
+        Currency fromCurrency = accountDatastore.getAccount(from).getCurrency();
+        Currency toCurrency = accountDatastore.getAccount(to).getCurrency();
+        Currency amountCurrency = currency == null ? fromCurrency : currency;
+        BigDecimal debitAmount = exchangeRateCache.convert(amount, amountCurrency, fromCurrency, RoundingMode.CEILING);
+        BigDecimal creditAmount = exchangeRateCache.convert(amount, amountCurrency, toCurrency, RoundingMode.DOWN);
+        if (debitAmount.signum() <= 0 || creditAmount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount is too small to be converted");
+        }
+
+        long recordedAt = velocityLimiter.record(from, debitAmount);
+        try {
+            accountDatastore.decreaseBalance(from, debitAmount, Flow.TRANSFER_OUT);
+        } catch (NegativeBalanceRequestException | AccountNotFoundException e) {
+            velocityLimiter.unrecord(from, debitAmount, recordedAt);
+            throw e;
+        }
         try {
-            accountDatastore.increaseBalance(to, amount);
+            accountDatastore.increaseBalance(to, creditAmount, Flow.TRANSFER_IN);
         } catch (AccountNotFoundException e) {
             // Rollback in case there's no receiver to receive money.
             // Within this solution we assume that account can't be deleted. In hypothetical situation where it can,
             // we would require to wait for deletion until all transfer/withdraw operations are complete + reject all new
             // transfer/withdraw requests.
-            accountDatastore.increaseBalance(from, amount);
+            accountDatastore.increaseBalance(from, debitAmount, Flow.TRANSFER_OUT);
+            velocityLimiter.unrecord(from, debitAmount, recordedAt);
             throw e;
         }
+        transactionHistory.record(from, PostingType.TRANSFER_OUT, debitAmount, to);
+        transactionHistory.record(to, PostingType.TRANSFER_IN, creditAmount, from);
     }
 
     @Override
-    public WithdrawalService.WithdrawalId withdraw(UUID from, WithdrawalService.Address withdrawalAddress, BigDecimal amount) throws NegativeBalanceRequestException, AccountNotFoundException {
+    public WithdrawalService.WithdrawalId withdraw(UUID from, WithdrawalService.Address withdrawalAddress, BigDecimal amount) throws NegativeBalanceRequestException, AccountNotFoundException, VelocityLimitExceededException {
         // Since there's no reverse operation in withdrawal service, the execution flow is next:
-        // 1. Decrease account balance
+        // 1. Hold the amount in the account
         // 2. Try to execute WithdrawalService#requestWithdraw
-        // 3. If failed, increase account balance again
-        // We operate under assumption that while withdrawal hasn't failed, the withdrawn money are "frozen" within the account.
-        accountDatastore.decreaseBalance(from, amount);
-        WithdrawalService.WithdrawalId withdrawalId = new WithdrawalService.WithdrawalId(UUID.randomUUID());
+        // 3. Once withdrawal completes, capture the hold; if it fails, release the hold.
+        // Withdrawal holds are internal and never expire: money may leave the account for as long as withdrawal is
+        // processing, and only the watcher ends them.
+        // Unknown accounts are rejected before they get velocity windows.
+        accountDatastore.getAccount(from);
+        long recordedAt = velocityLimiter.record(from, amount);
+        Hold hold;
+        try {
+            hold = holdService.reserveInternal(from, amount);
+        } catch (NegativeBalanceRequestException | AccountNotFoundException e) {
+            velocityLimiter.unrecord(from, amount, recordedAt);
+            throw e;
+        }
+        WithdrawalService.WithdrawalId withdrawalId = new WithdrawalService.WithdrawalId(idGenerator.nextId());
+        WithdrawalProviderCallEvent event = new WithdrawalProviderCallEvent();
+        event.begin();
+        int attempts = 1;
         while (true) {
             try {
                 withdrawalService.requestWithdrawal(withdrawalId, withdrawalAddress, amount);
                 break;
             } catch (IllegalArgumentException e) {
-                withdrawalId = new WithdrawalService.WithdrawalId(UUID.randomUUID());
+                withdrawalId = new WithdrawalService.WithdrawalId(idGenerator.nextId());
+                attempts++;
             }
         }
-        withdrawalRequestWatcher.watchRequest(new WithdrawalRequestWatcher.WithdrawalRequestRecord(withdrawalId, from, amount));
+        WithdrawalService.WithdrawalId requestedId = withdrawalId;
+        int calls = attempts;
+        Events.commit(event, e -> {
+            e.operation = "requestWithdrawal";
+            e.withdrawalId = requestedId.value().toString();
+            e.attempts = calls;
+        });
+        transactionHistory.record(from, PostingType.WITHDRAWAL, amount, withdrawalId.value());
+        withdrawalRequestWatcher.watchRequest(new WithdrawalRequestWatcher.WithdrawalRequestRecord(withdrawalId, from, amount, hold.id()));
         return withdrawalId;
     }
 
     @Override
     public WithdrawalService.WithdrawalState withdrawRequestState(WithdrawalService.WithdrawalId withdrawalId) throws WithdrawalNotFoundException {
+        // Terminal states never change, so the withdrawal service is only asked about the ones still processing.
+        WithdrawalService.WithdrawalState cached = withdrawalStateCache.get(withdrawalId);
+        if (cached != null) {
+            return cached;
+        }
+        WithdrawalProviderCallEvent event = new WithdrawalProviderCallEvent();
+        event.begin();
         try {
             return withdrawalService.getRequestState(withdrawalId);
         } catch (IllegalArgumentException e) {
             throw new WithdrawalNotFoundException(e.getMessage());
+        } finally {
+            Events.commit(event, e -> {
+                e.operation = "getRequestState";
+                e.withdrawalId = withdrawalId.value().toString();
+                e.attempts = 1;
+            });
+        }
+    }
+
+    @Override
+    public CompletableFuture<WithdrawalService.WithdrawalState> awaitWithdrawRequestState(WithdrawalService.WithdrawalId withdrawalId, long waitMillis) throws WithdrawalNotFoundException {
+        WithdrawalService.WithdrawalState state = withdrawRequestState(withdrawalId);
+        if (WithdrawalStateCache.isTerminal(state) || waitMillis <= 0) {
+            return CompletableFuture.completedFuture(state);
         }
+        return withdrawalStateCache.awaitTerminal(withdrawalId, waitMillis, state);
+    }
+
+    @Override
+    public ScheduledTransfer scheduleTransfer(UUID from, UUID to, BigDecimal amount, Currency currency, long executeAt, long intervalMillis) throws AccountNotFoundException {
+        // Receiver may be owned by another node in cluster mode, it's checked when the transfer is executed.
+        accountDatastore.getAccount(from);
+        ScheduledTransfer transfer = new ScheduledTransfer(idGenerator.nextId(), from, to, amount, currency, executeAt, intervalMillis);
+        transferScheduler.schedule(transfer);
+        return transfer;
+    }
+
+    @Override
+    public ScheduledTransfer getScheduledTransfer(UUID id) throws ScheduledTransferNotFoundException {
+        return transferScheduler.get(id);
+    }
+
+    @Override
+    public void cancelScheduledTransfer(UUID id) throws ScheduledTransferNotFoundException {
+        transferScheduler.cancel(id);
     }
 }
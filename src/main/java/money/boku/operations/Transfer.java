@@ -1,10 +1,12 @@
 package money.boku.operations;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.UUID;
 
 /**
  * Passed to API when requesting transfer from one user account to another.
+ * If {@code currency} is not specified, amount is in the currency of the sender account.
  */
-public record Transfer(UUID from, UUID to, BigDecimal amount) {
+public record Transfer(UUID from, UUID to, BigDecimal amount, Currency currency) {
 }
@@ -0,0 +1,54 @@
+package money.boku.operations.fx;
+
+import io.javalin.http.Context;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * API for managing exchange rates used for transfers between accounts in different currencies. Rates decide how much
+ * is credited for a debited amount, so only admins can change them.
+ */
+public class ExchangeRateAPI {
+    public static final String RATES_PATH = "/fx/rates";
+    public static final String ADMIN_RATES_PATH = "/admin/fx/rates";
+
+    private final ExchangeRateCache exchangeRateCache;
+
+    public ExchangeRateAPI(ExchangeRateCache exchangeRateCache) {
+        this.exchangeRateCache = Objects.requireNonNull(exchangeRateCache);
+    }
+
+    /**
+     * Handles HTTP request to replace the exchange rate table.
+     *
+     * @param ctx request context
+     */
+    public void handleUpdateRatesRequest(@NotNull Context ctx) {
+        ExchangeRateTable table = ctx.bodyValidator(ExchangeRateTable.class)
+                .check(r -> r.base() != null, "base currency shouldn't be empty")
+                .check(r -> r.rates() != null, "rates shouldn't be empty")
+                .get();
+        Map<Currency, BigDecimal> rates = new HashMap<>();
+        for (Map.Entry<String, BigDecimal> rate : table.rates().entrySet()) {
+            rates.put(Currency.getInstance(rate.getKey()), rate.getValue());
+        }
+        exchangeRateCache.update(new ExchangeRates(Currency.getInstance(table.base()), rates));
+    }
+
+    /**
+     * Handles HTTP request to look at the current exchange rate table.
+     *
+     * @param ctx request context
+     */
+    public void handleRatesRequest(@NotNull Context ctx) {
+        ExchangeRates rates = exchangeRateCache.getRates();
+        Map<String, BigDecimal> baseRates = new HashMap<>();
+        rates.getBaseRates().forEach((currency, rate) -> baseRates.put(currency.getCurrencyCode(), rate));
+        ctx.json(new ExchangeRateTable(rates.getBase().getCurrencyCode(), baseRates));
+    }
+}
@@ -0,0 +1,45 @@
+package money.boku.operations.fx;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds current {@link ExchangeRates}. Readers never block: a rate refresh builds a new table on the side and swaps
+ * it in with a single atomic write, so every conversion sees either the old or the new table as a whole.
+ */
+public class ExchangeRateCache {
+    private final AtomicReference<ExchangeRates> rates;
+
+    public ExchangeRateCache() {
+        this(ExchangeRates.empty());
+    }
+
+    public ExchangeRateCache(ExchangeRates rates) {
+        this.rates = new AtomicReference<>(Objects.requireNonNull(rates));
+    }
+
+    public ExchangeRates getRates() {
+        return rates.get();
+    }
+
+    /**
+     * Replaces the whole table.
+     *
+     * @param newRates new table
+     */
+    public void update(ExchangeRates newRates) {
+        rates.set(Objects.requireNonNull(newRates));
+    }
+
+    /**
+     * Converts amount between currencies using current table.
+     *
+     * @see ExchangeRates#convert(BigDecimal, Currency, Currency, RoundingMode)
+     */
+    public BigDecimal convert(BigDecimal amount, Currency from, Currency to, RoundingMode rounding) throws ExchangeRateNotFoundException {
+        return rates.get().convert(amount, from, to, rounding);
+    }
+}
@@ -0,0 +1,10 @@
+package money.boku.operations.fx;
+
+/**
+ * Thrown when there's no exchange rate between two currencies.
+ */
+public class ExchangeRateNotFoundException extends Exception {
+    public ExchangeRateNotFoundException(String errorMessage) {
+        super(errorMessage);
+    }
+}
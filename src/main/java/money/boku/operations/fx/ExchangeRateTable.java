@@ -0,0 +1,13 @@
+package money.boku.operations.fx;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Exchange rate table as it is passed to and returned from API.
+ *
+ * @param base  currency all rates are quoted against
+ * @param rates amount of each currency one unit of {@code base} buys
+ */
+public record ExchangeRateTable(String base, Map<String, BigDecimal> rates) {
+}
@@ -0,0 +1,100 @@
+package money.boku.operations.fx;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable table of exchange rates. Rates between every pair of currencies are computed once when the table is
+ * built, so conversion is a single multiplication.
+ */
+public class ExchangeRates {
+    // Rates with at most 15 significant digits keep BigDecimal in its compact (long-backed) form, which makes
+    // multiplication by a typical amount a plain long multiplication.
+    private static final MathContext RATE_PRECISION = new MathContext(15, RoundingMode.HALF_EVEN);
+
+    private final Currency base;
+    private final Map<Currency, BigDecimal> baseRates;
+    private final Map<Currency, Integer> currencyIndex;
+    // crossRates[from][to] is the amount of "to" currency one unit of "from" currency buys.
+    private final BigDecimal[][] crossRates;
+
+    /**
+     * Builds the table from rates quoted against {@code base} currency.
+     *
+     * @param base      currency all rates are quoted against; its own rate is always 1
+     * @param baseRates amount of each currency one unit of {@code base} buys
+     * @throws IllegalArgumentException if any rate is not positive
+     */
+    public ExchangeRates(Currency base, Map<Currency, BigDecimal> baseRates) {
+        this.base = Objects.requireNonNull(base);
+        Map<Currency, BigDecimal> rates = new HashMap<>(baseRates);
+        rates.put(base, BigDecimal.ONE);
+        for (Map.Entry<Currency, BigDecimal> rate : rates.entrySet()) {
+            if (rate.getValue() == null || rate.getValue().signum() <= 0) {
+                throw new IllegalArgumentException("Rate for %s should be positive".formatted(rate.getKey()));
+            }
+        }
+        this.baseRates = Map.copyOf(rates);
+
+        Currency[] currencies = rates.keySet().toArray(new Currency[0]);
+        Map<Currency, Integer> index = new HashMap<>();
+        for (int i = 0; i < currencies.length; i++) {
+            index.put(currencies[i], i);
+        }
+        this.currencyIndex = Map.copyOf(index);
+        this.crossRates = new BigDecimal[currencies.length][currencies.length];
+        for (int from = 0; from < currencies.length; from++) {
+            for (int to = 0; to < currencies.length; to++) {
+                crossRates[from][to] = rates.get(currencies[to])
+                        .divide(rates.get(currencies[from]), RATE_PRECISION)
+                        .stripTrailingZeros();
+            }
+        }
+    }
+
+    /**
+     * Returns empty table which can only "convert" currency into itself.
+     */
+    public static ExchangeRates empty() {
+        return new ExchangeRates(Currency.getInstance("EUR"), Map.of());
+    }
+
+    public Currency getBase() {
+        return base;
+    }
+
+    public Map<Currency, BigDecimal> getBaseRates() {
+        return baseRates;
+    }
+
+    /**
+     * Converts amount between currencies. Result is rounded to the scale of the amount or to the number of fraction
+     * digits of the target currency, whichever is larger. Callers pick the rounding so that conversion never creates
+     * money: amounts taken from an account are rounded up ({@link RoundingMode#CEILING}), amounts given to an
+     * account are rounded down ({@link RoundingMode#DOWN}).
+     *
+     * @param amount   amount in {@code from} currency
+     * @param from     currency of the amount
+     * @param to       currency to convert to
+     * @param rounding how to round the result
+     * @return amount in {@code to} currency
+     * @throws ExchangeRateNotFoundException if there's no rate for either of the currencies
+     */
+    public BigDecimal convert(BigDecimal amount, Currency from, Currency to, RoundingMode rounding) throws ExchangeRateNotFoundException {
+        if (from.equals(to)) {
+            return amount;
+        }
+        Integer fromIdx = currencyIndex.get(from);
+        Integer toIdx = currencyIndex.get(to);
+        if (fromIdx == null || toIdx == null) {
+            throw new ExchangeRateNotFoundException("No exchange rate from %s to %s".formatted(from, to));
+        }
+        int scale = Math.max(amount.scale(), to.getDefaultFractionDigits());
+        return amount.multiply(crossRates[fromIdx][toIdx]).setScale(scale, rounding);
+    }
+}
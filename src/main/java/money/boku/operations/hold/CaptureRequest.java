@@ -0,0 +1,13 @@
+package money.boku.operations.hold;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Passed to API when capturing a hold.
+ *
+ * @param to     account to credit captured funds to
+ * @param amount amount to capture, not more than the held amount; null captures the whole hold
+ */
+public record CaptureRequest(UUID to, BigDecimal amount) {
+}
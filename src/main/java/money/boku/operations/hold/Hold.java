@@ -0,0 +1,21 @@
+package money.boku.operations.hold;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Funds held in an account until they are captured or released.
+ *
+ * @param id        id of the hold
+ * @param accountId id of the account funds are held in
+ * @param amount    held amount, in the currency of the account
+ * @param expiresAt time when the hold is released automatically, in milliseconds since epoch; 0 if it never expires
+ * @param internal  whether the hold belongs to another operation (e.g. withdrawal) and can only be ended by it
+ * @param orphaned  whether the hold was taken over from the old replication primary; such hold is internal, and only
+ *                  an admin ends it
+ */
+public record Hold(UUID id, UUID accountId, BigDecimal amount, long expiresAt, boolean internal, boolean orphaned) {
+    public boolean expires() {
+        return expiresAt > 0;
+    }
+}
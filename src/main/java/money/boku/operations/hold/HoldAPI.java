@@ -0,0 +1,119 @@
+package money.boku.operations.hold;
+
+import io.javalin.http.Context;
+import money.boku.account.AccountNotFoundException;
+import money.boku.account.NegativeBalanceRequestException;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import money.boku.operations.limits.VelocityLimitExceededException;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * API for holding funds, e.g. for card authorisations: funds are held first and captured or released later.
+ */
+public class HoldAPI {
+    public static final String HOLDS_PATH = "/holds";
+    public static final String HOLD_PATH = "/holds/{id}";
+    public static final String CAPTURE_PATH = "/holds/{id}/capture";
+    public static final String RELEASE_PATH = "/holds/{id}/release";
+    public static final String ORPHANED_HOLDS_PATH = "/admin/holds/orphaned";
+    public static final String ORPHANED_CAPTURE_PATH = "/admin/holds/orphaned/{id}/capture";
+    public static final String ORPHANED_RELEASE_PATH = "/admin/holds/orphaned/{id}/release";
+
+    // Bounds expiry times, which are computed by adding ttl to the current time.
+    public static final long MAX_TTL_MILLIS = Duration.ofDays(365).toMillis(); // can be configurable
+
+    private final HoldService holdService;
+
+    public HoldAPI(HoldService holdService) {
+        this.holdService = Objects.requireNonNull(holdService);
+    }
+
+    /**
+     * Handles HTTP request to hold funds
+     *
+     * @param ctx request context
+     * @throws AccountNotFoundException        when there's no account with specified account id
+     * @throws NegativeBalanceRequestException when holding the amount would've resulted in a negative balance
+     */
+    public void handleHoldRequest(@NotNull Context ctx) throws AccountNotFoundException, NegativeBalanceRequestException {
+        HoldRequest request = ctx.bodyValidator(HoldRequest.class)
+                .check(r -> r.accountId() != null, "account shouldn't be empty")
+                .check(r -> r.amount() != null && r.amount().signum() > 0, "amount is required and should be positive number")
+                .check(r -> r.ttlMs() == null || r.ttlMs() > 0 && r.ttlMs() <= MAX_TTL_MILLIS,
+                        "ttl should be between 1 and %d ms".formatted(MAX_TTL_MILLIS))
+                .get();
+        ctx.json(holdService.reserve(request.accountId(), request.amount(), request.ttlMs() == null ? 0 : request.ttlMs()));
+    }
+
+    /**
+     * Handles HTTP request for an active hold
+     *
+     * @param ctx request context
+     * @throws HoldNotFoundException when there's no active hold with specified id
+     */
+    public void handleGetHoldRequest(@NotNull Context ctx) throws HoldNotFoundException {
+        ctx.json(holdService.get(UUID.fromString(ctx.pathParam("id"))));
+    }
+
+    /**
+     * Handles HTTP request to capture a hold into another account
+     *
+     * @param ctx request context
+     * @throws HoldNotFoundException          when there's no active hold with specified id
+     * @throws InternalHoldException          when the hold belongs to a withdrawal in progress
+     * @throws AccountNotFoundException       when there's no receiver account with specified account id
+     * @throws ExchangeRateNotFoundException  when there's no exchange rate between account currencies
+     * @throws VelocityLimitExceededException when capturing would've exceeded velocity limits of the held account
+     */
+    public void handleCaptureRequest(@NotNull Context ctx) throws HoldNotFoundException, InternalHoldException, AccountNotFoundException, ExchangeRateNotFoundException, VelocityLimitExceededException {
+        CaptureRequest request = ctx.bodyValidator(CaptureRequest.class)
+                .check(r -> r.to() != null, "receiver shouldn't be empty")
+                .check(r -> r.amount() == null || r.amount().signum() > 0, "amount should be positive number")
+                .get();
+        holdService.capture(UUID.fromString(ctx.pathParam("id")), request.to(), request.amount());
+    }
+
+    /**
+     * Handles HTTP request to release a hold
+     *
+     * @param ctx request context
+     * @throws HoldNotFoundException when there's no active hold with specified id
+     * @throws InternalHoldException when the hold belongs to a withdrawal in progress
+     */
+    public void handleReleaseRequest(@NotNull Context ctx) throws HoldNotFoundException, InternalHoldException {
+        holdService.release(UUID.fromString(ctx.pathParam("id")));
+    }
+
+    /**
+     * Handles HTTP request for holds taken over from the old replication primary
+     *
+     * @param ctx request context
+     */
+    public void handleOrphanedHoldsRequest(@NotNull Context ctx) {
+        ctx.json(holdService.getOrphaned());
+    }
+
+    /**
+     * Handles HTTP request to capture an orphaned hold, i.e. to let its money leave the system
+     *
+     * @param ctx request context
+     * @throws HoldNotFoundException when there's no active orphaned hold with specified id
+     */
+    public void handleCaptureOrphanedRequest(@NotNull Context ctx) throws HoldNotFoundException {
+        holdService.captureOrphaned(UUID.fromString(ctx.pathParam("id")));
+    }
+
+    /**
+     * Handles HTTP request to release an orphaned hold
+     *
+     * @param ctx request context
+     * @throws HoldNotFoundException when there's no active orphaned hold with specified id
+     */
+    public void handleReleaseOrphanedRequest(@NotNull Context ctx) throws HoldNotFoundException {
+        holdService.releaseOrphaned(UUID.fromString(ctx.pathParam("id")));
+    }
+}
@@ -0,0 +1,10 @@
+package money.boku.operations.hold;
+
+/**
+ * Thrown when there's no such active hold in the system.
+ */
+public class HoldNotFoundException extends Exception {
+    public HoldNotFoundException(String errorMessage) {
+        super(errorMessage);
+    }
+}
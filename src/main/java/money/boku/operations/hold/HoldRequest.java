@@ -0,0 +1,12 @@
+package money.boku.operations.hold;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Passed to API when holding funds.
+ *
+ * @param ttlMs time after which the hold is released automatically; null if it never expires
+ */
+public record HoldRequest(UUID accountId, BigDecimal amount, Long ttlMs) {
+}
@@ -0,0 +1,348 @@
+package money.boku.operations.hold;
+
+import money.boku.IdGenerator;
+import money.boku.account.Account;
+import money.boku.account.AccountDatastore;
+import money.boku.account.AccountNotFoundException;
+import money.boku.account.Flow;
+import money.boku.account.NegativeBalanceRequestException;
+import money.boku.history.PostingType;
+import money.boku.history.TransactionHistory;
+import money.boku.operations.fx.ExchangeRateCache;
+import money.boku.operations.fx.ExchangeRateNotFoundException;
+import money.boku.operations.limits.VelocityLimitExceededException;
+import money.boku.operations.limits.VelocityLimiter;
+import money.boku.operations.scheduled.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds funds in accounts until they are captured or released.
+ * <p>
+ * Every hold ends exactly once: capture, release and expiry all start by removing the hold from the map of active
+ * holds, and only the one that succeeds touches the account. Expiring holds are kept in a {@link TimingWheel}, so
+ * expired holds are found in batches without polling every active hold.
+ * <p>
+ * Internal holds back other operations, e.g. withdrawals in progress. They never expire and are ended only by the
+ * operation that made them. Orphaned holds are internal holds whose operation stayed with the old replication primary;
+ * they keep the money held until an admin finds out how the operation ended.
+ * <p>
+ * Money captured into another account counts towards velocity limits of the held account at capture time, same as
+ * a transfer would.
+ */
+public class HoldService implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(HoldService.class);
+    private static final long EXPIRY_TICK_MILLIS = 100; // can be configurable
+    private static final int EXPIRY_WHEEL_SIZE = 512; // can be configurable
+
+    private final AccountDatastore accountDatastore;
+    private final TransactionHistory transactionHistory;
+    private final ExchangeRateCache exchangeRateCache;
+    private final VelocityLimiter velocityLimiter;
+    private final IdGenerator idGenerator;
+    private final ConcurrentMap<UUID, Hold> holds = new ConcurrentHashMap<>();
+    private final Queue<Hold> newExpiringHolds = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService expiryTicker = Executors.newSingleThreadScheduledExecutor();
+
+    public HoldService(AccountDatastore accountDatastore,
+                       TransactionHistory transactionHistory,
+                       ExchangeRateCache exchangeRateCache,
+                       VelocityLimiter velocityLimiter,
+                       IdGenerator idGenerator) {
+        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+        this.transactionHistory = Objects.requireNonNull(transactionHistory);
+        this.exchangeRateCache = Objects.requireNonNull(exchangeRateCache);
+        this.velocityLimiter = Objects.requireNonNull(velocityLimiter);
+        this.idGenerator = Objects.requireNonNull(idGenerator);
+    }
+
+    /**
+     * Starts separate thread that releases expired holds.
+     */
+    public void startExpiring() {
+        // Owned by the ticker thread only.
+        TimingWheel<Hold> wheel = new TimingWheel<>(EXPIRY_TICK_MILLIS, EXPIRY_WHEEL_SIZE, System.currentTimeMillis());
+        expiryTicker.scheduleAtFixedRate(() -> {
+            try {
+                expire(wheel);
+            } catch (RuntimeException e) {
+                // Uncaught exception would cancel all further ticks.
+                logger.error("Failed to release expired holds", e);
+            }
+        }, EXPIRY_TICK_MILLIS, EXPIRY_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void expire(TimingWheel<Hold> wheel) {
+        List<Hold> expired = new ArrayList<>();
+        Hold hold;
+        while ((hold = newExpiringHolds.poll()) != null) {
+            if (!wheel.schedule(hold.expiresAt(), hold)) {
+                expired.add(hold);
+            }
+        }
+        wheel.advance(System.currentTimeMillis(), expired::add);
+        for (Hold expiredHold : expired) {
+            // Hold that was captured or released before its expiry is no longer in the map.
+            if (holds.remove(expiredHold.id(), expiredHold)) {
+                try {
+                    releaseQuietly(expiredHold, expiredHold.amount());
+                } catch (RuntimeException e) {
+                    // Expired holds are already out of the wheel, one failure shouldn't keep the rest held.
+                    logger.error("Failed to release expired hold %s".formatted(expiredHold.id()), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds funds in the account.
+     *
+     * @param accountId  id of the account
+     * @param amount     amount to hold, in the currency of the account
+     * @param ttlMillis  time after which the hold is released automatically; 0 if it never expires
+     * @return new hold
+     * @throws AccountNotFoundException        if there's no account with such id
+     * @throws NegativeBalanceRequestException if there's not enough money in the account to hold the {@code amount}
+     */
+    public Hold reserve(UUID accountId, BigDecimal amount, long ttlMillis) throws AccountNotFoundException, NegativeBalanceRequestException {
+        return reserve(accountId, amount, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0, false);
+    }
+
+    /**
+     * Holds funds in the account on behalf of another operation, until it calls {@link #captureInternal} or
+     * {@link #releaseInternal}.
+     *
+     * @param accountId id of the account
+     * @param amount    amount to hold, in the currency of the account
+     * @return new internal hold
+     * @throws AccountNotFoundException        if there's no account with such id
+     * @throws NegativeBalanceRequestException if there's not enough money in the account to hold the {@code amount}
+     */
+    public Hold reserveInternal(UUID accountId, BigDecimal amount) throws AccountNotFoundException, NegativeBalanceRequestException {
+        return reserve(accountId, amount, 0, true);
+    }
+
+    private Hold reserve(UUID accountId, BigDecimal amount, long expiresAt, boolean internal) throws AccountNotFoundException, NegativeBalanceRequestException {
+        // Internal holds are only taken by withdrawals.
+        accountDatastore.reserve(accountId, amount, internal ? Flow.WITHDRAWAL : Flow.HOLD);
+        Hold hold = add(accountId, amount, expiresAt, internal, false);
+        if (hold.expires()) {
+            newExpiringHolds.add(hold);
+        }
+        return hold;
+    }
+
+    /**
+     * Takes over funds the old replication primary held in the account, as holds are not replicated. The funds are
+     * already held, so the account is left as it is.
+     *
+     * @param accountId id of the account
+     * @param amount    held amount, in the currency of the account
+     * @return new orphaned hold
+     */
+    public Hold adoptOrphaned(UUID accountId, BigDecimal amount) {
+        return add(accountId, amount, 0, true, true);
+    }
+
+    /**
+     * @return all orphaned holds that are still active
+     */
+    public List<Hold> getOrphaned() {
+        return holds.values().stream().filter(Hold::orphaned).toList();
+    }
+
+    private Hold add(UUID accountId, BigDecimal amount, long expiresAt, boolean internal, boolean orphaned) {
+        Hold hold = new Hold(idGenerator.nextId(), accountId, amount, expiresAt, internal, orphaned);
+        while (holds.putIfAbsent(hold.id(), hold) != null) {
+            hold = new Hold(idGenerator.nextId(), accountId, amount, expiresAt, internal, orphaned);
+        }
+        return hold;
+    }
+
+    /**
+     * Returns active hold.
+     *
+     * @param holdId id of the hold
+     * @return hold
+     * @throws HoldNotFoundException if there's no active hold with such id
+     */
+    public Hold get(UUID holdId) throws HoldNotFoundException {
+        Hold hold = holds.get(holdId);
+        if (hold == null) {
+            throw new HoldNotFoundException("Hold %s is not found".formatted(holdId));
+        }
+        return hold;
+    }
+
+    /**
+     * Takes held funds out of the account, releasing whatever is not captured.
+     *
+     * @param holdId id of the hold
+     * @param to     account to credit captured funds to, converted to its currency
+     * @param amount amount to capture, not more than the held amount; null captures the whole hold
+     * @return captured hold
+     * @throws HoldNotFoundException         if there's no active hold with such id
+     * @throws InternalHoldException         if the hold belongs to another operation
+     * @throws AccountNotFoundException       if there's no {@code to} account
+     * @throws ExchangeRateNotFoundException  if there's no exchange rate between account currencies
+     * @throws VelocityLimitExceededException if capturing would've exceeded velocity limits of the held account
+     */
+    public Hold capture(UUID holdId, UUID to, BigDecimal amount) throws HoldNotFoundException, InternalHoldException, AccountNotFoundException, ExchangeRateNotFoundException, VelocityLimitExceededException {
+        return capture(external(get(holdId)), Objects.requireNonNull(to), amount);
+    }
+
+    /**
+     * Takes the whole internal hold out of the account, money leaves the system (e.g. completed withdrawal). Nothing
+     * is recorded to history.
+     *
+     * @param holdId id of the internal hold
+     * @return captured hold
+     * @throws HoldNotFoundException if there's no active hold with such id
+     */
+    public Hold captureInternal(UUID holdId) throws HoldNotFoundException {
+        return captureOut(get(holdId));
+    }
+
+    /**
+     * Takes the whole orphaned hold out of the account, e.g. when the withdrawal it backed has completed on the old
+     * primary.
+     *
+     * @param holdId id of the orphaned hold
+     * @return captured hold
+     * @throws HoldNotFoundException if there's no active orphaned hold with such id
+     */
+    public Hold captureOrphaned(UUID holdId) throws HoldNotFoundException {
+        return captureOut(orphaned(get(holdId)));
+    }
+
+    private Hold captureOut(Hold hold) throws HoldNotFoundException {
+        try {
+            return capture(hold, null, null);
+        } catch (AccountNotFoundException | ExchangeRateNotFoundException | VelocityLimitExceededException e) {
+            // Capture without receiver doesn't look up other accounts or rates, and the operation owning the hold
+            // enforces velocity limits itself.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Hold capture(Hold hold, UUID to, BigDecimal amount) throws HoldNotFoundException, AccountNotFoundException, ExchangeRateNotFoundException, VelocityLimitExceededException {
+        UUID holdId = hold.id();
+        BigDecimal captureAmount = amount == null ? hold.amount() : amount;
+        if (captureAmount.compareTo(hold.amount()) > 0) {
+            throw new IllegalArgumentException("Can't capture more than %s held".formatted(hold.amount()));
+        }
+        BigDecimal creditAmount = null;
+        long recordedAt = 0;
+        if (to != null) {
+            // Everything that can fail is checked before the hold is claimed.
+            Account from = accountDatastore.getAccount(hold.accountId());
+            creditAmount = exchangeRateCache.convert(captureAmount, from.getCurrency(), accountDatastore.getAccount(to).getCurrency(), RoundingMode.DOWN);
+            if (creditAmount.signum() <= 0) {
+                throw new IllegalArgumentException("Amount is too small to be converted");
+            }
+            recordedAt = velocityLimiter.record(hold.accountId(), captureAmount);
+        }
+        if (!holds.remove(holdId, hold)) {
+            if (to != null) {
+                velocityLimiter.unrecord(hold.accountId(), captureAmount, recordedAt);
+            }
+            throw new HoldNotFoundException("Hold %s is not found".formatted(holdId));
+        }
+        accountDatastore.captureHeld(hold.accountId(), captureAmount, to != null ? Flow.TRANSFER_OUT : Flow.WITHDRAWAL);
+        BigDecimal remainder = hold.amount().subtract(captureAmount);
+        if (remainder.signum() > 0) {
+            releaseQuietly(hold, remainder);
+        }
+        if (to != null) {
+            accountDatastore.increaseBalance(to, creditAmount, Flow.TRANSFER_IN);
+            transactionHistory.record(hold.accountId(), PostingType.TRANSFER_OUT, captureAmount, to);
+            transactionHistory.record(to, PostingType.TRANSFER_IN, creditAmount, hold.accountId());
+        }
+        return hold;
+    }
+
+    /**
+     * Returns held funds to the account balance.
+     *
+     * @param holdId id of the hold
+     * @return released hold
+     * @throws HoldNotFoundException if there's no active hold with such id
+     * @throws InternalHoldException if the hold belongs to another operation
+     */
+    public Hold release(UUID holdId) throws HoldNotFoundException, InternalHoldException {
+        return release(external(get(holdId)));
+    }
+
+    /**
+     * Returns internal hold to the account balance, e.g. when withdrawal fails.
+     *
+     * @param holdId id of the internal hold
+     * @return released hold
+     * @throws HoldNotFoundException if there's no active hold with such id
+     */
+    public Hold releaseInternal(UUID holdId) throws HoldNotFoundException {
+        return release(get(holdId));
+    }
+
+    /**
+     * Returns orphaned hold to the account balance, e.g. when the withdrawal it backed has failed on the old primary.
+     *
+     * @param holdId id of the orphaned hold
+     * @return released hold
+     * @throws HoldNotFoundException if there's no active orphaned hold with such id
+     */
+    public Hold releaseOrphaned(UUID holdId) throws HoldNotFoundException {
+        return release(orphaned(get(holdId)));
+    }
+
+    private Hold release(Hold hold) throws HoldNotFoundException {
+        if (!holds.remove(hold.id(), hold)) {
+            throw new HoldNotFoundException("Hold %s is not found".formatted(hold.id()));
+        }
+        releaseQuietly(hold, hold.amount());
+        return hold;
+    }
+
+    private static Hold external(Hold hold) throws InternalHoldException {
+        if (hold.internal()) {
+            throw new InternalHoldException("Hold %s belongs to another operation and ends with it".formatted(hold.id()));
+        }
+        return hold;
+    }
+
+    private static Hold orphaned(Hold hold) throws HoldNotFoundException {
+        if (!hold.orphaned()) {
+            throw new HoldNotFoundException("Orphaned hold %s is not found".formatted(hold.id()));
+        }
+        return hold;
+    }
+
+    @Override
+    public void close() {
+        expiryTicker.shutdownNow();
+    }
+
+    private void releaseQuietly(Hold hold, BigDecimal amount) {
+        try {
+            // Orphaned holds may have backed anything on the old primary, their release moves money within the account only.
+            accountDatastore.releaseHeld(hold.accountId(), amount, hold.internal() && !hold.orphaned() ? Flow.WITHDRAWAL : Flow.HOLD);
+        } catch (AccountNotFoundException e) {
+            logger.error("Failed to find account %s to release hold %s to".formatted(hold.accountId(), hold.id()));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package money.boku.operations.hold;
+
+/**
+ * Thrown when a hold that belongs to another operation, e.g. a withdrawal in progress, is captured or released
+ * directly.
+ */
+public class InternalHoldException extends Exception {
+    public InternalHoldException(String errorMessage) {
+        super(errorMessage);
+    }
+}
@@ -0,0 +1,81 @@
+package money.boku.operations.limits;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Sum of amounts recorded within the last {@code bucketCount} buckets of time, kept in a ring buffer. Buckets are
+ * rotated lazily on access, so an idle window costs nothing and a busy one does O(1) work per operation on average.
+ * The window slides in steps of one bucket: it covers between {@code bucketCount - 1} and {@code bucketCount}
+ * bucket widths.
+ * <p>
+ * Not thread-safe.
+ */
+class SlidingWindow {
+    private final long bucketMillis;
+    private final BigDecimal[] sums;
+    // Absolute number (time / bucketMillis) of the bucket each slot currently holds.
+    private final long[] buckets;
+    private long head;
+    private BigDecimal total = BigDecimal.ZERO;
+
+    SlidingWindow(long bucketMillis, int bucketCount, long now) {
+        this.bucketMillis = bucketMillis;
+        this.sums = new BigDecimal[bucketCount];
+        this.buckets = new long[bucketCount];
+        Arrays.fill(sums, BigDecimal.ZERO);
+        Arrays.fill(buckets, -1);
+        this.head = now / bucketMillis;
+        buckets[slot(head)] = head;
+    }
+
+    /**
+     * @param now current time
+     * @return sum of amounts recorded within the window ending at {@code now}
+     */
+    BigDecimal total(long now) {
+        rotate(now);
+        return total;
+    }
+
+    void add(long now, BigDecimal amount) {
+        rotate(now);
+        int slot = slot(head);
+        sums[slot] = sums[slot].add(amount);
+        total = total.add(amount);
+    }
+
+    /**
+     * Removes amount recorded at {@code recordedAt}, unless it has already left the window.
+     */
+    void subtract(long now, long recordedAt, BigDecimal amount) {
+        rotate(now);
+        long bucket = Math.min(recordedAt / bucketMillis, head);
+        int slot = slot(bucket);
+        if (buckets[slot] == bucket) {
+            sums[slot] = sums[slot].subtract(amount);
+            total = total.subtract(amount);
+        }
+    }
+
+    private void rotate(long now) {
+        long current = now / bucketMillis;
+        // Clock going backwards keeps recording into the latest bucket.
+        if (current <= head) {
+            return;
+        }
+        // Every slot is reset at most once, however long the window was idle.
+        long from = Math.max(head + 1, current - sums.length + 1);
+        for (long bucket = from; bucket <= current; bucket++) {
+            int slot = slot(bucket);
+            total = total.subtract(sums[slot]);
+            sums[slot] = BigDecimal.ZERO;
+            buckets[slot] = bucket;
+        }
+        head = current;
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) sums.length);
+    }
+}
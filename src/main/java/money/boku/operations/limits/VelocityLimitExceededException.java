@@ -0,0 +1,10 @@
+package money.boku.operations.limits;
+
+/**
+ * Thrown when operation would make account exceed its velocity limits.
+ */
+public class VelocityLimitExceededException extends Exception {
+    public VelocityLimitExceededException(String errorMessage) {
+        super(errorMessage);
+    }
+}
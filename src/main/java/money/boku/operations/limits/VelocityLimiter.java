@@ -0,0 +1,148 @@
+package money.boku.operations.limits;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Enforces {@link VelocityLimits} on money leaving accounts. Every account has its own pair of sliding windows and
+ * its own lock, so accounts never wait for each other.
+ * <p>
+ * Amount is recorded before the account is debited; if debit fails, the amount should be taken back with
+ * {@link #unrecord}. Callers should make sure the account exists first. Windows whose amounts have all left them are
+ * evicted by a sweep that runs once a minute on a separate thread.
+ */
+public class VelocityLimiter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(VelocityLimiter.class);
+    private static final long HOUR_BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1); // can be configurable
+    private static final int HOUR_BUCKETS = 60;
+    private static final long DAY_BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(15); // can be configurable
+    private static final int DAY_BUCKETS = 96;
+    private static final long SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1); // can be configurable
+
+    private final VelocityLimits limits;
+    private final LongSupplier clock;
+    private final ConcurrentMap<UUID, AccountWindows> windows = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor();
+
+    public VelocityLimiter(VelocityLimits limits) {
+        this(limits, System::currentTimeMillis);
+    }
+
+    public VelocityLimiter(VelocityLimits limits, LongSupplier clock) {
+        this.limits = Objects.requireNonNull(limits);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Starts separate thread that evicts windows whose amounts have all left them.
+     */
+    public void start() {
+        if (limits.isUnlimited()) {
+            return;
+        }
+        sweeper.scheduleAtFixedRate(() -> {
+            try {
+                sweep(clock.getAsLong());
+            } catch (RuntimeException e) {
+                // Uncaught exception would cancel all further sweeps.
+                logger.error("Failed to evict velocity windows", e);
+            }
+        }, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records amount leaving the account, unless it would exceed the limits.
+     *
+     * @param accountId id of the account
+     * @param amount    amount in the currency of the account
+     * @return time the amount was recorded at, to be passed to {@link #unrecord}
+     * @throws VelocityLimitExceededException if the amount would exceed any of the limits
+     */
+    public long record(UUID accountId, BigDecimal amount) throws VelocityLimitExceededException {
+        long now = clock.getAsLong();
+        if (limits.isUnlimited()) {
+            return now;
+        }
+        while (true) {
+            AccountWindows accountWindows = windows.computeIfAbsent(accountId, id -> new AccountWindows(now));
+            synchronized (accountWindows) {
+                // Windows evicted after the lookup are no longer in the map; the account gets new ones.
+                if (accountWindows.evicted) {
+                    continue;
+                }
+                // Both limits are checked before anything is recorded.
+                if (limits.hourly() != null && accountWindows.hour.total(now).add(amount).compareTo(limits.hourly()) > 0) {
+                    throw new VelocityLimitExceededException("Account %s would exceed hourly limit of %s".formatted(accountId, limits.hourly()));
+                }
+                if (limits.daily() != null && accountWindows.day.total(now).add(amount).compareTo(limits.daily()) > 0) {
+                    throw new VelocityLimitExceededException("Account %s would exceed daily limit of %s".formatted(accountId, limits.daily()));
+                }
+                accountWindows.hour.add(now, amount);
+                accountWindows.day.add(now, amount);
+            }
+            return now;
+        }
+    }
+
+    /**
+     * Takes back amount recorded for an operation that failed.
+     *
+     * @param accountId  id of the account
+     * @param amount     recorded amount
+     * @param recordedAt time returned by {@link #record}
+     */
+    public void unrecord(UUID accountId, BigDecimal amount, long recordedAt) {
+        AccountWindows accountWindows = windows.get(accountId);
+        if (accountWindows == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        synchronized (accountWindows) {
+            accountWindows.hour.subtract(now, recordedAt, amount);
+            accountWindows.day.subtract(now, recordedAt, amount);
+        }
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    int accountCount() {
+        return windows.size();
+    }
+
+    void sweep(long now) {
+        windows.forEach((accountId, accountWindows) -> {
+            synchronized (accountWindows) {
+                if (accountWindows.hour.total(now).signum() == 0 && accountWindows.day.total(now).signum() == 0) {
+                    accountWindows.evicted = true;
+                    windows.remove(accountId, accountWindows);
+                }
+            }
+        });
+    }
+
+    private static final class AccountWindows {
+        private final SlidingWindow hour;
+        private final SlidingWindow day;
+        // Guarded by the windows themselves.
+        private boolean evicted;
+
+        private AccountWindows(long now) {
+            this.hour = new SlidingWindow(HOUR_BUCKET_MILLIS, HOUR_BUCKETS, now);
+            this.day = new SlidingWindow(DAY_BUCKET_MILLIS, DAY_BUCKETS, now);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package money.boku.operations.limits;
+
+import java.math.BigDecimal;
+
+/**
+ * Maximum amount an account can send or withdraw within a sliding window, in the currency of the account.
+ *
+ * @param hourly limit for the last hour; null if not limited
+ * @param daily  limit for the last 24 hours; null if not limited
+ */
+public record VelocityLimits(BigDecimal hourly, BigDecimal daily) {
+    public static final VelocityLimits UNLIMITED = new VelocityLimits(null, null);
+
+    public VelocityLimits {
+        if (hourly != null && hourly.signum() <= 0 || daily != null && daily.signum() <= 0) {
+            throw new IllegalArgumentException("limits should be positive");
+        }
+    }
+
+    public boolean isUnlimited() {
+        return hourly == null && daily == null;
+    }
+}
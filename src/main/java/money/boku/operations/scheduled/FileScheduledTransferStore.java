@@ -0,0 +1,205 @@
+package money.boku.operations.scheduled;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * {@link ScheduledTransferStore} backed by an append-only binary log file. Every save or removal appends a small
+ * fixed-layout record; the file is rewritten with only pending transfers on startup and whenever obsolete records
+ * start to dominate it.
+ * <pre>
+ * header: magic (int), format version (byte)
+ * SAVE:   type (byte), id, from, to (2 longs each), currency code (UTF, empty if not set), executeAt (long),
+ *         interval (long), amount scale (int), amount unscaled value (short length + bytes)
+ * REMOVE: type (byte), id (2 longs)
+ * </pre>
+ * Records are flushed to the OS on every write, but not forced to disk: a machine crash may lose the latest changes,
+ * a process crash doesn't. A record torn by a crash at the end of the file is ignored.
+ */
+public class FileScheduledTransferStore implements ScheduledTransferStore {
+    private static final Logger logger = LoggerFactory.getLogger(FileScheduledTransferStore.class);
+    private static final int MAGIC = 0x42534354; // "BSCT"
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte SAVE = 1;
+    private static final byte REMOVE = 2;
+    private static final long MIN_RECORDS_TO_COMPACT = 10_000;
+
+    private final Path path;
+    private DataOutputStream out;
+    private long recordsSinceCompaction;
+
+    public FileScheduledTransferStore(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized Collection<ScheduledTransfer> load() throws IOException {
+        Map<UUID, ScheduledTransfer> pending = new LinkedHashMap<>();
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                readHeader(in);
+                while (true) {
+                    byte type;
+                    try {
+                        type = in.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    try {
+                        if (type == SAVE) {
+                            ScheduledTransfer transfer = readTransfer(in);
+                            pending.put(transfer.id(), transfer);
+                        } else if (type == REMOVE) {
+                            pending.remove(readUuid(in));
+                        } else {
+                            throw new IOException("Unknown record type %d in %s".formatted(type, path));
+                        }
+                    } catch (EOFException e) {
+                        logger.warn("Ignoring incomplete record at the end of {}", path);
+                        break;
+                    }
+                }
+            }
+        }
+        rewrite(pending.values());
+        return pending.values();
+    }
+
+    @Override
+    public synchronized void save(ScheduledTransfer transfer) {
+        try {
+            out.writeByte(SAVE);
+            writeUuid(transfer.id());
+            writeUuid(transfer.from());
+            writeUuid(transfer.to());
+            out.writeUTF(transfer.currency() == null ? "" : transfer.currency().getCurrencyCode());
+            out.writeLong(transfer.executeAt());
+            out.writeLong(transfer.intervalMillis());
+            out.writeInt(transfer.amount().scale());
+            byte[] unscaled = transfer.amount().unscaledValue().toByteArray();
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+            out.flush();
+            recordsSinceCompaction++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save scheduled transfer " + transfer.id(), e);
+        }
+    }
+
+    @Override
+    public synchronized void remove(UUID id) {
+        try {
+            out.writeByte(REMOVE);
+            writeUuid(id);
+            out.flush();
+            recordsSinceCompaction++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove scheduled transfer " + id, e);
+        }
+    }
+
+    @Override
+    public synchronized boolean needsCompaction(int pendingCount) {
+        return recordsSinceCompaction > MIN_RECORDS_TO_COMPACT + 2L * pendingCount;
+    }
+
+    @Override
+    public synchronized void compact(Collection<ScheduledTransfer> pending) {
+        try {
+            rewrite(pending);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    private void rewrite(Collection<ScheduledTransfer> pending) throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileOutputStream tmpFile = new FileOutputStream(tmp.toFile());
+        out = new DataOutputStream(new BufferedOutputStream(tmpFile));
+        writeHeader();
+        for (ScheduledTransfer transfer : pending) {
+            save(transfer);
+        }
+        out.flush();
+        tmpFile.getFD().sync();
+        out.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile(), true)));
+        recordsSinceCompaction = 0;
+    }
+
+    private void writeHeader() throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+    }
+
+    private void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(path + " is not a scheduled transfers file");
+        }
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version %d of %s".formatted(version, path));
+        }
+    }
+
+    private void writeUuid(UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static ScheduledTransfer readTransfer(DataInputStream in) throws IOException {
+        UUID id = readUuid(in);
+        UUID from = readUuid(in);
+        UUID to = readUuid(in);
+        String currencyCode = in.readUTF();
+        long executeAt = in.readLong();
+        long interval = in.readLong();
+        int scale = in.readInt();
+        byte[] unscaled = readBytes(in, in.readUnsignedShort());
+        return new ScheduledTransfer(id, from, to, new BigDecimal(new BigInteger(unscaled), scale),
+                currencyCode.isEmpty() ? null : Currency.getInstance(currencyCode), executeAt, interval);
+    }
+
+    private static byte[] readBytes(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return bytes;
+    }
+}
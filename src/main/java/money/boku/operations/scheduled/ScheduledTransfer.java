@@ -0,0 +1,42 @@
+package money.boku.operations.scheduled;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * Transfer that is executed at a given time, once or repeatedly.
+ *
+ * @param id             id of the scheduled transfer
+ * @param from           sender account id
+ * @param to             receiver account id
+ * @param amount         amount to transfer
+ * @param currency       currency of the amount; null means currency of the sender account
+ * @param executeAt      time of the next execution, in milliseconds since epoch
+ * @param intervalMillis time between executions of a recurring transfer; 0 for a one-off transfer
+ */
+public record ScheduledTransfer(UUID id,
+                                UUID from,
+                                UUID to,
+                                BigDecimal amount,
+                                Currency currency,
+                                long executeAt,
+                                long intervalMillis) {
+    public boolean isRecurring() {
+        return intervalMillis > 0;
+    }
+
+    /**
+     * Returns the next occurrence of a recurring transfer. Occurrences missed while the service was down are skipped,
+     * so money is never sent several times in a row to catch up.
+     *
+     * @param now current time
+     * @return the same transfer with execution time moved to the first occurrence after {@code now}
+     * @throws ArithmeticException if the next occurrence doesn't fit into long
+     */
+    public ScheduledTransfer nextOccurrence(long now) {
+        long skipped = Math.max(0, Math.subtractExact(now, executeAt) / intervalMillis);
+        long next = Math.addExact(executeAt, Math.multiplyExact(skipped + 1, intervalMillis));
+        return new ScheduledTransfer(id, from, to, amount, currency, next, intervalMillis);
+    }
+}
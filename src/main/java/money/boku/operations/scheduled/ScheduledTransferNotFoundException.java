@@ -0,0 +1,10 @@
+package money.boku.operations.scheduled;
+
+/**
+ * Thrown when there's no such pending scheduled transfer in the system.
+ */
+public class ScheduledTransferNotFoundException extends Exception {
+    public ScheduledTransferNotFoundException(String errorMessage) {
+        super(errorMessage);
+    }
+}
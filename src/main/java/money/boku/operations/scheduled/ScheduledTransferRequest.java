@@ -0,0 +1,14 @@
+package money.boku.operations.scheduled;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * Passed to API when scheduling a transfer.
+ *
+ * @param executeAt  time of the (first) execution, in milliseconds since epoch
+ * @param intervalMs time between executions of a recurring transfer; null or 0 for a one-off transfer
+ */
+public record ScheduledTransferRequest(UUID from, UUID to, BigDecimal amount, Currency currency, Long executeAt, Long intervalMs) {
+}
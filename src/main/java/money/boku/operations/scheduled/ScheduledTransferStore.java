@@ -0,0 +1,80 @@
+package money.boku.operations.scheduled;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps pending scheduled transfers across restarts.
+ */
+public interface ScheduledTransferStore extends Closeable {
+    /**
+     * Store that doesn't keep anything, pending transfers are lost on restart.
+     */
+    ScheduledTransferStore IN_MEMORY = new ScheduledTransferStore() {
+        @Override
+        public Collection<ScheduledTransfer> load() {
+            return List.of();
+        }
+
+        @Override
+        public void save(ScheduledTransfer transfer) {
+        }
+
+        @Override
+        public void remove(UUID id) {
+        }
+
+        @Override
+        public boolean needsCompaction(int pendingCount) {
+            return false;
+        }
+
+        @Override
+        public void compact(Collection<ScheduledTransfer> pending) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Reads pending transfers saved before restart. Called once before any other method.
+     *
+     * @return pending transfers
+     * @throws IOException if stored data can't be read
+     */
+    Collection<ScheduledTransfer> load() throws IOException;
+
+    /**
+     * Saves new pending transfer or new execution time of an existing one.
+     *
+     * @param transfer pending transfer
+     */
+    void save(ScheduledTransfer transfer);
+
+    /**
+     * Forgets transfer which was executed or cancelled.
+     *
+     * @param id id of the scheduled transfer
+     */
+    void remove(UUID id);
+
+    /**
+     * @param pendingCount number of pending transfers
+     * @return whether the store has accumulated enough obsolete data to be worth compacting
+     */
+    boolean needsCompaction(int pendingCount);
+
+    /**
+     * Rewrites the store so that it contains only pending transfers. Transfers saved or removed concurrently with
+     * compaction are kept consistent, as long as callers update {@code pending} before calling {@link #save} or
+     * {@link #remove}.
+     *
+     * @param pending live view of pending transfers
+     */
+    void compact(Collection<ScheduledTransfer> pending);
+}
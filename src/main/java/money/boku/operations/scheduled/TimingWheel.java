@@ -0,0 +1,158 @@
+package money.boku.operations.scheduled;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed hierarchical timing wheel. Holds any number of timers with O(1) insertion and expires them in batches, one
+ * tick at a time.
+ * <p>
+ * Level 0 has {@code wheelSize} buckets of {@code tickMillis} each. Every next level has the same number of buckets,
+ * each as wide as the whole previous level. A timer is placed on the lowest level which covers its deadline. When
+ * time reaches the start of a bucket on a higher level, its timers are moved ("cascaded") to lower levels, so every
+ * timer is touched at most once per level. Levels are created lazily, buckets are allocated on first use.
+ * <p>
+ * Not thread-safe, expected to be owned by a single thread. Timers fire no earlier than their deadline and at most
+ * one tick late (plus however late {@link #advance} is called).
+ *
+ * @param <T> type of timer payload
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final int mask;
+    private final List<Level<T>> levels = new ArrayList<>();
+    // Start of the current level 0 bucket, always a multiple of tickMillis.
+    private long currentTime;
+    private int size;
+
+    /**
+     * @param tickMillis width of level 0 bucket
+     * @param wheelSize  number of buckets on every level, should be a power of 2
+     * @param startTime  current time
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startTime) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tick should be positive");
+        }
+        if (wheelSize < 2 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheel size should be a power of 2");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.mask = wheelSize - 1;
+        this.currentTime = startTime - Math.floorMod(startTime, tickMillis);
+        levels.add(new Level<>(tickMillis, wheelSize));
+    }
+
+    /**
+     * Adds timer to the wheel.
+     *
+     * @param deadline time when the timer should fire
+     * @param value    timer payload
+     * @return false if the deadline has already come, in which case timer is not added and the caller should fire it
+     * @throws ArithmeticException if the deadline is too far from the current time to be represented
+     */
+    public boolean schedule(long deadline, T value) {
+        if (!place(new Timer<>(deadline, value))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward and fires every timer which deadline is not after {@code now}.
+     *
+     * @param now     current time
+     * @param expired receives payloads of fired timers, in the order of their buckets
+     */
+    public void advance(long now, Consumer<T> expired) {
+        while (currentTime + tickMillis <= now) {
+            List<Timer<T>> due = levels.get(0).take((int) ((currentTime / tickMillis) & mask));
+            if (due != null) {
+                for (Timer<T> timer : due) {
+                    size--;
+                    expired.accept(timer.value());
+                }
+            }
+            currentTime += tickMillis;
+            cascade();
+        }
+    }
+
+    /**
+     * @return number of timers in the wheel
+     */
+    public int size() {
+        return size;
+    }
+
+    private boolean place(Timer<T> timer) {
+        long delta = Math.subtractExact(timer.deadline(), currentTime);
+        if (delta < tickMillis) {
+            return false;
+        }
+        int levelIdx = 0;
+        long span = tickMillis * wheelSize;
+        // Spans grow exponentially, a handful of levels covers any realistic deadline.
+        while (delta >= span && span <= Long.MAX_VALUE / wheelSize) {
+            levelIdx++;
+            span *= wheelSize;
+        }
+        while (levels.size() <= levelIdx) {
+            Level<T> top = levels.get(levels.size() - 1);
+            levels.add(new Level<>(top.tickMillis() * wheelSize, wheelSize));
+        }
+        Level<T> level = levels.get(levelIdx);
+        level.add((int) ((timer.deadline() / level.tickMillis()) & mask), timer);
+        return true;
+    }
+
+    // Higher levels go first: timers cascaded from level N may land into the current bucket of level N-1.
+    private void cascade() {
+        for (int i = levels.size() - 1; i > 0; i--) {
+            Level<T> level = levels.get(i);
+            if (currentTime % level.tickMillis() != 0) {
+                continue;
+            }
+            List<Timer<T>> timers = level.take((int) ((currentTime / level.tickMillis()) & mask));
+            if (timers == null) {
+                continue;
+            }
+            for (Timer<T> timer : timers) {
+                // Cascaded timers always fit into lower levels; if the deadline is within the current tick,
+                // it goes to the current level 0 bucket which fires on the next advance.
+                if (!place(timer)) {
+                    levels.get(0).add((int) ((currentTime / tickMillis) & mask), timer);
+                }
+            }
+        }
+    }
+
+    private record Timer<T>(long deadline, T value) {
+    }
+
+    private record Level<T>(long tickMillis, List<Timer<T>>[] buckets) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Level(long tickMillis, int wheelSize) {
+            this(tickMillis, (List<Timer<T>>[]) new List[wheelSize]);
+        }
+
+        private void add(int idx, Timer<T> timer) {
+            List<Timer<T>> bucket = buckets[idx];
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                buckets[idx] = bucket;
+            }
+            bucket.add(timer);
+        }
+
+        private List<Timer<T>> take(int idx) {
+            List<Timer<T>> bucket = buckets[idx];
+            buckets[idx] = null;
+            return bucket;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package money.boku.operations.scheduled;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps pending scheduled transfers and executes them when they are due.
+ * <p>
+ * Pending transfers are held in a {@link TimingWheel} owned by a single ticker thread; new transfers reach it through
+ * a lock-free queue, so scheduling never waits for the ticker. Transfers that become due within the same tick are
+ * executed as one batch on a separate thread, so slow transfers don't delay the wheel.
+ * <p>
+ * Transfers are executed at most once: a one-off transfer is removed from the store and a recurring one is moved to
+ * its next occurrence before it's executed, so a crash in the middle of execution never repeats it.
+ */
+public class TransferScheduler implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(TransferScheduler.class);
+    /**
+     * Precision of execution times, recurring transfers can't be more frequent.
+     */
+    public static final long TICK_MILLIS = 10; // can be configurable
+    private static final int WHEEL_SIZE = 512; // can be configurable
+
+    private final ScheduledTransferStore store;
+    // Source of truth for pending transfers. Wheel may still hold cancelled or rescheduled ones, they are skipped
+    // when fired because they are no longer (identical to) the value in this map.
+    private final ConcurrentMap<UUID, ScheduledTransfer> pending = new ConcurrentHashMap<>();
+    private final Queue<ScheduledTransfer> incoming = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService transferExecutor = Executors.newSingleThreadExecutor();
+    private TimingWheel<ScheduledTransfer> wheel;
+
+    public TransferScheduler(ScheduledTransferStore store) {
+        this.store = Objects.requireNonNull(store);
+    }
+
+    /**
+     * Executes scheduled transfer.
+     */
+    @FunctionalInterface
+    public interface TransferAction {
+        void execute(ScheduledTransfer transfer) throws Exception;
+    }
+
+    /**
+     * Loads transfers saved before restart and starts executing due transfers. Transfers that became due while the
+     * service was down are executed right away.
+     *
+     * @param action executes due transfers
+     * @throws IOException if saved transfers can't be loaded
+     */
+    public void start(TransferAction action) throws IOException {
+        Objects.requireNonNull(action);
+        for (ScheduledTransfer transfer : store.load()) {
+            pending.put(transfer.id(), transfer);
+            incoming.add(transfer);
+        }
+        wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick(action);
+            } catch (RuntimeException e) {
+                // Uncaught exception would cancel all further ticks.
+                logger.error("Failed to process scheduled transfers", e);
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        logger.info("Loaded {} scheduled transfers", pending.size());
+    }
+
+    /**
+     * Adds new pending transfer.
+     *
+     * @param transfer transfer to execute
+     */
+    public void schedule(ScheduledTransfer transfer) {
+        // Map goes first, see ScheduledTransferStore#compact. Transfer which isn't saved is not pending either.
+        pending.put(transfer.id(), transfer);
+        try {
+            store.save(transfer);
+        } catch (RuntimeException e) {
+            pending.remove(transfer.id(), transfer);
+            throw e;
+        }
+        incoming.add(transfer);
+    }
+
+    /**
+     * @param id id of the scheduled transfer
+     * @return pending transfer
+     * @throws ScheduledTransferNotFoundException if there's no pending transfer with such id
+     */
+    public ScheduledTransfer get(UUID id) throws ScheduledTransferNotFoundException {
+        ScheduledTransfer transfer = pending.get(id);
+        if (transfer == null) {
+            throw new ScheduledTransferNotFoundException("Scheduled transfer %s is not found".formatted(id));
+        }
+        return transfer;
+    }
+
+    /**
+     * Cancels pending transfer.
+     *
+     * @param id id of the scheduled transfer
+     * @throws ScheduledTransferNotFoundException if there's no pending transfer with such id, e.g. it was already executed
+     */
+    public void cancel(UUID id) throws ScheduledTransferNotFoundException {
+        if (pending.remove(id) == null) {
+            throw new ScheduledTransferNotFoundException("Scheduled transfer %s is not found".formatted(id));
+        }
+        store.remove(id);
+    }
+
+    /**
+     * @return number of pending transfers
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ticker.shutdownNow();
+        transferExecutor.shutdown();
+        try {
+            transferExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        store.close();
+    }
+
+    private void tick(TransferAction action) {
+        long now = System.currentTimeMillis();
+        List<ScheduledTransfer> fired = new ArrayList<>();
+        ScheduledTransfer transfer;
+        while ((transfer = incoming.poll()) != null) {
+            if (!wheel.schedule(transfer.executeAt(), transfer)) {
+                fired.add(transfer);
+            }
+        }
+        wheel.advance(now, fired::add);
+
+        List<ScheduledTransfer> batch = new ArrayList<>(fired.size());
+        for (ScheduledTransfer due : fired) {
+            if (pending.get(due.id()) != due) {
+                continue;
+            }
+            if (due.isRecurring()) {
+                ScheduledTransfer next = due.nextOccurrence(now);
+                if (!pending.replace(due.id(), due, next)) {
+                    continue;
+                }
+                store.save(next);
+                if (!wheel.schedule(next.executeAt(), next)) {
+                    incoming.add(next);
+                }
+            } else {
+                if (!pending.remove(due.id(), due)) {
+                    continue;
+                }
+                store.remove(due.id());
+            }
+            batch.add(due);
+        }
+        if (!batch.isEmpty()) {
+            transferExecutor.execute(() -> executeBatch(batch, action));
+        }
+        if (store.needsCompaction(pending.size())) {
+            store.compact(pending.values());
+        }
+    }
+
+    private static void executeBatch(List<ScheduledTransfer> batch, TransferAction action) {
+        for (ScheduledTransfer transfer : batch) {
+            try {
+                action.execute(transfer);
+            } catch (Exception e) {
+                logger.warn("Scheduled transfer {} from {} to {} failed: {}", transfer.id(), transfer.from(), transfer.to(), e.toString());
+            }
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package money.boku.operations.withdrawal;
 
-import money.boku.account.AccountDatastore;
-import money.boku.account.AccountNotFoundException;
+import money.boku.diagnostics.Events;
+import money.boku.diagnostics.WithdrawalProviderCallEvent;
+import money.boku.diagnostics.WithdrawalWatcherTickEvent;
+import money.boku.history.PostingType;
+import money.boku.history.TransactionHistory;
+import money.boku.operations.hold.HoldNotFoundException;
+import money.boku.operations.hold.HoldService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,13 +25,20 @@ import java.util.concurrent.TimeUnit;
 public class WithdrawalRequestWatcher {
     private static final Logger logger = LoggerFactory.getLogger(WithdrawalRequestWatcher.class);
 
-    private final AccountDatastore accountDatastore;
+    private final HoldService holdService;
     private final WithdrawalService withdrawalService;
+    private final TransactionHistory transactionHistory;
+    private final WithdrawalStateCache withdrawalStateCache;
     private final Queue<WithdrawalRequestRecord> queue = new ConcurrentLinkedQueue<>();
 
-    public WithdrawalRequestWatcher(AccountDatastore accountDatastore, WithdrawalService withdrawalService) {
-        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+    public WithdrawalRequestWatcher(HoldService holdService,
+                                    WithdrawalService withdrawalService,
+                                    TransactionHistory transactionHistory,
+                                    WithdrawalStateCache withdrawalStateCache) {
+        this.holdService = Objects.requireNonNull(holdService);
         this.withdrawalService = Objects.requireNonNull(withdrawalService);
+        this.transactionHistory = Objects.requireNonNull(transactionHistory);
+        this.withdrawalStateCache = Objects.requireNonNull(withdrawalStateCache);
     }
 
     /**
@@ -41,35 +53,91 @@ public class WithdrawalRequestWatcher {
     /**
      * Starts separate thread that periodically goes through
      * all watched withdrawal requests and checks their status in withdrawal service.
-     * In case withdrawal request has failed, performs rollback and returns money back
-     * to the account.
+     * Once withdrawal request has completed, captures money held for it. In case withdrawal request has failed,
+     * performs rollback and releases held money back to the account. Terminal states are published to
+     * {@link WithdrawalStateCache} once money is settled.
      */
     public void startWatching() {
         Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(() -> {
-            // Using size() instead of queue iterator gives better guarantee
-            // we won't handle the same withdrawal request twice in the same run.
-            int size = queue.size();
-            for (int i = 0; i < size; i++) {
-                WithdrawalRequestRecord request = queue.poll();
-                if (request == null) {
-                    return;
-                }
-                // Hypothetically, if withdrawal requests can be removed from the withdrawal service,
-                // we might want not to fail here if request is not found but rather continue to go through the loop.
-                WithdrawalService.WithdrawalState requestState = withdrawalService.getRequestState(request.withdrawalId());
-                if (requestState == WithdrawalService.WithdrawalState.PROCESSING) {
-                    queue.add(request);
-                } else if (requestState == WithdrawalService.WithdrawalState.FAILED) {
-                    try {
-                        accountDatastore.increaseBalance(request.from(), request.amount());
-                    } catch (AccountNotFoundException e) {
-                        logger.error("Failed to find account %s to return frozen funds to".formatted(request.from()));
-                    }
-                }
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                // Uncaught exception would cancel all further ticks.
+                logger.error("Failed to check withdrawal requests", e);
             }
         }, 0, 50, TimeUnit.MILLISECONDS); // can be configurable
     }
 
-    public record WithdrawalRequestRecord(WithdrawalService.WithdrawalId withdrawalId, UUID from, BigDecimal amount) {
+    private void tick() {
+        WithdrawalWatcherTickEvent tickEvent = new WithdrawalWatcherTickEvent();
+        tickEvent.begin();
+        int checked = 0;
+        int completed = 0;
+        int failed = 0;
+        // Using size() instead of queue iterator gives better guarantee
+        // we won't handle the same withdrawal request twice in the same run.
+        int size = queue.size();
+        for (int i = 0; i < size; i++) {
+            WithdrawalRequestRecord request = queue.poll();
+            if (request == null) {
+                break;
+            }
+            checked++;
+            WithdrawalService.WithdrawalState requestState;
+            try {
+                requestState = check(request);
+            } catch (RuntimeException e) {
+                // Request is checked again on the next tick, so its hold is ended once the check succeeds.
+                logger.error("Failed to check withdrawal %s".formatted(request.withdrawalId().value()), e);
+                queue.add(request);
+                continue;
+            }
+            if (requestState == WithdrawalService.WithdrawalState.COMPLETED) {
+                completed++;
+            } else if (requestState == WithdrawalService.WithdrawalState.FAILED) {
+                failed++;
+            }
+        }
+        int checkedRequests = checked;
+        int completedRequests = completed;
+        int failedRequests = failed;
+        Events.commit(tickEvent, e -> {
+            e.checked = checkedRequests;
+            e.completed = completedRequests;
+            e.failed = failedRequests;
+        });
+    }
+
+    private WithdrawalService.WithdrawalState check(WithdrawalRequestRecord request) {
+        // Hypothetically, if withdrawal requests can be removed from the withdrawal service,
+        // we might want not to fail here if request is not found but rather continue to go through the loop.
+        WithdrawalProviderCallEvent callEvent = new WithdrawalProviderCallEvent();
+        callEvent.begin();
+        WithdrawalService.WithdrawalState requestState = withdrawalService.getRequestState(request.withdrawalId());
+        Events.commit(callEvent, e -> {
+            e.operation = "getRequestState";
+            e.withdrawalId = request.withdrawalId().value().toString();
+            e.attempts = 1;
+        });
+        try {
+            if (requestState == WithdrawalService.WithdrawalState.PROCESSING) {
+                queue.add(request);
+            } else if (requestState == WithdrawalService.WithdrawalState.COMPLETED) {
+                holdService.captureInternal(request.holdId());
+            } else if (requestState == WithdrawalService.WithdrawalState.FAILED) {
+                holdService.releaseInternal(request.holdId());
+                transactionHistory.record(request.from(), PostingType.WITHDRAWAL_REFUND, request.amount(), request.withdrawalId().value());
+            }
+        } catch (HoldNotFoundException e) {
+            // Withdrawal holds are internal, so they are only ended here.
+            logger.error("Failed to end hold %s of withdrawal %s".formatted(request.holdId(), request.withdrawalId().value()), e);
+        }
+        if (WithdrawalStateCache.isTerminal(requestState)) {
+            withdrawalStateCache.put(request.withdrawalId(), requestState);
+        }
+        return requestState;
+    }
+
+    public record WithdrawalRequestRecord(WithdrawalService.WithdrawalId withdrawalId, UUID from, BigDecimal amount, UUID holdId) {
     }
 }
@@ -0,0 +1,115 @@
+package money.boku.operations.withdrawal;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded cache of terminal withdrawal states, filled by {@link WithdrawalRequestWatcher} as it observes them.
+ * Terminal states never change, so cached entries are never stale; when the cache is full, the oldest entries are
+ * evicted and their states are read from {@link WithdrawalService} again.
+ * <p>
+ * Also lets callers wait for a withdrawal to reach its terminal state without polling.
+ */
+public class WithdrawalStateCache {
+    private static final int DEFAULT_CAPACITY = 100_000; // can be configurable
+
+    private final int capacity;
+    private final ConcurrentMap<WithdrawalService.WithdrawalId, WithdrawalService.WithdrawalState> states = new ConcurrentHashMap<>();
+    // Insertion order for eviction. Every id is added once, since terminal states are put once per withdrawal.
+    private final Queue<WithdrawalService.WithdrawalId> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ConcurrentMap<WithdrawalService.WithdrawalId, Waiter> waiters = new ConcurrentHashMap<>();
+
+    public WithdrawalStateCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public WithdrawalStateCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public static boolean isTerminal(WithdrawalService.WithdrawalState state) {
+        return state != WithdrawalService.WithdrawalState.PROCESSING;
+    }
+
+    /**
+     * @param id id of withdrawal request
+     * @return terminal state of withdrawal request, or null if it's not known
+     */
+    public WithdrawalService.WithdrawalState get(WithdrawalService.WithdrawalId id) {
+        return states.get(id);
+    }
+
+    /**
+     * Stores terminal state of withdrawal request and wakes up everyone waiting for it.
+     *
+     * @param id    id of withdrawal request
+     * @param state terminal state
+     */
+    public void put(WithdrawalService.WithdrawalId id, WithdrawalService.WithdrawalState state) {
+        if (!isTerminal(state)) {
+            throw new IllegalArgumentException("Only terminal states can be cached");
+        }
+        if (states.putIfAbsent(id, state) == null) {
+            insertionOrder.add(id);
+            if (size.incrementAndGet() > capacity) {
+                WithdrawalService.WithdrawalId eldest = insertionOrder.poll();
+                if (eldest != null) {
+                    states.remove(eldest);
+                    size.decrementAndGet();
+                }
+            }
+        }
+        // State is stored first: a waiter registered concurrently either sees it or is completed here.
+        Waiter waiter = waiters.remove(id);
+        if (waiter != null) {
+            waiter.future.complete(state);
+        }
+    }
+
+    /**
+     * Returns future completed once withdrawal request reaches its terminal state, or with {@code fallback} once
+     * {@code waitMillis} pass. Waiting for a withdrawal request which isn't watched by
+     * {@link WithdrawalRequestWatcher} always ends with the fallback, and leaves nothing behind.
+     *
+     * @param id         id of withdrawal request
+     * @param waitMillis how long to wait
+     * @param fallback   state to complete the future with on timeout
+     * @return future of the terminal state
+     */
+    public CompletableFuture<WithdrawalService.WithdrawalState> awaitTerminal(WithdrawalService.WithdrawalId id, long waitMillis, WithdrawalService.WithdrawalState fallback) {
+        Waiter waiter = waiters.compute(id, (i, w) -> {
+            Waiter current = w == null ? new Waiter() : w;
+            current.copies++;
+            return current;
+        });
+        WithdrawalService.WithdrawalState state = states.get(id);
+        if (state != null) {
+            waiters.remove(id, waiter);
+            waiter.future.complete(state);
+        }
+        // Callers complete their copies on timeout without affecting others waiting for the same withdrawal; the
+        // shared waiter is forgotten once nobody waits for it.
+        return waiter.future.copy()
+                .completeOnTimeout(fallback, waitMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((s, e) -> waiters.computeIfPresent(id, (i, w) -> w == waiter && --w.copies == 0 ? null : w));
+    }
+
+    int waiterCount() {
+        return waiters.size();
+    }
+
+    private static final class Waiter {
+        private final CompletableFuture<WithdrawalService.WithdrawalState> future = new CompletableFuture<>();
+        // Only accessed inside compute functions of the waiters map.
+        private int copies;
+    }
+}
@@ -0,0 +1,10 @@
+package money.boku.replication;
+
+/**
+ * Thrown when a replica can't serve the request: it's a write or the replica is too far behind the primary.
+ */
+public class ReplicaUnavailableException extends RuntimeException {
+    public ReplicaUnavailableException(String errorMessage) {
+        super(errorMessage);
+    }
+}
@@ -0,0 +1,69 @@
+package money.boku.replication;
+
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.OptionalLong;
+
+/**
+ * API for managing replication and for enforcing read-only mode of replicas.
+ */
+public class ReplicationAPI {
+    public static final String STATUS_PATH = "/replication/status";
+    public static final String PROMOTE_PATH = "/admin/replication/promote";
+    public static final String STALENESS_HEADER = "X-Replica-Staleness-Ms";
+
+    private final ReplicationManager replicationManager;
+
+    public ReplicationAPI(ReplicationManager replicationManager) {
+        this.replicationManager = Objects.requireNonNull(replicationManager);
+    }
+
+    /**
+     * Runs before every request. On a replica rejects writes and reports staleness of the data in
+     * {@value #STALENESS_HEADER} header. Clients can set {@code maxStalenessMs} parameter to reject reads from
+     * a replica that is too far behind. Replication status and promotion are the only requests a replica serves
+     * regardless.
+     *
+     * @param ctx request context
+     * @throws ReplicaUnavailableException if the replica can't serve the request
+     */
+    public void handleBeforeRequest(@NotNull Context ctx) {
+        if (!replicationManager.isReplica() || ctx.path().equals(STATUS_PATH) || ctx.path().equals(PROMOTE_PATH)) {
+            return;
+        }
+        if (ctx.method() != HandlerType.GET && ctx.method() != HandlerType.HEAD) {
+            throw new ReplicaUnavailableException("Replica is read-only, send writes to the primary");
+        }
+        OptionalLong staleness = replicationManager.stalenessMillis();
+        if (staleness.isEmpty()) {
+            throw new ReplicaUnavailableException("Replica hasn't received data from the primary yet");
+        }
+        ctx.header(STALENESS_HEADER, Long.toString(staleness.getAsLong()));
+        Long maxStaleness = ctx.queryParamAsClass("maxStalenessMs", Long.class).allowNullable().get();
+        if (maxStaleness != null && staleness.getAsLong() > maxStaleness) {
+            throw new ReplicaUnavailableException("Replica is %d ms behind the primary".formatted(staleness.getAsLong()));
+        }
+    }
+
+    /**
+     * Handles HTTP request to look at replication status.
+     *
+     * @param ctx request context
+     */
+    public void handleStatusRequest(@NotNull Context ctx) {
+        ctx.json(replicationManager.status());
+    }
+
+    /**
+     * Handles HTTP request to promote replica to primary.
+     *
+     * @param ctx request context
+     */
+    public void handlePromoteRequest(@NotNull Context ctx) {
+        replicationManager.promote();
+        ctx.json(replicationManager.status());
+    }
+}
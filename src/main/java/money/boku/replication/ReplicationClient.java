@@ -0,0 +1,127 @@
+package money.boku.replication;
+
+import money.boku.account.AccountDatastore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Objects;
+import java.util.OptionalLong;
+
+/**
+ * Replica side of replication. Keeps a connection to the primary and applies the stream of balance changes to the
+ * local datastore. Reconnects if the connection is lost.
+ */
+public class ReplicationClient implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationClient.class);
+    private static final long RECONNECT_DELAY_MILLIS = 500; // can be configurable
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+
+    private final AccountDatastore accountDatastore;
+    private final InetSocketAddress primaryAddress;
+    private final String secret;
+    private volatile boolean closed;
+    private volatile Socket socket;
+    // Primary clock of the latest point in time the replica is known to be up-to-date with; -1 until first snapshot.
+    private volatile long syncedUpToMillis = -1;
+
+    /**
+     * @param accountDatastore datastore to apply changes to
+     * @param primaryAddress   replication address of the primary
+     * @param secret           secret to present to the primary
+     */
+    public ReplicationClient(AccountDatastore accountDatastore, InetSocketAddress primaryAddress, String secret) {
+        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+        this.primaryAddress = Objects.requireNonNull(primaryAddress);
+        this.secret = Objects.requireNonNull(secret);
+    }
+
+    /**
+     * Starts following the primary in a separate thread.
+     */
+    public void start() {
+        Thread thread = new Thread(this::follow, "replication-client");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns approximate upper bound of how far behind the primary the replica is (see {@link ReplicationProtocol}).
+     * Relies on primary and replica clocks being in sync, which holds for processes on the same host.
+     *
+     * @return staleness in milliseconds; empty if the replica has never received a full snapshot
+     */
+    public OptionalLong stalenessMillis() {
+        long syncedUpTo = syncedUpToMillis;
+        if (syncedUpTo < 0) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(Math.max(0, System.currentTimeMillis() - syncedUpTo));
+    }
+
+    /**
+     * Stops following the primary. Data received so far stays in the datastore.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    private void follow() {
+        while (!closed) {
+            try (Socket current = new Socket()) {
+                socket = current;
+                current.connect(primaryAddress, CONNECT_TIMEOUT_MILLIS);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(current.getOutputStream()));
+                ReplicationProtocol.writeHello(out, secret);
+                out.flush();
+                logger.info("Connected to primary {}", primaryAddress);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(current.getInputStream()));
+                boolean snapshotReceived = false;
+                while (!closed) {
+                    ReplicationProtocol.Frame frame = ReplicationProtocol.read(in);
+                    switch (frame.type()) {
+                        case ReplicationProtocol.CHANGE -> accountDatastore.applyBalanceChange(frame.change());
+                        case ReplicationProtocol.SNAPSHOT_END -> {
+                            snapshotReceived = true;
+                            syncedUpToMillis = frame.timeMillis();
+                        }
+                        case ReplicationProtocol.HEARTBEAT -> {
+                            if (snapshotReceived) {
+                                syncedUpToMillis = frame.timeMillis();
+                            }
+                        }
+                        default -> throw new IOException("Unexpected frame type " + frame.type());
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.warn("Lost connection to primary {}: {}", primaryAddress, e.getMessage());
+                }
+            }
+            if (!closed) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package money.boku.replication;
+
+import money.boku.account.Account;
+import money.boku.account.AccountDatastore;
+import money.boku.operations.hold.Hold;
+import money.boku.operations.hold.HoldService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.OptionalLong;
+
+/**
+ * Keeps track of the replication role of the server and switches it on failover.
+ * <p>
+ * Primary serves all requests and, if replication port is configured, streams balance changes to replicas.
+ * Replica follows the primary and serves only reads. Promoted replica stops following the old primary, starts
+ * accepting writes and streams its own changes to replicas.
+ * <p>
+ * Holds are not replicated, only the held amounts of accounts. Promoted replica keeps held funds held as orphaned
+ * holds: money of a withdrawal the old primary had in progress may have left already, so it's not made available
+ * again until an admin reconciles the hold.
+ */
+public class ReplicationManager implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationManager.class);
+
+    private final AccountDatastore accountDatastore;
+    private final HoldService holdService;
+    private final InetSocketAddress replicationAddress;
+    private final String secret;
+    private volatile Role role;
+    private volatile ReplicationClient replicationClient;
+    private ReplicationServer replicationServer;
+
+    /**
+     * @param accountDatastore   datastore to replicate
+     * @param holdService        service to take over funds held by the old primary on promotion
+     * @param replicationAddress address to stream changes to replicas from while being primary; port 0 disables
+     *                           streaming
+     * @param primaryAddress     primary to follow; null if the server starts as primary
+     * @param secret             secret shared by the primary and its replicas; may be null if there's no replication
+     */
+    public ReplicationManager(AccountDatastore accountDatastore, HoldService holdService, InetSocketAddress replicationAddress, InetSocketAddress primaryAddress, String secret) {
+        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+        this.holdService = Objects.requireNonNull(holdService);
+        this.replicationAddress = Objects.requireNonNull(replicationAddress);
+        this.secret = secret;
+        if (primaryAddress == null) {
+            role = Role.PRIMARY;
+        } else {
+            role = Role.REPLICA;
+            replicationClient = new ReplicationClient(accountDatastore, primaryAddress, secret);
+        }
+    }
+
+    /**
+     * Starts following the primary or streaming to replicas, depending on the role.
+     */
+    public synchronized void start() {
+        if (role == Role.REPLICA) {
+            replicationClient.start();
+        } else {
+            startServer();
+        }
+    }
+
+    /**
+     * Turns replica into primary. Does nothing if the server is already primary.
+     */
+    public synchronized void promote() {
+        if (role == Role.PRIMARY) {
+            return;
+        }
+        replicationClient.close();
+        replicationClient = null;
+        // Still read-only, so no new hold can be mistaken for an orphaned one.
+        adoptOrphanedHolds();
+        role = Role.PRIMARY;
+        startServer();
+        logger.info("Promoted to primary");
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public boolean isReplica() {
+        return role == Role.REPLICA;
+    }
+
+    /**
+     * @return how far behind the primary the server may be; always 0 for primary, empty if replica has no data yet
+     */
+    public OptionalLong stalenessMillis() {
+        // Called on every read served by a replica, so it doesn't take the lock.
+        ReplicationClient client = replicationClient;
+        return role == Role.PRIMARY || client == null ? OptionalLong.of(0) : client.stalenessMillis();
+    }
+
+    public synchronized ReplicationStatus status() {
+        OptionalLong staleness = stalenessMillis();
+        return new ReplicationStatus(
+                role,
+                staleness.isPresent() ? staleness.getAsLong() : null,
+                replicationServer == null ? 0 : replicationServer.getConnectedReplicas()
+        );
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (replicationClient != null) {
+            replicationClient.close();
+        }
+        if (replicationServer != null) {
+            replicationServer.close();
+        }
+    }
+
+    private void adoptOrphanedHolds() {
+        for (Account account : accountDatastore.getAccounts()) {
+            BigDecimal held = account.getHeld();
+            if (held.signum() > 0) {
+                Hold hold = holdService.adoptOrphaned(account.getId(), held);
+                logger.warn("Kept {} held in account {} by the old primary as orphaned hold {}", held, account.getId(), hold.id());
+            }
+        }
+    }
+
+    private void startServer() {
+        if (replicationAddress.getPort() <= 0) {
+            return;
+        }
+        replicationServer = new ReplicationServer(accountDatastore, replicationAddress, secret);
+        try {
+            replicationServer.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start replication on " + replicationAddress, e);
+        }
+    }
+
+    public enum Role {
+        PRIMARY, REPLICA
+    }
+}
@@ -0,0 +1,109 @@
+package money.boku.replication;
+
+import money.boku.account.BalanceChange;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Currency;
+import java.util.UUID;
+
+/**
+ * Binary format of the replication stream. Replica starts by sending the shared replication secret:
+ * <pre>
+ * HELLO:        type, secret (UTF)
+ * </pre>
+ * Primary closes the connection unless the secret matches. Otherwise it streams frames, every one starting with its
+ * type and the primary clock at the moment the frame was written:
+ * <pre>
+ * CHANGE:       type, time, account id (2 longs), currency code, version, balance and held amount
+ *               (each as scale, unscaled bytes)
+ * SNAPSHOT_END: type, time
+ * HEARTBEAT:    type, time
+ * </pre>
+ * Primary first sends current state of every account, then {@code SNAPSHOT_END}, then changes as they happen.
+ * Time of {@code SNAPSHOT_END} or a heartbeat means that all changes made before it have already been sent. The bound
+ * is approximate: it holds as long as no thread takes longer than a grace period between changing a balance and
+ * handing the change to replication (see {@link ReplicationServer}).
+ */
+final class ReplicationProtocol {
+    static final byte CHANGE = 1;
+    static final byte SNAPSHOT_END = 2;
+    static final byte HEARTBEAT = 3;
+    static final byte HELLO = 4;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeHello(DataOutputStream out, String secret) throws IOException {
+        out.writeByte(HELLO);
+        out.writeUTF(secret);
+    }
+
+    static String readHello(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type != HELLO) {
+            throw new IOException("Expected hello, got frame type " + type);
+        }
+        return in.readUTF();
+    }
+
+    static void writeChange(DataOutputStream out, BalanceChange change, long timeMillis) throws IOException {
+        out.writeByte(CHANGE);
+        out.writeLong(timeMillis);
+        out.writeLong(change.accountId().getMostSignificantBits());
+        out.writeLong(change.accountId().getLeastSignificantBits());
+        out.writeUTF(change.currency().getCurrencyCode());
+        out.writeLong(change.version());
+        writeDecimal(out, change.balance());
+        writeDecimal(out, change.held());
+    }
+
+    static void writeMarker(DataOutputStream out, byte type, long timeMillis) throws IOException {
+        out.writeByte(type);
+        out.writeLong(timeMillis);
+    }
+
+    static Frame read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long timeMillis = in.readLong();
+        if (type == SNAPSHOT_END || type == HEARTBEAT) {
+            return new Frame(type, timeMillis, null);
+        }
+        if (type != CHANGE) {
+            throw new IOException("Unknown frame type " + type);
+        }
+        UUID accountId = new UUID(in.readLong(), in.readLong());
+        Currency currency = Currency.getInstance(in.readUTF());
+        long version = in.readLong();
+        BigDecimal balance = readDecimal(in);
+        BigDecimal held = readDecimal(in);
+        return new Frame(type, timeMillis, new BalanceChange(accountId, currency, balance, held, version));
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeInt(value.scale());
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    /**
+     * Decoded frame.
+     *
+     * @param type       frame type
+     * @param timeMillis primary clock when the frame was written
+     * @param change     balance change for {@code CHANGE} frames, null otherwise
+     */
+    record Frame(byte type, long timeMillis, BalanceChange change) {
+    }
+}
@@ -0,0 +1,187 @@
+package money.boku.replication;
+
+import money.boku.account.Account;
+import money.boku.account.AccountDatastore;
+import money.boku.account.BalanceChange;
+import money.boku.account.BalanceChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primary side of replication. Accepts replica connections over TCP and streams balance changes to them. Listens only
+ * on the configured address and serves only replicas presenting the replication secret.
+ * <p>
+ * Every replica has a bounded queue of changes and its own writer thread, so balance changes never wait for the
+ * network. If a replica can't keep up and its queue overflows, it's disconnected; after reconnecting it receives
+ * a fresh snapshot.
+ */
+public class ReplicationServer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationServer.class);
+    private static final int QUEUE_CAPACITY = 65_536; // can be configurable
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 100; // can be configurable
+    // Changes are queued right after they're made, unless the thread making them is descheduled in between.
+    // Heartbeats only vouch for changes made this long before the queue was seen empty.
+    private static final long HEARTBEAT_GRACE_MILLIS = 50; // can be configurable
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 1_000;
+
+    private final AccountDatastore accountDatastore;
+    private final InetSocketAddress address;
+    private final byte[] secret;
+    private final Set<ReplicaSession> sessions = new CopyOnWriteArraySet<>();
+    private final BalanceChangeListener listener = this::onBalanceChange;
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * @param accountDatastore datastore to replicate
+     * @param address          address to accept replica connections on
+     * @param secret           secret replicas have to present
+     */
+    public ReplicationServer(AccountDatastore accountDatastore, InetSocketAddress address, String secret) {
+        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+        this.address = Objects.requireNonNull(address);
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Starts accepting replica connections.
+     *
+     * @throws IOException if the port can't be bound
+     */
+    public void start() throws IOException {
+        ServerSocket socket = new ServerSocket();
+        socket.bind(address);
+        serverSocket = socket;
+        accountDatastore.addBalanceChangeListener(listener);
+        Thread acceptor = new Thread(this::acceptReplicas, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Streaming balance changes to replicas on {}", serverSocket.getLocalSocketAddress());
+    }
+
+    public int getConnectedReplicas() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        accountDatastore.removeBalanceChangeListener(listener);
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            socket.close();
+        }
+        sessions.forEach(ReplicaSession::close);
+    }
+
+    private void onBalanceChange(BalanceChange change) {
+        for (ReplicaSession session : sessions) {
+            session.offer(change);
+        }
+    }
+
+    private void acceptReplicas() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                ReplicaSession session = new ReplicaSession(socket);
+                Thread writer = new Thread(session::stream, "replication-writer-" + socket.getRemoteSocketAddress());
+                writer.setDaemon(true);
+                writer.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.error("Failed to accept replica connection", e);
+                }
+            }
+        }
+    }
+
+    private class ReplicaSession {
+        private final Socket socket;
+        private final BlockingQueue<BalanceChange> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile boolean closed;
+
+        private ReplicaSession(Socket socket) {
+            this.socket = socket;
+        }
+
+        private void offer(BalanceChange change) {
+            if (!queue.offer(change)) {
+                logger.warn("Replica {} can't keep up with changes, disconnecting it", socket.getRemoteSocketAddress());
+                close();
+            }
+        }
+
+        private void stream() {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                if (!authenticate()) {
+                    logger.warn("Rejected replica {} which didn't present the replication secret", socket.getRemoteSocketAddress());
+                    return;
+                }
+                // Session is registered before the snapshot is taken, so no change can fall in between.
+                // Changes that make it into both are applied once thanks to versions.
+                sessions.add(this);
+                long snapshotTime = System.currentTimeMillis();
+                for (Account account : accountDatastore.getAccounts()) {
+                    ReplicationProtocol.writeChange(out, account.snapshot(), System.currentTimeMillis());
+                }
+                // Snapshot includes every change made before it started.
+                ReplicationProtocol.writeMarker(out, ReplicationProtocol.SNAPSHOT_END, snapshotTime - HEARTBEAT_GRACE_MILLIS);
+                out.flush();
+                while (!closed) {
+                    long time = System.currentTimeMillis();
+                    BalanceChange change = queue.poll(HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    while (change != null) {
+                        ReplicationProtocol.writeChange(out, change, System.currentTimeMillis());
+                        time = System.currentTimeMillis();
+                        change = queue.poll();
+                    }
+                    // Queue was empty at "time", so the replica has seen every change queued before it.
+                    ReplicationProtocol.writeMarker(out, ReplicationProtocol.HEARTBEAT, time - HEARTBEAT_GRACE_MILLIS);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.info("Replica {} disconnected: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private boolean authenticate() throws IOException {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            String presented = ReplicationProtocol.readHello(new DataInputStream(socket.getInputStream()));
+            socket.setSoTimeout(0);
+            return MessageDigest.isEqual(secret, presented.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void close() {
+            closed = true;
+            sessions.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package money.boku.replication;
+
+/**
+ * Response body for replication status request.
+ *
+ * @param role              current role of the server
+ * @param stalenessMillis   how far behind the primary the server may be; null if unknown
+ * @param connectedReplicas number of replicas following this server
+ */
+public record ReplicationStatus(ReplicationManager.Role role, Long stalenessMillis, int connectedReplicas) {
+}
@@ -0,0 +1,128 @@
+package money.boku.stream;
+
+import io.javalin.http.sse.SseClient;
+import money.boku.account.Account;
+import money.boku.account.BalanceChange;
+import money.boku.account.BalanceChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes balance changes to subscribed clients. Registered as {@link BalanceChangeListener}, so it runs inside every
+ * balance change: it only records the change for interested subscribers and never sends anything on the caller's
+ * thread. Sending is done by a small pool of drain threads; clients whose writes stall past a deadline are
+ * disconnected, so they can't hold the pool.
+ */
+public class BalanceStream implements BalanceChangeListener, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(BalanceStream.class);
+    private static final int DRAIN_THREADS = 4; // can be configurable
+    // Keeps idle connections open through proxies and detects disconnected clients.
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 15_000; // can be configurable
+    private static final long WRITE_TIMEOUT_MILLIS = 5_000; // can be configurable
+    private static final long WRITE_CHECK_INTERVAL_MILLIS = 1_000; // can be configurable
+
+    private final ConcurrentMap<UUID, Set<BalanceSubscriber>> subscribersByAccount = new ConcurrentHashMap<>();
+    private final Set<BalanceSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService drainExecutor = Executors.newFixedThreadPool(DRAIN_THREADS);
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    public BalanceStream() {
+        heartbeatExecutor.scheduleAtFixedRate(() -> subscribers.forEach(s -> s.heartbeat(drainExecutor)),
+                HEARTBEAT_INTERVAL_MILLIS, HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        heartbeatExecutor.scheduleAtFixedRate(this::abortStuckSubscribers,
+                WRITE_CHECK_INTERVAL_MILLIS, WRITE_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribes client to changes of given accounts. Current state of every account is sent first.
+     *
+     * @param client   client to send changes to
+     * @param accounts accounts to watch
+     */
+    public void subscribe(SseClient client, Collection<Account> accounts) {
+        BalanceSubscriber subscriber = new BalanceSubscriber(client, accounts.stream().map(Account::getId).collect(Collectors.toSet()));
+        subscribers.add(subscriber);
+        for (UUID accountId : subscriber.accountIds()) {
+            // Added inside compute, concurrent unsubscribe may be dropping the set of the same account.
+            subscribersByAccount.compute(accountId, (id, accountSubscribers) -> {
+                Set<BalanceSubscriber> result = accountSubscribers == null ? ConcurrentHashMap.newKeySet() : accountSubscribers;
+                result.add(subscriber);
+                return result;
+            });
+        }
+        client.onClose(() -> unsubscribe(subscriber));
+        // Client that disconnected before the callback was registered would never call it.
+        if (client.terminated()) {
+            unsubscribe(subscriber);
+            return;
+        }
+        // Registered before taking snapshots, so no change is missed; older snapshots are dropped by versions.
+        for (Account account : accounts) {
+            subscriber.offer(account.snapshot(), drainExecutor);
+        }
+    }
+
+    @Override
+    public void onBalanceChange(BalanceChange change) {
+        Set<BalanceSubscriber> accountSubscribers = subscribersByAccount.get(change.accountId());
+        if (accountSubscribers == null) {
+            return;
+        }
+        for (BalanceSubscriber subscriber : accountSubscribers) {
+            subscriber.offer(change, drainExecutor);
+        }
+    }
+
+    /**
+     * @return number of connected subscribers
+     */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void close() {
+        heartbeatExecutor.shutdownNow();
+        drainExecutor.shutdownNow();
+        subscribers.forEach(s -> s.client().close());
+    }
+
+    private void abortStuckSubscribers() {
+        long deadline = System.currentTimeMillis() - WRITE_TIMEOUT_MILLIS;
+        for (BalanceSubscriber subscriber : subscribers) {
+            try {
+                if (subscriber.abortIfStuck(deadline)) {
+                    logger.warn("Disconnected balance stream client which didn't read for {} ms", WRITE_TIMEOUT_MILLIS);
+                    unsubscribe(subscriber);
+                }
+            } catch (RuntimeException e) {
+                // Uncaught exception would cancel all further checks.
+                logger.error("Failed to disconnect stuck balance stream client", e);
+            }
+        }
+    }
+
+    private void unsubscribe(BalanceSubscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        for (UUID accountId : subscriber.accountIds()) {
+            subscribersByAccount.computeIfPresent(accountId, (id, accountSubscribers) -> {
+                accountSubscribers.remove(subscriber);
+                return accountSubscribers.isEmpty() ? null : accountSubscribers;
+            });
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package money.boku.stream;
+
+import io.javalin.http.Context;
+import io.javalin.http.sse.SseHandler;
+import money.boku.account.Account;
+import money.boku.account.AccountDatastore;
+import money.boku.account.AccountNotFoundException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * API for subscribing to balance changes with Server-Sent Events.
+ */
+public class BalanceStreamAPI {
+    public static final String BALANCE_STREAM_PATH = "/balance-stream";
+
+    private static final int MAX_ACCOUNTS_PER_SUBSCRIPTION = 1000; // can be configurable
+
+    private final AccountDatastore accountDatastore;
+    private final BalanceStream balanceStream;
+
+    public BalanceStreamAPI(AccountDatastore accountDatastore, BalanceStream balanceStream) {
+        this.accountDatastore = Objects.requireNonNull(accountDatastore);
+        this.balanceStream = Objects.requireNonNull(balanceStream);
+    }
+
+    /**
+     * Handles HTTP request to subscribe to balance changes of accounts listed in comma separated {@code accounts}
+     * parameter. Request should accept {@code text/event-stream}; current state of every account is sent first,
+     * followed by {@code balance} events as balances change. Intermediate changes may be skipped for slow clients,
+     * but the latest state of every account is always delivered.
+     *
+     * @param ctx request context
+     * @throws AccountNotFoundException if any of the accounts doesn't exist
+     */
+    public void handleSubscribeRequest(@NotNull Context ctx) throws Exception {
+        String accountsStr = ctx.queryParam("accounts");
+        if (accountsStr == null || accountsStr.isEmpty()) {
+            throw new IllegalArgumentException("accounts parameter is not specified properly");
+        }
+        Set<UUID> accountIds = new LinkedHashSet<>();
+        for (String accountId : accountsStr.split(",")) {
+            accountIds.add(UUID.fromString(accountId.trim()));
+        }
+        if (accountIds.size() > MAX_ACCOUNTS_PER_SUBSCRIPTION) {
+            throw new IllegalArgumentException("Can't subscribe to more than %d accounts".formatted(MAX_ACCOUNTS_PER_SUBSCRIPTION));
+        }
+        // Accounts are checked before the response is started, so unknown accounts still get 404.
+        List<Account> accounts = new ArrayList<>(accountIds.size());
+        for (UUID accountId : accountIds) {
+            accounts.add(accountDatastore.getAccount(accountId));
+        }
+        new SseHandler(client -> {
+            client.keepAlive();
+            balanceStream.subscribe(client, accounts);
+        }).handle(ctx);
+    }
+}
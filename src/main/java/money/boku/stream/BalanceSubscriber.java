@@ -0,0 +1,113 @@
+package money.boku.stream;
+
+import io.javalin.http.sse.SseClient;
+import money.boku.account.BalanceChange;
+import org.eclipse.jetty.server.Request;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single client subscribed to balance changes of a set of accounts.
+ * <p>
+ * Changes are coalesced: only the latest not yet sent change of every account is kept, so memory is bounded by the
+ * number of subscribed accounts and a slow client skips intermediate balances instead of slowing down writers.
+ * Changes are sent by at most one drain task at a time, which is scheduled by whoever finds the subscriber idle.
+ * Writes are blocking, so a client that stops reading would hold a drain thread; such a client is disconnected once
+ * a write takes longer than a deadline (see {@link #abortIfStuck}).
+ */
+class BalanceSubscriber {
+    static final String BALANCE_EVENT = "balance";
+
+    private final SseClient client;
+    private final Set<UUID> accountIds;
+    private final ConcurrentMap<UUID, BalanceChange> pending = new ConcurrentHashMap<>();
+    // True while drain task is scheduled or running.
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean heartbeatDue;
+    // Start of the write in progress; 0 if the drain task isn't writing.
+    private volatile long writeStartedAt;
+    // Accessed by the drain task only. Listeners may be notified out of order, older changes must not follow newer.
+    private final Map<UUID, Long> sentVersions = new HashMap<>();
+
+    BalanceSubscriber(SseClient client, Set<UUID> accountIds) {
+        this.client = client;
+        this.accountIds = Set.copyOf(accountIds);
+    }
+
+    Set<UUID> accountIds() {
+        return accountIds;
+    }
+
+    SseClient client() {
+        return client;
+    }
+
+    void offer(BalanceChange change, Executor drainExecutor) {
+        pending.merge(change.accountId(), change, (oldChange, newChange) -> newChange.version() > oldChange.version() ? newChange : oldChange);
+        scheduleDrain(drainExecutor);
+    }
+
+    void heartbeat(Executor drainExecutor) {
+        heartbeatDue = true;
+        scheduleDrain(drainExecutor);
+    }
+
+    /**
+     * Disconnects the client if the write in progress has started before the deadline. Aborting the connection
+     * fails the blocked write, which frees the drain thread.
+     *
+     * @param deadline time in milliseconds since epoch
+     * @return whether the client was disconnected
+     */
+    boolean abortIfStuck(long deadline) {
+        long startedAt = writeStartedAt;
+        if (startedAt == 0 || startedAt >= deadline) {
+            return false;
+        }
+        Request request = Request.getBaseRequest(client.ctx().req());
+        if (request != null) {
+            request.getHttpChannel().abort(new TimeoutException("Write to balance stream client timed out"));
+        }
+        client.close();
+        return true;
+    }
+
+    private void scheduleDrain(Executor drainExecutor) {
+        if (draining.compareAndSet(false, true)) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        do {
+            if (heartbeatDue) {
+                heartbeatDue = false;
+                writeStartedAt = System.currentTimeMillis();
+                client.sendComment("heartbeat");
+                writeStartedAt = 0;
+            }
+            for (UUID accountId : pending.keySet()) {
+                BalanceChange change = pending.remove(accountId);
+                if (client.terminated()) {
+                    return;
+                }
+                if (change != null && sentVersions.getOrDefault(accountId, -1L) < change.version()) {
+                    sentVersions.put(accountId, change.version());
+                    writeStartedAt = System.currentTimeMillis();
+                    client.sendEvent(BALANCE_EVENT, change, String.valueOf(change.version()));
+                    writeStartedAt = 0;
+                }
+            }
+            draining.set(false);
+            // Changes offered after the last pass but before the flag was cleared didn't schedule a drain.
+        } while ((!pending.isEmpty() || heartbeatDue) && draining.compareAndSet(false, true));
+    }
+}
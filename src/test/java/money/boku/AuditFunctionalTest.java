@@ -0,0 +1,65 @@
+package money.boku;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.testtools.HttpClient;
+import io.javalin.testtools.JavalinTest;
+import money.boku.diagnostics.AdminAPI;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditFunctionalTest {
+    private static final String ADMIN_TOKEN = "t0k3n";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void moneyAddsUpAfterTransfersHoldsAndWithdrawals() {
+        JavalinTest.test(Main.javalinApp(ServerConfig.standalone().withAdminToken(ADMIN_TOKEN)), (server, client) -> {
+            String eurAccount = client.post("/open-account?initialBalance=100&currency=EUR").body().string();
+            String usdAccount = client.post("/open-account?initialBalance=50&currency=USD").body().string();
+            assertThat(client.put("/admin/fx/rates", "{ \"base\": \"EUR\", \"rates\": { \"USD\": 1.25 } }", r -> r.header(AdminAPI.ADMIN_TOKEN_HEADER, ADMIN_TOKEN)).code()).isEqualTo(200);
+            assertThat(client.post("/transfer", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 20 }"
+                    .formatted(eurAccount, usdAccount)).code()).isEqualTo(200);
+            JsonNode hold = objectMapper.readTree(client.post("/holds", "{ \"accountId\": \"%s\", \"amount\": 30 }"
+                    .formatted(usdAccount)).body().string());
+            assertThat(client.post("/holds/%s/capture".formatted(hold.get("id").asText()), "{ \"to\": \"%s\", \"amount\": 10 }"
+                    .formatted(eurAccount)).code()).isEqualTo(200);
+            for (int i = 0; i < 3; i++) {
+                assertThat(client.post("/withdraw", "{ \"accountId\": \"%s\", \"withdrawalAddress\": \"address\", \"amount\": 5 }"
+                        .formatted(eurAccount)).code()).isEqualTo(200);
+            }
+
+            JsonNode report = awaitSettled(client);
+            assertThat(report.get("consistent").asBoolean()).isTrue();
+            JsonNode eur = report.get("currencies").get(0);
+            assertThat(eur.get("currency").asText()).isEqualTo("EUR");
+            assertThat(eur.get("issued").decimalValue()).isEqualByComparingTo("100");
+            assertThat(eur.get("transferredOut").decimalValue()).isEqualByComparingTo("20");
+            assertThat(eur.get("transferredIn").decimalValue()).isEqualByComparingTo("8");
+            BigDecimal eurBalance = new BigDecimal(client.get("/balance/%s".formatted(eurAccount)).body().string());
+            assertThat(eurBalance.add(eur.get("completedWithdrawals").decimalValue())).isEqualByComparingTo("88");
+        });
+    }
+
+    private JsonNode awaitSettled(HttpClient client) throws Exception {
+        Instant deadline = Instant.now().plusSeconds(15);
+        while (true) {
+            JsonNode report = objectMapper.readTree(client.get("/admin/audit", r -> r.header(AdminAPI.ADMIN_TOKEN_HEADER, ADMIN_TOKEN)).body().string());
+            boolean settled = true;
+            for (JsonNode currency : report.get("currencies")) {
+                settled &= currency.get("drift").decimalValue().signum() == 0
+                        && currency.get("inFlightWithdrawals").decimalValue().signum() == 0;
+            }
+            if (settled) {
+                return report;
+            }
+            assertThat(Instant.now()).isLessThan(deadline);
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package money.boku;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import io.javalin.testtools.JavalinTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BalanceStreamFunctionalTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Javalin app;
+
+    @BeforeEach
+    public void setupJavalin() {
+        app = Main.javalinApp();
+    }
+
+    @Test
+    public void subscribeParamValidation() {
+        JavalinTest.test(app, (server, client) -> {
+            assertThat(client.get("/balance-stream").code()).isEqualTo(400);
+            assertThat(client.get("/balance-stream?accounts=non-uuid").code()).isEqualTo(400);
+            String account = client.post("/open-account?initialBalance=10").body().string();
+            assertThat(client.get("/balance-stream?accounts=%s,%s".formatted(account, UUID.randomUUID())).code()).isEqualTo(404);
+        });
+    }
+
+    @Test
+    public void balanceChangesArePushedToSubscribers() {
+        JavalinTest.test(app, (server, client) -> {
+            String sender = client.post("/open-account?initialBalance=100").body().string();
+            String receiver = client.post("/open-account?initialBalance=0").body().string();
+            String unrelated = client.post("/open-account?initialBalance=0").body().string();
+
+            HttpRequest subscribe = HttpRequest.newBuilder(URI.create("http://localhost:%d/balance-stream?accounts=%s,%s".formatted(server.port(), sender, receiver)))
+                    .header("Accept", "text/event-stream")
+                    .build();
+            HttpResponse<Stream<String>> response = HttpClient.newHttpClient().send(subscribe, HttpResponse.BodyHandlers.ofLines());
+            assertThat(response.statusCode()).isEqualTo(200);
+            // latest event of every account
+            Map<String, JsonNode> latest = new ConcurrentHashMap<>();
+            AtomicBoolean versionsIncrease = new AtomicBoolean(true);
+            Thread reader = new Thread(() -> {
+                Iterator<String> lines = response.body().iterator();
+                while (lines.hasNext()) {
+                    String line = lines.next();
+                    if (line.startsWith("data: ")) {
+                        try {
+                            JsonNode event = objectMapper.readTree(line.substring("data: ".length()));
+                            JsonNode previous = latest.put(event.get("accountId").asText(), event);
+                            if (previous != null && previous.get("version").asLong() >= event.get("version").asLong()) {
+                                versionsIncrease.set(false);
+                            }
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+            });
+            reader.setDaemon(true);
+            reader.start();
+
+            // current state first
+            assertThat(awaitBalance(latest, sender, BigDecimal.valueOf(100))).isTrue();
+            assertThat(awaitBalance(latest, receiver, BigDecimal.ZERO)).isTrue();
+
+            for (int i = 0; i < 10; i++) {
+                String transfer = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1 }".formatted(sender, receiver);
+                assertThat(client.post("/transfer", transfer).code()).isEqualTo(200);
+            }
+            client.post("/transfer", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1 }".formatted(sender, unrelated));
+            // intermediate balances may be coalesced, the latest one is always delivered
+            assertThat(awaitBalance(latest, receiver, BigDecimal.TEN)).isTrue();
+            assertThat(awaitBalance(latest, sender, BigDecimal.valueOf(89))).isTrue();
+            assertThat(latest.keySet()).containsOnly(sender, receiver);
+            assertThat(versionsIncrease.get()).isTrue();
+            // flows are internal to the audit
+            assertThat(latest.get(receiver).has("flow")).isFalse();
+        });
+    }
+
+    private static boolean awaitBalance(Map<String, JsonNode> latest, String accountId, BigDecimal balance) throws InterruptedException {
+        Instant deadline = Instant.now().plusSeconds(5);
+        while (Instant.now().isBefore(deadline)) {
+            JsonNode event = latest.get(accountId);
+            if (event != null && event.get("balance").decimalValue().compareTo(balance) == 0) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
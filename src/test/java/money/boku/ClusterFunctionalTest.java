@@ -0,0 +1,163 @@
+package money.boku;
+
+import io.javalin.Javalin;
+import money.boku.cluster.ClusterClient;
+import money.boku.cluster.ClusterNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs three nodes on localhost. Every node is a separate Javalin app with its own datastore, so nodes only
+ * communicate over HTTP, the same way separate processes do.
+ */
+public class ClusterFunctionalTest {
+    private static final String CLUSTER_SECRET = "secret";
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<Javalin> apps = new ArrayList<>();
+    private final List<URI> nodeUris = new ArrayList<>();
+
+    @BeforeEach
+    public void startCluster() throws IOException {
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (String id : List.of("a", "b", "c")) {
+            nodes.add(new ClusterNode(id, URI.create("http://localhost:" + freePort())));
+        }
+        for (ClusterNode node : nodes) {
+            apps.add(Main.javalinApp(ServerConfig.standalone().withPort(node.uri().getPort()).withCluster(node.id(), nodes, CLUSTER_SECRET)).start(node.uri().getPort()));
+            nodeUris.add(node.uri());
+        }
+    }
+
+    @AfterEach
+    public void stopCluster() {
+        apps.forEach(Javalin::stop);
+    }
+
+    @Test
+    public void requestsAreServedByAnyNode() throws Exception {
+        String account = post(0, "/open-account?initialBalance=100", "").body();
+        for (int node = 0; node < nodeUris.size(); node++) {
+            HttpResponse<String> balance = get(node, "/balance/" + account);
+            assertThat(balance.statusCode()).isEqualTo(200);
+            assertEquals(new BigDecimal(balance.body()), new BigDecimal("100"));
+        }
+    }
+
+    @Test
+    public void transfersBetweenNodes() throws Exception {
+        List<String> accounts = new ArrayList<>();
+        for (int node = 0; node < nodeUris.size(); node++) {
+            accounts.add(post(node, "/open-account?initialBalance=100", "").body());
+        }
+        // every node sends money to every other node's account, each time through a third node
+        for (int from = 0; from < accounts.size(); from++) {
+            for (int to = 0; to < accounts.size(); to++) {
+                if (from != to) {
+                    int via = 3 - from - to;
+                    String transfer = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 10 }".formatted(accounts.get(from), accounts.get(to));
+                    assertThat(post(via, "/transfer", transfer).statusCode()).isEqualTo(200);
+                }
+            }
+        }
+        for (String account : accounts) {
+            assertEquals(new BigDecimal(get(0, "/balance/" + account).body()), new BigDecimal("100"));
+        }
+
+        String transfer = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 60 }".formatted(accounts.get(0), accounts.get(1));
+        assertThat(post(2, "/transfer", transfer).statusCode()).isEqualTo(200);
+        // not enough money left
+        assertThat(post(2, "/transfer", transfer).statusCode()).isEqualTo(400);
+        assertEquals(new BigDecimal(get(1, "/balance/" + accounts.get(0)).body()), new BigDecimal("40"));
+        assertEquals(new BigDecimal(get(2, "/balance/" + accounts.get(1)).body()), new BigDecimal("160"));
+    }
+
+    @Test
+    public void transferToMissingRemoteAccountKeepsMoney() throws Exception {
+        String account = post(0, "/open-account?initialBalance=100", "").body();
+        for (int node = 0; node < nodeUris.size(); node++) {
+            // random receivers land on every node
+            String transfer = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 10 }".formatted(account, UUID.randomUUID());
+            assertThat(post(node, "/transfer", transfer).statusCode()).isEqualTo(404);
+        }
+        assertEquals(new BigDecimal(get(1, "/balance/" + account).body()), new BigDecimal("100"));
+    }
+
+    @Test
+    public void withdrawalStateIsServedByAnyNode() throws Exception {
+        String account = post(0, "/open-account?initialBalance=100", "").body();
+        HttpResponse<String> withdrawal = post(1, "/withdraw", "{ \"accountId\": \"%s\", \"withdrawalAddress\": \"address\", \"amount\": 10 }".formatted(account));
+        assertThat(withdrawal.statusCode()).isEqualTo(200);
+        String withdrawalId = withdrawal.body().replaceAll(".*\"withdrawalId\":\"([^\"]+)\".*", "$1");
+        for (int node = 0; node < nodeUris.size(); node++) {
+            assertThat(get(node, "/withdraw/%s/state".formatted(withdrawalId)).statusCode()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    public void internalApiRequiresClusterSecret() throws Exception {
+        String account = post(0, "/open-account?initialBalance=100", "").body();
+        URI prepare = nodeUris.get(0).resolve("/internal/transfers/%s/prepare".formatted(UUID.randomUUID()));
+        String body = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 10, \"currency\": \"EUR\" }".formatted(UUID.randomUUID(), account);
+        assertThat(postInternal(prepare, body, null).statusCode()).isEqualTo(401);
+        assertThat(postInternal(prepare, body, "guess").statusCode()).isEqualTo(401);
+        assertThat(postInternal(prepare, body, CLUSTER_SECRET).statusCode()).isEqualTo(200);
+        URI state = nodeUris.get(0).resolve(prepare.getPath().replace("/prepare", ""));
+        assertThat(httpClient.send(HttpRequest.newBuilder(state).GET().build(), HttpResponse.BodyHandlers.ofString()).statusCode()).isEqualTo(401);
+        HttpRequest stateRequest = HttpRequest.newBuilder(state).header(ClusterClient.CLUSTER_SECRET_HEADER, CLUSTER_SECRET).GET().build();
+        assertThat(httpClient.send(stateRequest, HttpResponse.BodyHandlers.ofString()).body()).isEqualTo("\"PENDING\"");
+
+        // standalone server doesn't serve the internal API at all
+        int port = freePort();
+        Javalin standalone = Main.javalinApp(ServerConfig.standalone().withPort(port)).start(port);
+        try {
+            URI standalonePrepare = URI.create("http://localhost:" + port).resolve(prepare.getPath());
+            assertThat(postInternal(standalonePrepare, body, null).statusCode()).isEqualTo(404);
+        } finally {
+            standalone.stop();
+        }
+    }
+
+    private HttpResponse<String> postInternal(URI uri, String body, String secret) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (secret != null) {
+            request.header(ClusterClient.CLUSTER_SECRET_HEADER, secret);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(int node, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(nodeUris.get(node).resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(int node, String path) throws IOException, InterruptedException {
+        return httpClient.send(HttpRequest.newBuilder(nodeUris.get(node).resolve(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package money.boku;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import io.javalin.testtools.JavalinTest;
+import okhttp3.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HistoryAPIFunctionalTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Javalin app;
+
+    @BeforeEach
+    public void setupJavalin() {
+        app = Main.javalinApp();
+    }
+
+    @Test
+    public void historyParamValidation() {
+        JavalinTest.test(app, (server, client) -> {
+            assertThat(client.get("/history/%s".formatted("non-uuid")).code()).isEqualTo(400);
+            assertThat(client.get("/history/%s".formatted(UUID.randomUUID())).code()).isEqualTo(404);
+
+            String accountId = client.post("/open-account?initialBalance=10").body().string();
+            assertThat(client.get("/history/%s?limit=0".formatted(accountId)).code()).isEqualTo(400);
+            assertThat(client.get("/history/%s?cursor=-1".formatted(accountId)).code()).isEqualTo(400);
+            assertThat(client.get("/history/%s?cursor=abc".formatted(accountId)).code()).isEqualTo(400);
+        });
+    }
+
+    @Test
+    public void transfersArePaginatedInOrder() {
+        JavalinTest.test(app, (server, client) -> {
+            String sender = client.post("/open-account?initialBalance=100").body().string();
+            String receiver = client.post("/open-account?initialBalance=0").body().string();
+            for (int i = 1; i <= 5; i++) {
+                String transfer = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": %d }".formatted(sender, receiver, i);
+                assertThat(client.post("/transfer", transfer).code()).isEqualTo(200);
+            }
+            // rejected transfer leaves no trace
+            String transfer = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1000 }".formatted(sender, receiver);
+            assertThat(client.post("/transfer", transfer).code()).isEqualTo(400);
+
+            Response response = client.get("/history/%s?limit=3".formatted(sender));
+            assertThat(response.code()).isEqualTo(200);
+            JsonNode page = objectMapper.readTree(response.body().string());
+            assertThat(page.get("postings")).hasSize(3);
+            assertThat(page.get("hasMore").asBoolean()).isTrue();
+            for (int i = 0; i < 3; i++) {
+                JsonNode posting = page.get("postings").get(i);
+                assertThat(posting.get("type").asText()).isEqualTo("TRANSFER_OUT");
+                assertThat(posting.get("reference").asText()).isEqualTo(receiver);
+                assertThat(posting.get("amount").decimalValue()).isEqualByComparingTo(BigDecimal.valueOf(i + 1));
+            }
+
+            response = client.get("/history/%s?limit=3&cursor=%d".formatted(sender, page.get("nextCursor").asLong()));
+            page = objectMapper.readTree(response.body().string());
+            assertThat(page.get("postings")).hasSize(2);
+            assertThat(page.get("hasMore").asBoolean()).isFalse();
+            assertThat(page.get("postings").get(1).get("amount").decimalValue()).isEqualByComparingTo(BigDecimal.valueOf(5));
+
+            page = objectMapper.readTree(client.get("/history/%s".formatted(receiver)).body().string());
+            assertThat(page.get("postings")).hasSize(5);
+            assertThat(page.get("postings").get(0).get("type").asText()).isEqualTo("TRANSFER_IN");
+            assertThat(page.get("postings").get(0).get("reference").asText()).isEqualTo(sender);
+        });
+    }
+}
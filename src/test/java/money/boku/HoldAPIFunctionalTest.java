@@ -0,0 +1,109 @@
+package money.boku;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import io.javalin.testtools.HttpClient;
+import io.javalin.testtools.JavalinTest;
+import money.boku.operations.hold.HoldAPI;
+import okhttp3.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HoldAPIFunctionalTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Javalin app;
+
+    @BeforeEach
+    public void setupJavalin() {
+        app = Main.javalinApp();
+    }
+
+    @Test
+    public void holdParamValidation() {
+        JavalinTest.test(app, (server, client) -> {
+            String account = client.post("/open-account?initialBalance=10").body().string();
+            assertThat(client.post("/holds", "{}").code()).isEqualTo(400);
+            assertThat(client.post("/holds", "{ \"accountId\": \"%s\", \"amount\": -1 }".formatted(account)).code()).isEqualTo(400);
+            assertThat(client.post("/holds", "{ \"accountId\": \"%s\", \"amount\": 1, \"ttlMs\": 0 }".formatted(account)).code()).isEqualTo(400);
+            assertThat(client.post("/holds", "{ \"accountId\": \"%s\", \"amount\": 1, \"ttlMs\": %d }".formatted(account, Long.MAX_VALUE)).code()).isEqualTo(400);
+            assertThat(client.post("/holds", "{ \"accountId\": \"%s\", \"amount\": 1, \"ttlMs\": %d }".formatted(account, HoldAPI.MAX_TTL_MILLIS + 1)).code()).isEqualTo(400);
+            assertThat(client.post("/holds", "{ \"accountId\": \"%s\", \"amount\": 1 }".formatted(UUID.randomUUID())).code()).isEqualTo(404);
+            assertThat(client.post("/holds", "{ \"accountId\": \"%s\", \"amount\": 11 }".formatted(account)).code()).isEqualTo(400);
+
+            String holdId = hold(client, account, "5", null).get("id").asText();
+            assertThat(client.post("/holds/%s/capture".formatted(holdId), "{}").code()).isEqualTo(400);
+            assertThat(client.post("/holds/%s/capture".formatted(holdId), "{ \"to\": \"%s\" }".formatted(UUID.randomUUID())).code()).isEqualTo(404);
+            assertThat(client.post("/holds/%s/capture".formatted(holdId), "{ \"to\": \"%s\", \"amount\": 6 }".formatted(account)).code()).isEqualTo(400);
+            assertThat(client.get("/holds/%s".formatted(UUID.randomUUID())).code()).isEqualTo(404);
+            assertThat(client.post("/holds/%s/release".formatted(UUID.randomUUID())).code()).isEqualTo(404);
+            // failed captures leave the hold untouched
+            assertThat(details(client, account).get("held").decimalValue()).isEqualByComparingTo("5");
+        });
+    }
+
+    @Test
+    public void partialCaptureReleasesRemainder() {
+        JavalinTest.test(app, (server, client) -> {
+            String payer = client.post("/open-account?initialBalance=100").body().string();
+            String merchant = client.post("/open-account?initialBalance=0").body().string();
+            String holdId = hold(client, payer, "30", null).get("id").asText();
+            JsonNode payerDetails = details(client, payer);
+            assertThat(payerDetails.get("available").decimalValue()).isEqualByComparingTo("70");
+            assertThat(payerDetails.get("held").decimalValue()).isEqualByComparingTo("30");
+            assertThat(client.get("/balance/%s".formatted(payer)).body().string()).isEqualTo("70");
+
+            Response capture = client.post("/holds/%s/capture".formatted(holdId), "{ \"to\": \"%s\", \"amount\": 25 }".formatted(merchant));
+            assertThat(capture.code()).isEqualTo(200);
+            payerDetails = details(client, payer);
+            assertThat(payerDetails.get("available").decimalValue()).isEqualByComparingTo("75");
+            assertThat(payerDetails.get("held").decimalValue()).isEqualByComparingTo("0");
+            assertThat(details(client, merchant).get("available").decimalValue()).isEqualByComparingTo("25");
+
+            // hold ends exactly once
+            assertThat(client.post("/holds/%s/capture".formatted(holdId), "{ \"to\": \"%s\" }".formatted(merchant)).code()).isEqualTo(404);
+            assertThat(client.post("/holds/%s/release".formatted(holdId)).code()).isEqualTo(404);
+        });
+    }
+
+    @Test
+    public void releasedAndExpiredHoldsReturnFunds() {
+        JavalinTest.test(app, (server, client) -> {
+            String account = client.post("/open-account?initialBalance=100").body().string();
+            String released = hold(client, account, "10", null).get("id").asText();
+            String expiring = hold(client, account, "20", 200L).get("id").asText();
+            assertThat(client.get("/holds/%s".formatted(expiring)).code()).isEqualTo(200);
+            assertThat(details(client, account).get("held").decimalValue()).isEqualByComparingTo("30");
+
+            assertThat(client.post("/holds/%s/release".formatted(released)).code()).isEqualTo(200);
+            assertThat(details(client, account).get("available").decimalValue()).isEqualByComparingTo("80");
+
+            Instant deadline = Instant.now().plusSeconds(5);
+            while (details(client, account).get("held").decimalValue().signum() != 0) {
+                assertThat(Instant.now()).isLessThan(deadline);
+                Thread.sleep(20);
+            }
+            assertThat(details(client, account).get("available").decimalValue()).isEqualByComparingTo("100");
+            assertThat(client.get("/holds/%s".formatted(expiring)).code()).isEqualTo(404);
+        });
+    }
+
+    private JsonNode hold(HttpClient client, String accountId, String amount, Long ttlMs) throws Exception {
+        String request = ttlMs == null
+                ? "{ \"accountId\": \"%s\", \"amount\": %s }".formatted(accountId, amount)
+                : "{ \"accountId\": \"%s\", \"amount\": %s, \"ttlMs\": %d }".formatted(accountId, amount, ttlMs);
+        Response response = client.post("/holds", request);
+        assertThat(response.code()).isEqualTo(200);
+        return objectMapper.readTree(response.body().string());
+    }
+
+    private JsonNode details(HttpClient client, String accountId) throws Exception {
+        return objectMapper.readTree(client.get("/balance/%s/details".formatted(accountId)).body().string());
+    }
+}
@@ -4,9 +4,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.javalin.Javalin;
 import io.javalin.testtools.HttpClient;
 import io.javalin.testtools.JavalinTest;
+import money.boku.diagnostics.AdminAPI;
 import money.boku.operations.withdrawal.WithdrawalRequestResponse;
 import money.boku.operations.withdrawal.WithdrawalService;
 import money.boku.operations.withdrawal.WithdrawalStateResponse;
+import okhttp3.Request;
 import okhttp3.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,16 +16,20 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class MoneyAPIFunctionalTest {
+    private static final String ADMIN_TOKEN = "t0k3n";
+    private static final Consumer<Request.Builder> ADMIN = r -> r.header(AdminAPI.ADMIN_TOKEN_HEADER, ADMIN_TOKEN);
+
     private Javalin app;
     @BeforeEach
     public void setupJavalin() {
         // Setting up javalin before each test ensures account/withdrawal request data is cleaned up between tests.
-        app = Main.javalinApp();
+        app = Main.javalinApp(ServerConfig.standalone().withAdminToken(ADMIN_TOKEN));
     }
 
     @Test
@@ -139,6 +145,56 @@ public class MoneyAPIFunctionalTest {
         });
     }
 
+    @Test
+    public void transferBetweenCurrenciesIsConverted() {
+        JavalinTest.test(app, (server, client) -> {
+            String eurAccount = client.post("/open-account?initialBalance=100&currency=EUR").body().string();
+            String usdAccount = client.post("/open-account?initialBalance=100&currency=USD").body().string();
+            assertThat(client.post("/open-account?initialBalance=100&currency=XYZ").code()).isEqualTo(400);
+
+            // no rates yet
+            String transferJson = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 10 }".formatted(eurAccount, usdAccount);
+            assertThat(client.post("/transfer", transferJson).code()).isEqualTo(422);
+
+            // rates decide how much is credited, so only admins change them
+            assertThat(client.put("/fx/rates", "{ \"base\": \"EUR\", \"rates\": { \"USD\": 1.25 } }").code()).isEqualTo(405);
+            assertThat(client.put("/admin/fx/rates", "{ \"base\": \"EUR\", \"rates\": { \"USD\": 1.25 } }").code()).isEqualTo(401);
+            assertThat(client.put("/admin/fx/rates", "{ \"base\": \"EUR\", \"rates\": { \"USD\": 1.25 } }", ADMIN).code()).isEqualTo(200);
+            assertThat(client.put("/admin/fx/rates", "{ \"base\": \"EUR\", \"rates\": { \"USD\": -1 } }", ADMIN).code()).isEqualTo(400);
+
+            // amount in sender currency
+            assertThat(client.post("/transfer", transferJson).code()).isEqualTo(200);
+            assertEquals(new BigDecimal(client.get("/balance/%s".formatted(eurAccount)).body().string()), new BigDecimal("90"));
+            assertEquals(new BigDecimal(client.get("/balance/%s".formatted(usdAccount)).body().string()), new BigDecimal("112.50"));
+
+            // amount in receiver currency
+            transferJson = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 25, \"currency\": \"USD\" }".formatted(eurAccount, usdAccount);
+            assertThat(client.post("/transfer", transferJson).code()).isEqualTo(200);
+            assertEquals(new BigDecimal(client.get("/balance/%s".formatted(eurAccount)).body().string()), new BigDecimal("70.00"));
+            assertEquals(new BigDecimal(client.get("/balance/%s".formatted(usdAccount)).body().string()), new BigDecimal("137.50"));
+
+            // unknown currency of the amount
+            transferJson = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 25, \"currency\": \"GBP\" }".formatted(eurAccount, usdAccount);
+            assertThat(client.post("/transfer", transferJson).code()).isEqualTo(422);
+        });
+    }
+
+    @Test
+    public void conversionRoundsDebitUpAndCreditDown() {
+        JavalinTest.test(app, (server, client) -> {
+            String eurAccount = client.post("/open-account?initialBalance=100&currency=EUR").body().string();
+            String usdAccount = client.post("/open-account?initialBalance=0&currency=USD").body().string();
+            // 1 GBP = 1/7 EUR = 3/7 USD, neither of which terminates
+            assertThat(client.put("/admin/fx/rates", "{ \"base\": \"EUR\", \"rates\": { \"USD\": 3, \"GBP\": 7 } }", ADMIN).code()).isEqualTo(200);
+
+            String transferJson = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1, \"currency\": \"GBP\" }".formatted(eurAccount, usdAccount);
+            assertThat(client.post("/transfer", transferJson).code()).isEqualTo(200);
+            // sender pays 0.142857... EUR rounded up, receiver gets 0.428571... USD rounded down
+            assertEquals(new BigDecimal(client.get("/balance/%s".formatted(eurAccount)).body().string()), new BigDecimal("99.85"));
+            assertEquals(new BigDecimal(client.get("/balance/%s".formatted(usdAccount)).body().string()), new BigDecimal("0.42"));
+        });
+    }
+
     @Test
     public void withdrawRequestBodyValidation() {
         JavalinTest.test(app, (server, client) -> {
@@ -206,6 +262,34 @@ public class MoneyAPIFunctionalTest {
             // javalin routing does not match path param, so it's 404 instead of 400
             assertThat(client.get("/withdraw/%s/state".formatted("")).code()).isEqualTo(404);
             assertThat(client.get("/withdraw/%s/state".formatted("non-uuid")).code()).isEqualTo(400);
+            assertThat(client.get("/withdraw/%s/state?waitMs=-1".formatted(UUID.randomUUID())).code()).isEqualTo(400);
+            assertThat(client.get("/withdraw/%s/state?waitMs=abc".formatted(UUID.randomUUID())).code()).isEqualTo(400);
+        });
+    }
+
+    @Test
+    public void withdrawalStateLongPollAndConditionalGet() {
+        JavalinTest.test(app, (server, client) -> {
+            String accountId = client.post("/open-account?initialBalance=100").body().string();
+            String withdrawRequest = "{ \"accountId\": \"%s\", \"withdrawalAddress\": \"address\", \"amount\": 10 }".formatted(accountId);
+            String withdrawalId = new ObjectMapper().readValue(client.post("/withdraw", withdrawRequest).body().string(), WithdrawalRequestResponse.class).withdrawalId().toString();
+
+            // stub completes withdrawals within 10 seconds
+            Response stateResponse;
+            int polls = 0;
+            do {
+                stateResponse = client.get("/withdraw/%s/state?waitMs=4000".formatted(withdrawalId));
+                assertThat(stateResponse.code()).isEqualTo(200);
+                polls++;
+            } while (stateResponse.header("ETag").equals("\"PROCESSING\""));
+            assertThat(polls).isLessThanOrEqualTo(4);
+            assertThat(stateResponse.header("Cache-Control")).contains("immutable");
+            String etag = stateResponse.header("ETag");
+            WithdrawalService.WithdrawalState state = new ObjectMapper().readValue(stateResponse.body().string(), WithdrawalStateResponse.class).state();
+            assertThat(etag).isEqualTo("\"%s\"".formatted(state));
+
+            assertThat(client.get("/withdraw/%s/state".formatted(withdrawalId), r -> r.header("If-None-Match", etag)).code()).isEqualTo(304);
+            assertThat(client.get("/withdraw/%s/state".formatted(withdrawalId), r -> r.header("If-None-Match", "\"PROCESSING\"")).code()).isEqualTo(200);
         });
     }
 
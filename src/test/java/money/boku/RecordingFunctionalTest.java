@@ -0,0 +1,92 @@
+package money.boku;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.testtools.JavalinTest;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import money.boku.diagnostics.AdminAPI;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecordingFunctionalTest {
+    private static final String ADMIN_TOKEN = "t0k3n";
+    private static final Consumer<Request.Builder> ADMIN = r -> r.header(AdminAPI.ADMIN_TOKEN_HEADER, ADMIN_TOKEN);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void recordingContainsPipelineEvents(@TempDir Path dir) {
+        JavalinTest.test(Main.javalinApp(ServerConfig.standalone().withAdminToken(ADMIN_TOKEN)), (server, client) -> {
+            assertThat(client.post("/admin/recordings?settings=unknown", "", ADMIN).code()).isEqualTo(400);
+            assertThat(client.post("/admin/recordings/12345/stop", "", ADMIN).code()).isEqualTo(404);
+
+            Response started = client.post("/admin/recordings?maxAgeSeconds=60", "", ADMIN);
+            assertThat(started.code()).isEqualTo(200);
+            long id = objectMapper.readTree(started.body().string()).get("id").asLong();
+            JsonNode recordings = objectMapper.readTree(client.get("/admin/recordings", ADMIN).body().string());
+            assertThat(recordings.findValues("id")).extracting(JsonNode::asLong).contains(id);
+
+            String sender = client.post("/open-account?initialBalance=100").body().string();
+            String receiver = client.post("/open-account?initialBalance=0").body().string();
+            assertThat(client.post("/transfer", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 10 }".formatted(sender, receiver)).code()).isEqualTo(200);
+            assertThat(client.post("/transfer", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1000 }".formatted(sender, receiver)).code()).isEqualTo(400);
+
+            Response stopped = client.post("/admin/recordings/%d/stop".formatted(id), "", ADMIN);
+            assertThat(stopped.code()).isEqualTo(200);
+            Path file = dir.resolve("recording.jfr");
+            Files.write(file, stopped.body().bytes());
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertThat(events).extracting(e -> e.getEventType().getName())
+                    .contains("money.boku.Transfer", "money.boku.RequestBinding", "money.boku.BalanceUpdate", "money.boku.WithdrawalWatcherTick");
+            assertThat(events).filteredOn(e -> e.getEventType().getName().equals("money.boku.Transfer"))
+                    .extracting(e -> e.getString("outcome"))
+                    .containsExactlyInAnyOrder("OK", "NegativeBalanceRequestException");
+            assertThat(client.post("/admin/recordings/%d/stop".formatted(id), "", ADMIN).code()).isEqualTo(404);
+        });
+    }
+
+    @Test
+    public void adminApiRequiresToken() {
+        JavalinTest.test(Main.javalinApp(), (server, client) -> {
+            assertThat(client.get("/admin/recordings").code()).isEqualTo(404);
+        });
+        JavalinTest.test(Main.javalinApp(ServerConfig.standalone().withAdminToken(ADMIN_TOKEN)), (server, client) -> {
+            assertThat(client.get("/admin/recordings").code()).isEqualTo(401);
+            assertThat(client.post("/admin/recordings").code()).isEqualTo(401);
+            assertThat(client.get("/admin/audit", r -> r.header(AdminAPI.ADMIN_TOKEN_HEADER, "guess")).code()).isEqualTo(401);
+            assertThat(client.get("/admin/audit", ADMIN).code()).isEqualTo(200);
+        });
+    }
+
+    @Test
+    public void concurrentRecordingsAreCapped() {
+        JavalinTest.test(Main.javalinApp(ServerConfig.standalone().withAdminToken(ADMIN_TOKEN)), (server, client) -> {
+            List<Long> ids = new ArrayList<>();
+            Response started;
+            while ((started = client.post("/admin/recordings", "", ADMIN)).code() == 200) {
+                ids.add(objectMapper.readTree(started.body().string()).get("id").asLong());
+                assertThat(ids.size()).isLessThan(10);
+            }
+            assertThat(started.code()).isEqualTo(429);
+            assertThat(ids).isNotEmpty();
+            assertThat(client.post("/admin/recordings/%d/stop".formatted(ids.remove(0)), "", ADMIN).code()).isEqualTo(200);
+            started = client.post("/admin/recordings", "", ADMIN);
+            assertThat(started.code()).isEqualTo(200);
+            ids.add(objectMapper.readTree(started.body().string()).get("id").asLong());
+            for (long id : ids) {
+                assertThat(client.post("/admin/recordings/%d/stop".formatted(id), "", ADMIN).code()).isEqualTo(200);
+            }
+        });
+    }
+}
@@ -0,0 +1,148 @@
+package money.boku;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import money.boku.diagnostics.AdminAPI;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a primary and a replica on localhost, connected over TCP.
+ */
+public class ReplicationFunctionalTest {
+    private static final String REPLICATION_SECRET = "secret";
+    private static final String ADMIN_TOKEN = "t0k3n";
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Javalin> apps = new ArrayList<>();
+
+    @AfterEach
+    public void stopServers() {
+        apps.forEach(Javalin::stop);
+    }
+
+    @Test
+    public void replicaFollowsPrimaryAndCanBePromoted() throws Exception {
+        int replicationPort = freePort();
+        URI primary = start(ServerConfig.standalone().withReplication(replicationPort, null, REPLICATION_SECRET));
+        URI replica = start(ServerConfig.standalone().withReplication(freePort(), new InetSocketAddress("localhost", replicationPort), REPLICATION_SECRET).withAdminToken(ADMIN_TOKEN));
+
+        String sender = post(primary, "/open-account?initialBalance=100", "").body();
+        String receiver = post(primary, "/open-account?initialBalance=0", "").body();
+        String transfer = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 30 }".formatted(sender, receiver);
+        assertThat(post(primary, "/transfer", transfer).statusCode()).isEqualTo(200);
+
+        // holds are not replicated, only held amounts
+        assertThat(post(primary, "/holds", "{ \"accountId\": \"%s\", \"amount\": 10 }".formatted(sender)).statusCode()).isEqualTo(200);
+        awaitBalance(replica, sender, new BigDecimal("60"));
+        awaitBalance(replica, receiver, new BigDecimal("30"));
+        HttpResponse<String> balance = get(replica, "/balance/" + receiver);
+        assertThat(balance.headers().firstValue("X-Replica-Staleness-Ms")).isPresent();
+        assertThat(Long.parseLong(balance.headers().firstValue("X-Replica-Staleness-Ms").get())).isLessThan(1000);
+        assertThat(get(replica, "/balance/%s?maxStalenessMs=100000".formatted(receiver)).statusCode()).isEqualTo(200);
+        assertThat(get(primary, "/balance/" + receiver).headers().firstValue("X-Replica-Staleness-Ms")).isEmpty();
+
+        // replica is read-only
+        assertThat(post(replica, "/transfer", transfer).statusCode()).isEqualTo(503);
+        assertThat(post(replica, "/open-account?initialBalance=100", "").statusCode()).isEqualTo(503);
+        // only admins promote a replica
+        assertThat(post(replica, "/admin/replication/promote", "").statusCode()).isEqualTo(401);
+        assertThat(post(replica, "/replication/promote", "").statusCode()).isNotEqualTo(200);
+        assertThat(get(replica, "/replication/status").body()).contains("\"role\":\"REPLICA\"");
+
+        // failover
+        apps.get(0).stop();
+        assertThat(postAsAdmin(replica, "/admin/replication/promote").statusCode()).isEqualTo(200);
+        // funds held by the old primary stay held until an admin reconciles them
+        assertThat(get(replica, "/balance/%s/details".formatted(sender)).body()).contains("\"held\":10");
+        JsonNode orphaned = objectMapper.readTree(getAsAdmin(replica, "/admin/holds/orphaned").body());
+        assertThat(orphaned).hasSize(1);
+        assertThat(orphaned.get(0).get("accountId").asText()).isEqualTo(sender);
+        String holdId = orphaned.get(0).get("id").asText();
+        assertThat(post(replica, "/holds/%s/release".formatted(holdId), "").statusCode()).isEqualTo(409);
+        assertThat(postAsAdmin(replica, "/admin/holds/orphaned/%s/release".formatted(holdId)).statusCode()).isEqualTo(200);
+        assertThat(get(replica, "/balance/%s/details".formatted(sender)).body()).contains("\"held\":0");
+        assertThat(post(replica, "/transfer", transfer).statusCode()).isEqualTo(200);
+        assertThat(new BigDecimal(get(replica, "/balance/" + sender).body())).isEqualByComparingTo("40");
+        assertThat(get(replica, "/replication/status").body()).contains("\"role\":\"PRIMARY\"");
+    }
+
+    @Test
+    public void replicaWithoutSecretIsRejected() throws Exception {
+        int replicationPort = freePort();
+        URI primary = start(ServerConfig.standalone().withReplication(replicationPort, null, REPLICATION_SECRET));
+        URI replica = start(ServerConfig.standalone().withReplication(0, new InetSocketAddress("localhost", replicationPort), "guess"));
+        String account = post(primary, "/open-account?initialBalance=100", "").body();
+
+        Thread.sleep(500);
+        assertThat(get(replica, "/balance/" + account).statusCode()).isEqualTo(503);
+        assertThat(get(primary, "/replication/status").body()).contains("\"connectedReplicas\":0");
+    }
+
+    private URI start(ServerConfig config) throws IOException {
+        int port = freePort();
+        apps.add(Main.javalinApp(config.withPort(port)).start(port));
+        return URI.create("http://localhost:" + port);
+    }
+
+    private void awaitBalance(URI server, String account, BigDecimal expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            HttpResponse<String> response = get(server, "/balance/" + account);
+            if (response.statusCode() == 200 && new BigDecimal(response.body()).compareTo(expected) == 0) {
+                return;
+            }
+            assertThat(System.currentTimeMillis()).as("replica didn't catch up").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private HttpResponse<String> post(URI server, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(server.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> postAsAdmin(URI server, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(server.resolve(path))
+                .header(AdminAPI.ADMIN_TOKEN_HEADER, ADMIN_TOKEN)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> getAsAdmin(URI server, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(server.resolve(path))
+                .header(AdminAPI.ADMIN_TOKEN_HEADER, ADMIN_TOKEN)
+                .GET()
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(URI server, String path) throws IOException, InterruptedException {
+        return httpClient.send(HttpRequest.newBuilder(server.resolve(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
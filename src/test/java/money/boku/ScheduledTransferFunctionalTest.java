@@ -0,0 +1,126 @@
+package money.boku;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.testtools.HttpClient;
+import io.javalin.testtools.JavalinTest;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScheduledTransferFunctionalTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void scheduledTransferParamValidation() {
+        JavalinTest.test(Main.javalinApp(), (server, client) -> {
+            String sender = client.post("/open-account?initialBalance=10").body().string();
+            String receiver = client.post("/open-account?initialBalance=0").body().string();
+            long executeAt = System.currentTimeMillis();
+            assertThat(client.post("/transfer/scheduled", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1 }"
+                    .formatted(sender, receiver)).code()).isEqualTo(400);
+            assertThat(client.post("/transfer/scheduled", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1, \"executeAt\": %d, \"intervalMs\": -1 }"
+                    .formatted(sender, receiver, executeAt)).code()).isEqualTo(400);
+            // too far in the future, or recurring more often than the scheduler ticks
+            assertThat(client.post("/transfer/scheduled", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1, \"executeAt\": %d }"
+                    .formatted(sender, receiver, Long.MAX_VALUE)).code()).isEqualTo(400);
+            assertThat(client.post("/transfer/scheduled", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1, \"executeAt\": %d }"
+                    .formatted(sender, receiver, -1)).code()).isEqualTo(400);
+            assertThat(client.post("/transfer/scheduled", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1, \"executeAt\": %d, \"intervalMs\": 1 }"
+                    .formatted(sender, receiver, executeAt)).code()).isEqualTo(400);
+            assertThat(client.post("/transfer/scheduled", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1, \"executeAt\": %d, \"intervalMs\": %d }"
+                    .formatted(sender, receiver, executeAt, Long.MAX_VALUE)).code()).isEqualTo(400);
+            assertThat(client.post("/transfer/scheduled", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 1, \"executeAt\": %d }"
+                    .formatted(UUID.randomUUID(), receiver, executeAt)).code()).isEqualTo(404);
+            assertThat(client.get("/transfer/scheduled/%s".formatted(sender)).code()).isEqualTo(404);
+            assertThat(client.delete("/transfer/scheduled/%s".formatted(sender)).code()).isEqualTo(404);
+        });
+    }
+
+    @Test
+    public void dueTransfersAreExecutedAndCancelledAreNot() {
+        JavalinTest.test(Main.javalinApp(), (server, client) -> {
+            String sender = client.post("/open-account?initialBalance=100").body().string();
+            String receiver = client.post("/open-account?initialBalance=0").body().string();
+            long now = System.currentTimeMillis();
+
+            JsonNode oneOff = schedule(client, sender, receiver, 10, now + 200, 0);
+            JsonNode cancelled = schedule(client, sender, receiver, 50, now + 300, 0);
+            JsonNode recurring = schedule(client, sender, receiver, 1, now + 100, 100);
+            assertThat(client.get("/transfer/scheduled/%s".formatted(cancelled.get("id").asText())).code()).isEqualTo(200);
+            assertThat(client.delete("/transfer/scheduled/%s".formatted(cancelled.get("id").asText())).code()).isEqualTo(200);
+
+            awaitBalance(client, sender, balance -> balance.compareTo(BigDecimal.valueOf(87)) <= 0);
+            assertThat(client.get("/transfer/scheduled/%s".formatted(oneOff.get("id").asText())).code()).isEqualTo(404);
+            assertThat(client.get("/transfer/scheduled/%s".formatted(cancelled.get("id").asText())).code()).isEqualTo(404);
+            Response response = client.get("/transfer/scheduled/%s".formatted(recurring.get("id").asText()));
+            assertThat(response.code()).isEqualTo(200);
+            assertThat(objectMapper.readTree(response.body().string()).get("executeAt").asLong())
+                    .isGreaterThan(recurring.get("executeAt").asLong());
+
+            assertThat(client.delete("/transfer/scheduled/%s".formatted(recurring.get("id").asText())).code()).isEqualTo(200);
+            // an occurrence may have been in flight while cancelling
+            Thread.sleep(300);
+            BigDecimal senderBalance = balance(client, sender);
+            assertThat(senderBalance.add(balance(client, receiver))).isEqualByComparingTo(BigDecimal.valueOf(100));
+            Thread.sleep(300);
+            assertThat(balance(client, sender)).isEqualByComparingTo(senderBalance);
+        });
+    }
+
+    @Test
+    public void pendingTransfersSurviveRestart(@TempDir Path dir) {
+        ServerConfig config = ServerConfig.standalone().withScheduledTransfersFile(dir.resolve("scheduled.bin"));
+        String[] accounts = new String[2];
+        String[] scheduledIds = new String[2];
+        JavalinTest.test(Main.javalinApp(config), (server, client) -> {
+            accounts[0] = client.post("/open-account?initialBalance=100").body().string();
+            accounts[1] = client.post("/open-account?initialBalance=0").body().string();
+            long later = System.currentTimeMillis() + Duration.ofHours(1).toMillis();
+            scheduledIds[0] = schedule(client, accounts[0], accounts[1], 10, later, Duration.ofDays(1).toMillis()).get("id").asText();
+            scheduledIds[1] = schedule(client, accounts[0], accounts[1], 20, later, 0).get("id").asText();
+            assertThat(client.delete("/transfer/scheduled/%s".formatted(scheduledIds[1])).code()).isEqualTo(200);
+        });
+
+        // Accounts are not persisted, so only the pending transfers themselves are checked.
+        JavalinTest.test(Main.javalinApp(config), (server, client) -> {
+            Response response = client.get("/transfer/scheduled/%s".formatted(scheduledIds[0]));
+            assertThat(response.code()).isEqualTo(200);
+            JsonNode transfer = objectMapper.readTree(response.body().string());
+            assertThat(transfer.get("from").asText()).isEqualTo(accounts[0]);
+            assertThat(transfer.get("to").asText()).isEqualTo(accounts[1]);
+            assertThat(transfer.get("amount").decimalValue()).isEqualByComparingTo(BigDecimal.TEN);
+            assertThat(transfer.get("intervalMillis").asLong()).isEqualTo(Duration.ofDays(1).toMillis());
+            assertThat(client.get("/transfer/scheduled/%s".formatted(scheduledIds[1])).code()).isEqualTo(404);
+        });
+    }
+
+    private JsonNode schedule(HttpClient client, String from, String to, int amount, long executeAt, long intervalMs) throws Exception {
+        String request = "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": %d, \"executeAt\": %d, \"intervalMs\": %d }"
+                .formatted(from, to, amount, executeAt, intervalMs);
+        Response response = client.post("/transfer/scheduled", request);
+        assertThat(response.code()).isEqualTo(200);
+        return objectMapper.readTree(response.body().string());
+    }
+
+    private BigDecimal balance(HttpClient client, String accountId) throws Exception {
+        return new BigDecimal(client.get("/balance/%s".formatted(accountId)).body().string());
+    }
+
+    private void awaitBalance(HttpClient client, String accountId, Predicate<BigDecimal> condition) throws Exception {
+        Instant deadline = Instant.now().plusSeconds(5);
+        while (!condition.test(balance(client, accountId))) {
+            assertThat(Instant.now()).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package money.boku;
+
+import io.javalin.testtools.JavalinTest;
+import money.boku.operations.limits.VelocityLimits;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VelocityLimitFunctionalTest {
+    @Test
+    public void transfersAndWithdrawalsOverLimitAreRejected() {
+        ServerConfig config = ServerConfig.standalone().withVelocityLimits(new VelocityLimits(BigDecimal.valueOf(100), null));
+        JavalinTest.test(Main.javalinApp(config), (server, client) -> {
+            String sender = client.post("/open-account?initialBalance=1000").body().string();
+            String receiver = client.post("/open-account?initialBalance=0").body().string();
+            assertThat(client.post("/transfer", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 70 }"
+                    .formatted(sender, receiver)).code()).isEqualTo(200);
+            assertThat(client.post("/withdraw", "{ \"accountId\": \"%s\", \"withdrawalAddress\": \"address\", \"amount\": 40 }"
+                    .formatted(sender)).code()).isEqualTo(429);
+            assertThat(client.post("/transfer", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 40 }"
+                    .formatted(sender, receiver)).code()).isEqualTo(429);
+            // failed transfer doesn't count towards the limit
+            assertThat(client.post("/transfer", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": 30 }"
+                    .formatted(sender, UUID.randomUUID())).code()).isEqualTo(404);
+            assertThat(client.post("/withdraw", "{ \"accountId\": \"%s\", \"withdrawalAddress\": \"address\", \"amount\": 30 }"
+                    .formatted(UUID.randomUUID())).code()).isEqualTo(404);
+            assertThat(client.post("/withdraw", "{ \"accountId\": \"%s\", \"withdrawalAddress\": \"address\", \"amount\": 30 }"
+                    .formatted(sender)).code()).isEqualTo(200);
+            assertThat(new BigDecimal(client.get("/balance/%s".formatted(sender)).body().string())).isEqualByComparingTo(BigDecimal.valueOf(900));
+        });
+    }
+}
@@ -0,0 +1,178 @@
+package money.boku.audit;
+
+import money.boku.account.AccountDatastore;
+import money.boku.account.BalanceChange;
+import money.boku.account.Flow;
+import money.boku.account.InMemoryAccountDatastore;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MoneyAuditorTest {
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private final MoneyAuditor auditor = new MoneyAuditor();
+    private final AccountDatastore accountDatastore = new InMemoryAccountDatastore();
+
+    public MoneyAuditorTest() {
+        accountDatastore.addBalanceChangeListener(auditor);
+    }
+
+    @Test
+    public void flowsExplainBalanceChanges() throws Exception {
+        UUID eurAccount = accountDatastore.createNewAccount(new BigDecimal("100"), EUR).getId();
+        UUID usdAccount = accountDatastore.createNewAccount(BigDecimal.ZERO, USD).getId();
+        // cross-currency transfer
+        accountDatastore.decreaseBalance(eurAccount, new BigDecimal("20"), Flow.TRANSFER_OUT);
+        accountDatastore.increaseBalance(usdAccount, new BigDecimal("25"), Flow.TRANSFER_IN);
+        // completed and failed withdrawals
+        accountDatastore.reserve(eurAccount, BigDecimal.TEN, Flow.WITHDRAWAL);
+        accountDatastore.reserve(eurAccount, BigDecimal.TEN, Flow.WITHDRAWAL);
+        accountDatastore.captureHeld(eurAccount, BigDecimal.TEN, Flow.WITHDRAWAL);
+        accountDatastore.releaseHeld(eurAccount, BigDecimal.TEN, Flow.WITHDRAWAL);
+        // hold that is still active
+        accountDatastore.reserve(eurAccount, new BigDecimal("5"), Flow.HOLD);
+
+        auditor.check(1_000);
+        AuditReport report = auditor.report();
+        assertThat(report.consistent()).isTrue();
+        assertThat(report.currencies()).hasSize(2);
+        CurrencyAudit eur = report.currencies().get(0);
+        assertThat(eur.currency()).isEqualTo("EUR");
+        assertThat(eur.available()).isEqualByComparingTo("65");
+        assertThat(eur.held()).isEqualByComparingTo("5");
+        assertThat(eur.inFlightWithdrawals()).isEqualByComparingTo("0");
+        assertThat(eur.completedWithdrawals()).isEqualByComparingTo("10");
+        assertThat(eur.issued()).isEqualByComparingTo("100");
+        assertThat(eur.transferredOut()).isEqualByComparingTo("20");
+        assertThat(eur.drift()).isEqualByComparingTo("0");
+        CurrencyAudit usd = report.currencies().get(1);
+        assertThat(usd.transferredIn()).isEqualByComparingTo("25");
+        assertThat(usd.drift()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void anyDriftIsAlerted() {
+        UUID account = accountDatastore.createNewAccount(new BigDecimal("100"), EUR).getId();
+        // money appears without a flow
+        leak(account, "5");
+
+        auditor.check(1_000);
+        CurrencyAudit eur = auditor.report().currencies().get(0);
+        assertThat(eur.drift()).isEqualByComparingTo("5");
+        assertThat(eur.alert()).isTrue();
+        auditor.check(3_000);
+        assertThat(auditor.report().currencies().get(0).driftingMillis()).isPositive();
+
+        // the leak is undone
+        leak(account, "-5");
+        auditor.check(4_000);
+        assertThat(auditor.report().consistent()).isTrue();
+        assertThat(auditor.report().currencies().get(0).driftingMillis()).isZero();
+    }
+
+    @Test
+    public void replicatedBalancesAreCountedAsIssued() {
+        UUID account = UUID.randomUUID();
+        accountDatastore.applyBalanceChange(new BalanceChange(account, EUR, new BigDecimal("100"), BigDecimal.ZERO, 3));
+        accountDatastore.applyBalanceChange(new BalanceChange(account, EUR, new BigDecimal("90"), BigDecimal.TEN, 7));
+        auditor.check(1_000);
+        CurrencyAudit eur = auditor.report().currencies().get(0);
+        assertThat(eur.issued()).isEqualByComparingTo("100");
+        assertThat(eur.drift()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void concurrentTransfersAreNotAlerted() throws Exception {
+        List<UUID> accounts = openAccounts();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> transfers = startTransfers(accounts, running);
+        try {
+            for (int i = 1; i <= 30; i++) {
+                Thread.sleep(10);
+                auditor.check(i * 1_000L);
+                assertThat(auditor.report().consistent()).isTrue();
+            }
+        } finally {
+            running.set(false);
+        }
+        awaitAll(transfers);
+        auditor.check(31_000);
+        assertThat(auditor.report().currencies().get(0).drift()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void leakDuringConcurrentTransfersIsAlerted() throws Exception {
+        List<UUID> accounts = openAccounts();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> transfers = startTransfers(accounts, running);
+        try {
+            Thread.sleep(50);
+            auditor.check(1_000);
+            assertThat(auditor.report().consistent()).isTrue();
+
+            leak(accounts.get(0), "-0.01");
+            Thread.sleep(50);
+            auditor.check(2_000);
+            CurrencyAudit eur = auditor.report().currencies().get(0);
+            assertThat(eur.alert()).isTrue();
+            assertThat(eur.drift()).isEqualByComparingTo("-0.01");
+        } finally {
+            running.set(false);
+        }
+        awaitAll(transfers);
+    }
+
+    private List<UUID> openAccounts() {
+        List<UUID> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            accounts.add(accountDatastore.createNewAccount(BigDecimal.valueOf(1_000_000), EUR).getId());
+        }
+        return accounts;
+    }
+
+    private List<Future<?>> startTransfers(List<UUID> accounts, AtomicBoolean running) {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> transfers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            transfers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    UUID from = accounts.get(random.nextInt(accounts.size()));
+                    UUID to = accounts.get(random.nextInt(accounts.size()));
+                    BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 10_000), 2);
+                    accountDatastore.decreaseBalance(from, amount, Flow.TRANSFER_OUT);
+                    accountDatastore.increaseBalance(to, amount, Flow.TRANSFER_IN);
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        return transfers;
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private void leak(UUID accountId, String amount) {
+        // balance change without a flow, like a bug changing the balance behind the datastore's back
+        auditor.onBalanceChange(new BalanceChange(accountId, EUR, BigDecimal.ZERO, BigDecimal.ZERO, 0,
+                new BigDecimal(amount), BigDecimal.ZERO, null));
+    }
+}
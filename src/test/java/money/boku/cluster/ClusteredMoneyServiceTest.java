@@ -0,0 +1,139 @@
+package money.boku.cluster;
+
+import money.boku.account.AccountDatastore;
+import money.boku.account.InMemoryAccountDatastore;
+import money.boku.history.Posting;
+import money.boku.history.PostingType;
+import money.boku.history.SegmentedTransactionHistory;
+import money.boku.history.TransactionHistory;
+import money.boku.operations.MoneyService;
+import money.boku.operations.fx.ExchangeRateCache;
+import money.boku.operations.limits.VelocityLimiter;
+import money.boku.operations.limits.VelocityLimits;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClusteredMoneyServiceTest {
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private final Cluster cluster = new Cluster("a", List.of(
+            new ClusterNode("a", URI.create("http://localhost:1")),
+            new ClusterNode("b", URI.create("http://localhost:2"))));
+    private final AccountDatastore accountDatastore = new InMemoryAccountDatastore();
+    private final TransactionHistory transactionHistory = new SegmentedTransactionHistory();
+    private final InMemoryIntents intents = new InMemoryIntents();
+    private final RejectingClient clusterClient = new RejectingClient(cluster.getSelf());
+    private final ClusteredMoneyService moneyService = new ClusteredMoneyService(
+            // transfers between nodes don't use the local service
+            (MoneyService) Proxy.newProxyInstance(MoneyService.class.getClassLoader(), new Class<?>[]{MoneyService.class}, (proxy, method, args) -> {
+                throw new UnsupportedOperationException();
+            }),
+            cluster, clusterClient, accountDatastore, transactionHistory, new ExchangeRateCache(),
+            new VelocityLimiter(VelocityLimits.UNLIMITED), intents);
+
+    @AfterEach
+    public void close() throws Exception {
+        moneyService.close();
+    }
+
+    @Test
+    public void abortedCreditIsRefunded() throws Exception {
+        clusterClient.state = CreditState.ABORTED;
+        UUID sender = accountDatastore.createNewAccount(BigDecimal.valueOf(100), EUR).getId();
+
+        moneyService.transfer(sender, remoteAccount(), BigDecimal.TEN, null);
+        assertThat(accountDatastore.getAccount(sender).getBalance()).isEqualByComparingTo("100");
+        assertThat(intents.pending).isEmpty();
+        List<Posting> postings = transactionHistory.query(sender, 0, 10).postings();
+        assertThat(postings).extracting(Posting::type).containsExactly(PostingType.TRANSFER_OUT, PostingType.TRANSFER_REFUND);
+    }
+
+    @Test
+    public void committedCreditIsNotRefunded() throws Exception {
+        clusterClient.state = CreditState.COMMITTED;
+        UUID sender = accountDatastore.createNewAccount(BigDecimal.valueOf(100), EUR).getId();
+
+        moneyService.transfer(sender, remoteAccount(), BigDecimal.TEN, null);
+        assertThat(accountDatastore.getAccount(sender).getBalance()).isEqualByComparingTo("90");
+        assertThat(intents.pending).isEmpty();
+    }
+
+    @Test
+    public void unknownCreditIsKeptForReconciliation() throws Exception {
+        clusterClient.state = CreditState.UNKNOWN;
+        UUID sender = accountDatastore.createNewAccount(BigDecimal.valueOf(100), EUR).getId();
+
+        moneyService.transfer(sender, remoteAccount(), BigDecimal.TEN, null);
+        assertThat(accountDatastore.getAccount(sender).getBalance()).isEqualByComparingTo("90");
+        assertThat(intents.pending).hasSize(1);
+        // not retried
+        assertThat(clusterClient.commits).isEqualTo(1);
+    }
+
+    private UUID remoteAccount() {
+        UUID id = UUID.randomUUID();
+        while (cluster.isLocal(id)) {
+            id = UUID.randomUUID();
+        }
+        return id;
+    }
+
+    private static final class RejectingClient extends ClusterClient {
+        private volatile CreditState state;
+        private volatile int commits;
+
+        private RejectingClient(ClusterNode self) {
+            super(self, "secret");
+        }
+
+        @Override
+        public void prepareCredit(ClusterNode node, UUID transferId, UUID from, UUID to, BigDecimal amount, Currency currency) {
+        }
+
+        @Override
+        public void commitCredit(ClusterNode node, UUID transferId) throws CreditRejectedException {
+            commits++;
+            throw new CreditRejectedException("Node %s responded with 409 to commit of transfer %s".formatted(node.id(), transferId));
+        }
+
+        @Override
+        public CreditState creditState(ClusterNode node, UUID transferId) {
+            return state;
+        }
+    }
+
+    private static final class InMemoryIntents implements CommitIntentStore {
+        private final Map<UUID, CommitIntent> pending = new ConcurrentHashMap<>();
+
+        @Override
+        public Collection<CommitIntent> load() {
+            return List.of();
+        }
+
+        @Override
+        public void save(CommitIntent intent) {
+            pending.put(intent.transferId(), intent);
+        }
+
+        @Override
+        public void remove(UUID transferId) {
+            pending.remove(transferId);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package money.boku.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsistentHashRingTest {
+    private static final ClusterNode A = new ClusterNode("a", URI.create("http://localhost:7070"));
+    private static final ClusterNode B = new ClusterNode("b", URI.create("http://localhost:7071"));
+    private static final ClusterNode C = new ClusterNode("c", URI.create("http://localhost:7072"));
+    private static final ClusterNode D = new ClusterNode("d", URI.create("http://localhost:7073"));
+
+    @Test
+    public void ownershipDoesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(A, B, C));
+        ConsistentHashRing sameRing = new ConsistentHashRing(List.of(C, A, B));
+        for (int i = 0; i < 10_000; i++) {
+            UUID id = UUID.randomUUID();
+            assertThat(ring.ownerOf(id)).isEqualTo(sameRing.ownerOf(id));
+        }
+    }
+
+    @Test
+    public void idsAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(A, B, C));
+        Map<ClusterNode, Integer> owned = new HashMap<>();
+        int ids = 30_000;
+        for (int i = 0; i < ids; i++) {
+            owned.merge(ring.ownerOf(UUID.randomUUID()), 1, Integer::sum);
+        }
+        assertThat(owned).hasSize(3);
+        assertThat(owned.values()).allMatch(count -> Math.abs(count - ids / 3) < ids / 3 / 4);
+    }
+
+    @Test
+    public void addingNodeMovesOnlyItsShare() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(A, B, C));
+        ConsistentHashRing biggerRing = new ConsistentHashRing(List.of(A, B, C, D));
+        int ids = 20_000;
+        int moved = 0;
+        for (int i = 0; i < ids; i++) {
+            UUID id = UUID.randomUUID();
+            ClusterNode newOwner = biggerRing.ownerOf(id);
+            if (!ring.ownerOf(id).equals(newOwner)) {
+                // ids only move to the new node
+                assertThat(newOwner).isEqualTo(D);
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(ids / 4 - ids / 16, ids / 4 + ids / 16);
+    }
+}
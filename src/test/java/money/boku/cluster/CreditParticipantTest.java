@@ -0,0 +1,62 @@
+package money.boku.cluster;
+
+import money.boku.account.AccountDatastore;
+import money.boku.account.InMemoryAccountDatastore;
+import money.boku.history.SegmentedTransactionHistory;
+import money.boku.operations.fx.ExchangeRateCache;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CreditParticipantTest {
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private final AccountDatastore accountDatastore = new InMemoryAccountDatastore();
+    private final CreditParticipant participant = new CreditParticipant(accountDatastore, new SegmentedTransactionHistory(), new ExchangeRateCache());
+
+    @Test
+    public void repeatedCommitCreditsOnce() throws Exception {
+        UUID receiver = accountDatastore.createNewAccount(BigDecimal.ZERO, EUR).getId();
+        UUID transferId = UUID.randomUUID();
+        participant.prepare(transferId, UUID.randomUUID(), receiver, BigDecimal.TEN, EUR);
+
+        participant.commit(transferId);
+        participant.commit(transferId);
+        assertThat(accountDatastore.getAccount(receiver).getBalance()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    public void commitOfUnpreparedTransferFails() throws Exception {
+        UUID receiver = accountDatastore.createNewAccount(BigDecimal.ZERO, EUR).getId();
+        assertThatThrownBy(() -> participant.commit(UUID.randomUUID())).isInstanceOf(CreditNotPreparedException.class);
+
+        UUID transferId = UUID.randomUUID();
+        participant.prepare(transferId, UUID.randomUUID(), receiver, BigDecimal.TEN, EUR);
+        participant.abort(transferId);
+        assertThatThrownBy(() -> participant.commit(transferId)).isInstanceOf(CreditNotPreparedException.class);
+        assertThat(accountDatastore.getAccount(receiver).getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    public void uncommittedCreditExpires() throws Exception {
+        UUID receiver = accountDatastore.createNewAccount(BigDecimal.ZERO, EUR).getId();
+        UUID expiring = UUID.randomUUID();
+        participant.prepare(expiring, UUID.randomUUID(), receiver, BigDecimal.TEN, EUR);
+        UUID committed = UUID.randomUUID();
+        participant.prepare(committed, UUID.randomUUID(), receiver, BigDecimal.ONE, EUR);
+        participant.commit(committed);
+        assertThat(participant.state(expiring)).isEqualTo(CreditState.PENDING);
+
+        participant.expire(System.currentTimeMillis() + CreditParticipant.PREPARED_TTL_MILLIS);
+        assertThat(participant.state(expiring)).isEqualTo(CreditState.ABORTED);
+        assertThat(participant.state(committed)).isEqualTo(CreditState.COMMITTED);
+        assertThat(participant.state(UUID.randomUUID())).isEqualTo(CreditState.UNKNOWN);
+        assertThatThrownBy(() -> participant.commit(expiring)).isInstanceOf(CreditNotPreparedException.class);
+        assertThat(accountDatastore.getAccount(receiver).getBalance()).isEqualByComparingTo(BigDecimal.ONE);
+    }
+}
@@ -0,0 +1,72 @@
+package money.boku.history;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a posting and of reading a page of account history, the calls made on every transfer and on
+ * every history request. Recording is expected to stay well under a microsecond, also when many threads record at once.
+ * <p>
+ * History is recreated for every iteration, so that it doesn't grow for the whole run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SegmentedTransactionHistoryBenchmark {
+    private static final int ACCOUNTS = 10_000;
+    private static final BigDecimal AMOUNT = new BigDecimal("12.34");
+
+    private final UUID[] accounts = new UUID[ACCOUNTS];
+    private SegmentedTransactionHistory history;
+
+    @Setup(Level.Trial)
+    public void createAccounts() {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = UUID.randomUUID();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createHistory() {
+        history = new SegmentedTransactionHistory();
+        // Every account has a few pages of history to query.
+        for (int i = 0; i < ACCOUNTS * 100; i++) {
+            history.record(accounts[i % ACCOUNTS], PostingType.TRANSFER_IN, AMOUNT, accounts[(i + 1) % ACCOUNTS]);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        history.record(accounts[random.nextInt(ACCOUNTS)], PostingType.TRANSFER_OUT, AMOUNT, accounts[random.nextInt(ACCOUNTS)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordConcurrently() {
+        record();
+    }
+
+    @Benchmark
+    public HistoryPage queryPage() {
+        return history.query(accounts[ThreadLocalRandom.current().nextInt(ACCOUNTS)], 50, 20);
+    }
+}
@@ -0,0 +1,84 @@
+package money.boku.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SegmentedTransactionHistoryTest {
+    @Test
+    public void paginationCrossesSegmentBoundaries() {
+        // 4 postings per segment
+        SegmentedTransactionHistory history = new SegmentedTransactionHistory(2);
+        UUID account = UUID.randomUUID();
+        UUID otherAccount = UUID.randomUUID();
+        for (int i = 0; i < 25; i++) {
+            history.record(account, PostingType.TRANSFER_OUT, BigDecimal.valueOf(i), otherAccount);
+            history.record(otherAccount, PostingType.TRANSFER_IN, BigDecimal.valueOf(i), account);
+        }
+
+        List<Posting> postings = new ArrayList<>();
+        long cursor = 0;
+        HistoryPage page;
+        do {
+            page = history.query(account, cursor, 10);
+            postings.addAll(page.postings());
+            cursor = page.nextCursor();
+        } while (page.hasMore());
+
+        assertThat(postings).hasSize(25);
+        for (int i = 0; i < postings.size(); i++) {
+            Posting posting = postings.get(i);
+            assertThat(posting.accountId()).isEqualTo(account);
+            assertThat(posting.type()).isEqualTo(PostingType.TRANSFER_OUT);
+            assertThat(posting.amount()).isEqualTo(BigDecimal.valueOf(i));
+            assertThat(posting.reference()).isEqualTo(otherAccount);
+        }
+        assertThat(history.query(account, cursor, 10).postings()).isEmpty();
+        assertThat(history.query(UUID.randomUUID(), 0, 10).postings()).isEmpty();
+    }
+
+    @Test
+    public void amountsArePreservedExactly() {
+        SegmentedTransactionHistory history = new SegmentedTransactionHistory();
+        UUID account = UUID.randomUUID();
+        BigDecimal small = new BigDecimal("0.0000000000001");
+        BigDecimal huge = new BigDecimal("123456789012345678901234567890.123456789");
+        history.record(account, PostingType.WITHDRAWAL, small, UUID.randomUUID());
+        history.record(account, PostingType.WITHDRAWAL_REFUND, huge, UUID.randomUUID());
+
+        List<Posting> postings = history.query(account, 0, 10).postings();
+        assertThat(postings.get(0).amount()).isEqualTo(small);
+        assertThat(postings.get(1).amount()).isEqualTo(huge);
+    }
+
+    @Test
+    public void concurrentWritersDoNotLosePostings() throws InterruptedException {
+        SegmentedTransactionHistory history = new SegmentedTransactionHistory(4);
+        UUID account = UUID.randomUUID();
+        int threads = 8;
+        int perThread = 10_000;
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    history.record(account, PostingType.TRANSFER_IN, BigDecimal.ONE, UUID.randomUUID());
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        HistoryPage page = history.query(account, 0, threads * perThread);
+        assertThat(page.postings()).hasSize(threads * perThread);
+        assertThat(page.postings()).allMatch(p -> p.amount().equals(BigDecimal.ONE) && p.accountId().equals(account));
+        assertThat(page.hasMore()).isFalse();
+    }
+}
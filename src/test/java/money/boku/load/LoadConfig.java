@@ -0,0 +1,77 @@
+package money.boku.load;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuration of a load run. Every value is read from a {@code load.*} system property, so the run can be tuned
+ * from the command line, e.g. {@code ./gradlew loadTest -Dload.rate=5000 -Dload.skew=1.2}.
+ *
+ * @param url            base URL of the service under test; if null, an in-process server is started
+ * @param accounts       number of accounts opened before the run
+ * @param initialBalance initial balance of every account
+ * @param rate           target request rate (requests per second), independent of response times
+ * @param warmup         time during which requests are sent, but not recorded
+ * @param duration       time during which requests are sent and recorded
+ * @param skew           Zipf exponent used to pick accounts; 0 means uniform distribution
+ * @param mix            relative weights of the operations
+ * @param maxInFlight    number of outstanding requests after which new requests are counted as dropped
+ * @param maxP99Millis   p99 latency gate for every operation; non-positive disables the gate
+ */
+record LoadConfig(String url,
+                  int accounts,
+                  BigDecimal initialBalance,
+                  int rate,
+                  Duration warmup,
+                  Duration duration,
+                  double skew,
+                  Map<Operation, Integer> mix,
+                  int maxInFlight,
+                  long maxP99Millis) {
+
+    LoadConfig {
+        // Transfers need two distinct accounts.
+        if (accounts < 2) {
+            throw new IllegalArgumentException("load.accounts should be at least 2");
+        }
+        if (rate <= 0) {
+            throw new IllegalArgumentException("load.rate should be positive");
+        }
+    }
+
+    static LoadConfig fromSystemProperties() {
+        return new LoadConfig(
+                System.getProperty("load.url"),
+                Integer.getInteger("load.accounts", 1000),
+                new BigDecimal(System.getProperty("load.initialBalance", "1000")),
+                Integer.getInteger("load.rate", 2000),
+                Duration.ofSeconds(Long.getLong("load.warmup", 5L)),
+                Duration.ofSeconds(Long.getLong("load.duration", 30L)),
+                Double.parseDouble(System.getProperty("load.skew", "0.99")),
+                parseMix(System.getProperty("load.mix", "transfer=70,withdraw=5,balance=25")),
+                Integer.getInteger("load.maxInFlight", 10_000),
+                Long.getLong("load.maxP99Millis", 0L)
+        );
+    }
+
+    private static Map<Operation, Integer> parseMix(String mixStr) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : mixStr.split(",")) {
+            String[] keyValue = entry.trim().split("=");
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Malformed load.mix entry: " + entry);
+            }
+            mix.put(Operation.valueOf(keyValue[0].trim().toUpperCase()), Integer.parseInt(keyValue[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("load.mix should have at least one positive weight");
+        }
+        return mix;
+    }
+
+    enum Operation {
+        TRANSFER, WITHDRAW, BALANCE
+    }
+}
@@ -0,0 +1,335 @@
+package money.boku.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import money.boku.Main;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the service.
+ * <p>
+ * Requests are sent according to a fixed schedule derived from {@code load.rate}, regardless of how fast the server
+ * responds. Latency of every request is measured from the moment it was <i>supposed</i> to be sent, so a stalled
+ * server shows up in the percentiles instead of silently lowering the offered load (coordinated omission).
+ * <p>
+ * After the run all withdrawals are awaited to reach a final state and the sum of all balances is compared with
+ * the money that was put into the system minus completed withdrawals. The process exits with non-zero code if money
+ * is not conserved, if any request failed unexpectedly or if p99 latency exceeds {@code load.maxP99Millis}.
+ * See {@link LoadConfig} for all supported properties.
+ */
+public class LoadTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // Covers everything from 1 microsecond to 1 minute with 3 significant digits.
+    private static final long MAX_TRACKABLE_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // Stub withdrawal service completes requests within 10 seconds.
+    private static final Duration WITHDRAWAL_SETTLE_TIMEOUT = Duration.ofSeconds(30);
+    // Gives WithdrawalRequestWatcher enough time to return money for failed withdrawals.
+    private static final Duration WATCHER_GRACE_PERIOD = Duration.ofMillis(500);
+
+    private final LoadConfig config;
+    private final URI baseUri;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<LoadConfig.Operation, OperationStats> stats = new EnumMap<>(LoadConfig.Operation.class);
+    private final Queue<WithdrawalRecord> withdrawals = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ZipfSampler accountSampler;
+    private final LoadConfig.Operation[] operations;
+    private final int[] cumulativeWeights;
+    private List<String> accountIds;
+
+    LoadTest(LoadConfig config, URI baseUri) {
+        this.config = config;
+        this.baseUri = baseUri;
+        this.accountSampler = new ZipfSampler(config.accounts(), config.skew());
+        this.operations = config.mix().keySet().toArray(new LoadConfig.Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += config.mix().get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+        for (LoadConfig.Operation operation : LoadConfig.Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.fromSystemProperties();
+        Javalin javalin = null;
+        URI baseUri;
+        if (config.url() == null) {
+            javalin = Main.javalinApp().start(0);
+            baseUri = URI.create("http://localhost:" + javalin.port());
+        } else {
+            baseUri = URI.create(config.url());
+        }
+        boolean passed;
+        try {
+            passed = new LoadTest(config, baseUri).run();
+        } finally {
+            if (javalin != null) {
+                javalin.stop();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Executes the whole run and prints the report.
+     *
+     * @return whether the run has passed all the gates
+     */
+    boolean run() throws IOException, InterruptedException {
+        System.out.printf("Target %s: %d accounts, %d req/s, warmup %ds, duration %ds, skew %.2f, mix %s%n",
+                baseUri, config.accounts(), config.rate(), config.warmup().toSeconds(), config.duration().toSeconds(),
+                config.skew(), config.mix());
+        accountIds = openAccounts();
+        long elapsedNanos = generateLoad();
+        awaitInFlight();
+        boolean latencyPassed = report(elapsedNanos);
+        boolean moneyConserved = checkConservation();
+        long unexpected = stats.values().stream().mapToLong(s -> s.errors.sum() + s.unavailable.sum() + s.dropped.sum()).sum();
+        if (unexpected > 0) {
+            System.out.printf("FAILED: %d requests failed unexpectedly, were refused as unavailable or were dropped%n", unexpected);
+        }
+        return latencyPassed && moneyConserved && unexpected == 0;
+    }
+
+    private List<String> openAccounts() {
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>(config.accounts());
+        for (int i = 0; i < config.accounts(); i++) {
+            HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/open-account?initialBalance=" + config.initialBalance()))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            futures.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        List<String> ids = new ArrayList<>(config.accounts());
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            HttpResponse<String> response = future.join();
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Failed to open account, status " + response.statusCode());
+            }
+            ids.add(response.body());
+        }
+        return ids;
+    }
+
+    /**
+     * Sends requests according to the schedule. Returns length of the recorded (post-warmup) part of the run.
+     */
+    private long generateLoad() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / config.rate();
+        long start = System.nanoTime();
+        long recordFrom = start + config.warmup().toNanos();
+        long end = recordFrom + config.duration().toNanos();
+        for (long i = 0; ; i++) {
+            long intendedStart = start + i * intervalNanos;
+            if (intendedStart >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+            fire(nextOperation(), intendedStart, intendedStart >= recordFrom);
+        }
+        return end - recordFrom;
+    }
+
+    private void fire(LoadConfig.Operation operation, long intendedStart, boolean recorded) {
+        OperationStats operationStats = stats.get(operation);
+        if (inFlight.incrementAndGet() > config.maxInFlight()) {
+            inFlight.decrementAndGet();
+            if (recorded) {
+                operationStats.dropped.increment();
+            }
+            return;
+        }
+        BigDecimal amount = BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(1, 11));
+        HttpRequest request = switch (operation) {
+            case TRANSFER -> {
+                int from = accountSampler.next();
+                int to = accountSampler.next();
+                while (to == from) {
+                    to = ThreadLocalRandom.current().nextInt(accountIds.size());
+                }
+                yield post("/transfer", "{ \"from\": \"%s\", \"to\": \"%s\", \"amount\": %s }"
+                        .formatted(accountIds.get(from), accountIds.get(to), amount));
+            }
+            case WITHDRAW -> post("/withdraw", "{ \"accountId\": \"%s\", \"withdrawalAddress\": \"load-test\", \"amount\": %s }"
+                    .formatted(accountIds.get(accountSampler.next()), amount));
+            case BALANCE -> HttpRequest.newBuilder(baseUri.resolve("/balance/" + accountIds.get(accountSampler.next())))
+                    .GET()
+                    .build();
+        };
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            inFlight.decrementAndGet();
+            if (response != null && operation == LoadConfig.Operation.WITHDRAW && response.statusCode() == 200) {
+                withdrawals.add(new WithdrawalRecord(parseWithdrawalId(response.body()), amount));
+            }
+            if (!recorded) {
+                return;
+            }
+            operationStats.latency.recordValue(Math.min(System.nanoTime() - intendedStart, MAX_TRACKABLE_LATENCY_NANOS));
+            if (error != null) {
+                operationStats.errors.increment();
+            } else if (response.statusCode() == 200) {
+                operationStats.ok.increment();
+            } else if (response.statusCode() == 400) {
+                // Not enough money on the account is a legitimate outcome under random load.
+                operationStats.rejected.increment();
+            } else if (response.statusCode() == 429) {
+                // So is hitting velocity limits, if the server has them configured.
+                operationStats.limited.increment();
+            } else if (response.statusCode() == 503) {
+                // Node or replica can't serve the request; reported apart from errors to tell overload from bugs.
+                operationStats.unavailable.increment();
+            } else {
+                operationStats.errors.increment();
+            }
+        });
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private LoadConfig.Operation nextOperation() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + MAX_TRACKABLE_LATENCY_NANOS;
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private boolean report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        boolean passed = true;
+        System.out.printf("%-9s %9s %9s %9s %9s %11s %7s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operation", "sent", "ok", "rejected", "limited", "unavailable", "errors", "dropped", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<LoadConfig.Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            Histogram h = s.latency;
+            if (h.getTotalCount() == 0 && s.dropped.sum() == 0) {
+                continue;
+            }
+            System.out.printf("%-9s %9d %9d %9d %9d %11d %7d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().name().toLowerCase(),
+                    h.getTotalCount() + s.dropped.sum(), s.ok.sum(), s.rejected.sum(), s.limited.sum(), s.unavailable.sum(),
+                    s.errors.sum(), s.dropped.sum(),
+                    h.getTotalCount() / seconds,
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)), millis(h.getMaxValue()));
+            if (config.maxP99Millis() > 0 && millis(h.getValueAtPercentile(99)) > config.maxP99Millis()) {
+                System.out.printf("FAILED: %s p99 latency exceeds %d ms%n", entry.getKey().name().toLowerCase(), config.maxP99Millis());
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Checks that money is neither created nor destroyed: sum of all balances should be equal to the sum of initial
+     * balances minus completed withdrawals. Failed withdrawals should have been returned to the accounts.
+     */
+    private boolean checkConservation() throws IOException, InterruptedException {
+        BigDecimal completedWithdrawals = BigDecimal.ZERO;
+        long deadline = System.nanoTime() + WITHDRAWAL_SETTLE_TIMEOUT.toNanos();
+        for (WithdrawalRecord withdrawal : withdrawals) {
+            String state;
+            do {
+                HttpResponse<String> response = httpClient.send(
+                        HttpRequest.newBuilder(baseUri.resolve("/withdraw/%s/state".formatted(withdrawal.id()))).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                state = objectMapper.readTree(response.body()).get("state").asText();
+                if ("PROCESSING".equals(state)) {
+                    if (System.nanoTime() > deadline) {
+                        System.out.println("FAILED: withdrawals did not settle in " + WITHDRAWAL_SETTLE_TIMEOUT);
+                        return false;
+                    }
+                    Thread.sleep(50);
+                }
+            } while ("PROCESSING".equals(state));
+            if ("COMPLETED".equals(state)) {
+                completedWithdrawals = completedWithdrawals.add(withdrawal.amount());
+            }
+        }
+        Thread.sleep(WATCHER_GRACE_PERIOD.toMillis());
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (String accountId : accountIds) {
+            HttpResponse<String> response = httpClient.send(
+                    HttpRequest.newBuilder(baseUri.resolve("/balance/" + accountId)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            total = total.add(new BigDecimal(response.body()));
+        }
+        BigDecimal expected = config.initialBalance().multiply(BigDecimal.valueOf(config.accounts())).subtract(completedWithdrawals);
+        boolean conserved = total.compareTo(expected) == 0;
+        System.out.printf("Conservation: %s (balances %s, expected %s, withdrawn %s in %d withdrawals)%n",
+                conserved ? "OK" : "FAILED", total, expected, completedWithdrawals, withdrawals.size());
+        return conserved;
+    }
+
+    private static String parseWithdrawalId(String body) {
+        try {
+            JsonNode node = objectMapper.readTree(body);
+            return node.get("withdrawalId").asText();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected withdrawal response: " + body, e);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static class OperationStats {
+        private final Histogram latency = new ConcurrentHistogram(MAX_TRACKABLE_LATENCY_NANOS, 3);
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder limited = new LongAdder();
+        private final LongAdder unavailable = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+    }
+
+    private record WithdrawalRecord(String id, BigDecimal amount) {
+    }
+}
@@ -0,0 +1,35 @@
+package money.boku.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks indexes from {@code [0, n)} following Zipf distribution, so that a few "hot" accounts receive most of the
+ * traffic. Cumulative distribution is precomputed once, sampling is a binary search.
+ */
+class ZipfSampler {
+    private final double[] cdf;
+
+    ZipfSampler(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n should be positive");
+        }
+        cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+    }
+
+    int next() {
+        double p = ThreadLocalRandom.current().nextDouble();
+        int idx = Arrays.binarySearch(cdf, p);
+        // binarySearch returns (-(insertion point) - 1) when exact value is absent
+        idx = idx >= 0 ? idx : -idx - 1;
+        return Math.min(idx, cdf.length - 1);
+    }
+}
@@ -0,0 +1,84 @@
+package money.boku.operations.hold;
+
+import money.boku.IdGenerator;
+import money.boku.account.AccountDatastore;
+import money.boku.account.Flow;
+import money.boku.account.InMemoryAccountDatastore;
+import money.boku.history.SegmentedTransactionHistory;
+import money.boku.operations.fx.ExchangeRateCache;
+import money.boku.operations.limits.VelocityLimitExceededException;
+import money.boku.operations.limits.VelocityLimiter;
+import money.boku.operations.limits.VelocityLimits;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HoldServiceTest {
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    private final AccountDatastore accountDatastore = new InMemoryAccountDatastore();
+    private final HoldService holdService = new HoldService(accountDatastore, new SegmentedTransactionHistory(), new ExchangeRateCache(),
+            new VelocityLimiter(new VelocityLimits(BigDecimal.valueOf(50), null)), IdGenerator.RANDOM);
+
+    @Test
+    public void internalHoldIsOnlyEndedByItsOperation() throws Exception {
+        UUID account = accountDatastore.createNewAccount(BigDecimal.valueOf(100), EUR).getId();
+        UUID receiver = accountDatastore.createNewAccount(BigDecimal.ZERO, EUR).getId();
+        Hold hold = holdService.reserveInternal(account, BigDecimal.valueOf(30));
+        assertThat(hold.internal()).isTrue();
+
+        assertThatThrownBy(() -> holdService.capture(hold.id(), receiver, null)).isInstanceOf(InternalHoldException.class);
+        assertThatThrownBy(() -> holdService.release(hold.id())).isInstanceOf(InternalHoldException.class);
+        assertThat(accountDatastore.getAccount(account).getHeld()).isEqualByComparingTo("30");
+
+        holdService.captureInternal(hold.id());
+        assertThat(accountDatastore.getAccount(account).getBalance()).isEqualByComparingTo("70");
+        assertThat(accountDatastore.getAccount(account).getHeld()).isEqualByComparingTo("0");
+        assertThat(accountDatastore.getAccount(receiver).getBalance()).isEqualByComparingTo("0");
+        assertThatThrownBy(() -> holdService.releaseInternal(hold.id())).isInstanceOf(HoldNotFoundException.class);
+    }
+
+    @Test
+    public void orphanedHoldIsOnlyEndedByAdmin() throws Exception {
+        UUID account = accountDatastore.createNewAccount(BigDecimal.valueOf(100), EUR).getId();
+        // funds held by the old primary
+        accountDatastore.reserve(account, BigDecimal.valueOf(30), Flow.WITHDRAWAL);
+        Hold orphaned = holdService.adoptOrphaned(account, BigDecimal.valueOf(30));
+        Hold regular = holdService.reserve(account, BigDecimal.TEN, 0);
+        assertThat(holdService.getOrphaned()).containsExactly(orphaned);
+        assertThat(accountDatastore.getAccount(account).getHeld()).isEqualByComparingTo("40");
+
+        assertThatThrownBy(() -> holdService.release(orphaned.id())).isInstanceOf(InternalHoldException.class);
+        assertThatThrownBy(() -> holdService.releaseOrphaned(regular.id())).isInstanceOf(HoldNotFoundException.class);
+
+        holdService.releaseOrphaned(orphaned.id());
+        assertThat(accountDatastore.getAccount(account).getBalance()).isEqualByComparingTo("90");
+        assertThat(accountDatastore.getAccount(account).getHeld()).isEqualByComparingTo("10");
+        assertThat(holdService.getOrphaned()).isEmpty();
+    }
+
+    @Test
+    public void captureIntoAnotherAccountCountsTowardsVelocityLimits() throws Exception {
+        UUID account = accountDatastore.createNewAccount(BigDecimal.valueOf(100), EUR).getId();
+        UUID receiver = accountDatastore.createNewAccount(BigDecimal.ZERO, EUR).getId();
+        // holding money doesn't move it, so neither hold counts yet
+        Hold first = holdService.reserve(account, BigDecimal.valueOf(40), 0);
+        Hold second = holdService.reserve(account, BigDecimal.valueOf(40), 0);
+
+        holdService.capture(first.id(), receiver, null);
+        assertThatThrownBy(() -> holdService.capture(second.id(), receiver, BigDecimal.valueOf(20))).isInstanceOf(VelocityLimitExceededException.class);
+        // rejected capture leaves the hold as it was
+        assertThat(holdService.get(second.id())).isEqualTo(second);
+        assertThat(accountDatastore.getAccount(account).getHeld()).isEqualByComparingTo("40");
+
+        holdService.capture(second.id(), receiver, BigDecimal.TEN);
+        assertThat(accountDatastore.getAccount(account).getBalance()).isEqualByComparingTo("50");
+        assertThat(accountDatastore.getAccount(account).getHeld()).isEqualByComparingTo("0");
+        assertThat(accountDatastore.getAccount(receiver).getBalance()).isEqualByComparingTo("50");
+    }
+}
@@ -0,0 +1,87 @@
+package money.boku.operations.limits;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class VelocityLimiterTest {
+    private final AtomicLong clock = new AtomicLong(Duration.ofDays(10).toMillis());
+    private final UUID account = UUID.randomUUID();
+
+    @Test
+    public void hourlyLimitSlidesWithTime() throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter(new VelocityLimits(BigDecimal.valueOf(100), null), clock::get);
+        limiter.record(account, BigDecimal.valueOf(60));
+        clock.addAndGet(Duration.ofMinutes(30).toMillis());
+        limiter.record(account, BigDecimal.valueOf(40));
+        assertThatThrownBy(() -> limiter.record(account, BigDecimal.ONE)).isInstanceOf(VelocityLimitExceededException.class);
+        // other accounts are not affected
+        limiter.record(UUID.randomUUID(), BigDecimal.valueOf(100));
+
+        // first amount leaves the window, second one is still in it
+        clock.addAndGet(Duration.ofMinutes(31).toMillis());
+        limiter.record(account, BigDecimal.valueOf(60));
+        assertThatThrownBy(() -> limiter.record(account, BigDecimal.ONE)).isInstanceOf(VelocityLimitExceededException.class);
+
+        clock.addAndGet(Duration.ofDays(2).toMillis());
+        limiter.record(account, BigDecimal.valueOf(100));
+    }
+
+    @Test
+    public void exceedingEitherLimitRecordsNothing() throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter(new VelocityLimits(BigDecimal.valueOf(100), BigDecimal.valueOf(150)), clock::get);
+        limiter.record(account, BigDecimal.valueOf(90));
+        assertThatThrownBy(() -> limiter.record(account, BigDecimal.valueOf(20))).isInstanceOf(VelocityLimitExceededException.class);
+        limiter.record(account, BigDecimal.TEN);
+
+        clock.addAndGet(Duration.ofHours(2).toMillis());
+        assertThatThrownBy(() -> limiter.record(account, BigDecimal.valueOf(51))).isInstanceOf(VelocityLimitExceededException.class);
+        limiter.record(account, BigDecimal.valueOf(50));
+        assertThatThrownBy(() -> limiter.record(account, BigDecimal.ONE)).isInstanceOf(VelocityLimitExceededException.class);
+    }
+
+    @Test
+    public void unrecordedAmountIsTakenBackUnlessItLeftTheWindow() throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter(new VelocityLimits(BigDecimal.valueOf(100), null), clock::get);
+        long recordedAt = limiter.record(account, BigDecimal.valueOf(100));
+        clock.addAndGet(Duration.ofMinutes(5).toMillis());
+        limiter.unrecord(account, BigDecimal.valueOf(100), recordedAt);
+        recordedAt = limiter.record(account, BigDecimal.valueOf(100));
+
+        clock.addAndGet(Duration.ofHours(2).toMillis());
+        limiter.record(account, BigDecimal.valueOf(100));
+        // amount recorded two hours ago is not subtracted from the current window
+        limiter.unrecord(account, BigDecimal.valueOf(100), recordedAt);
+        assertThatThrownBy(() -> limiter.record(account, BigDecimal.ONE)).isInstanceOf(VelocityLimitExceededException.class);
+    }
+
+    @Test
+    public void windowsAreEvictedOnceTheirAmountsLeave() throws Exception {
+        VelocityLimiter limiter = new VelocityLimiter(new VelocityLimits(BigDecimal.valueOf(100), null), clock::get);
+        limiter.record(account, BigDecimal.valueOf(100));
+        UUID other = UUID.randomUUID();
+        limiter.record(other, BigDecimal.valueOf(100));
+        assertThat(limiter.accountCount()).isEqualTo(2);
+
+        // hourly limit no longer applies, but the amount is still within the day
+        clock.addAndGet(Duration.ofHours(2).toMillis());
+        limiter.record(other, BigDecimal.TEN);
+        limiter.sweep(clock.get());
+        assertThat(limiter.accountCount()).isEqualTo(2);
+
+        clock.addAndGet(Duration.ofHours(23).toMillis());
+        limiter.record(other, BigDecimal.TEN);
+        limiter.sweep(clock.get());
+        assertThat(limiter.accountCount()).isEqualTo(1);
+        // evicted account starts over
+        limiter.record(account, BigDecimal.valueOf(100));
+        assertThatThrownBy(() -> limiter.record(account, BigDecimal.ONE)).isInstanceOf(VelocityLimitExceededException.class);
+        assertThat(limiter.accountCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,62 @@
+package money.boku.operations.scheduled;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTest {
+    @Test
+    public void dueDeadlinesAreNotScheduled() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 1_000);
+        assertThat(wheel.schedule(995, "past")).isFalse();
+        assertThat(wheel.schedule(1_005, "current tick")).isFalse();
+        assertThat(wheel.schedule(1_010, "next tick")).isTrue();
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void timersFireNotBeforeDeadlineAndAtMostOneTickLate() {
+        long tick = 10;
+        TimingWheel<Long> wheel = new TimingWheel<>(tick, 8, 0);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            // spans several levels: 8 ticks, 64 ticks, 512 ticks, ...
+            long deadline = tick + random.nextLong(1_000_000);
+            deadlines.add(deadline);
+            assertThat(wheel.schedule(deadline, deadline)).isTrue();
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (long now = 0; now <= 1_000_000 + tick; now += 7) {
+            long currentNow = now;
+            wheel.advance(now, deadline -> {
+                assertThat(deadline).isLessThanOrEqualTo(currentNow);
+                assertThat(currentNow - deadline).isLessThan(tick + 7);
+                fired.add(deadline);
+            });
+        }
+        assertThat(fired).hasSameSizeAs(deadlines).containsOnlyElementsOf(deadlines);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void timersScheduledAfterAdvanceUseCurrentTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+        wheel.advance(12_345, s -> {
+        });
+        List<String> fired = new ArrayList<>();
+        assertThat(wheel.schedule(12_345 + 100, "soon")).isTrue();
+        assertThat(wheel.schedule(12_345 + 100_000, "later")).isTrue();
+        wheel.advance(12_345 + 99, fired::add);
+        assertThat(fired).isEmpty();
+        wheel.advance(12_345 + 110, fired::add);
+        assertThat(fired).containsExactly("soon");
+        wheel.advance(12_345 + 100_010, fired::add);
+        assertThat(fired).containsExactly("soon", "later");
+    }
+}
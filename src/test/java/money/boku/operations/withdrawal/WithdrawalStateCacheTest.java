@@ -0,0 +1,30 @@
+package money.boku.operations.withdrawal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WithdrawalStateCacheTest {
+    private final WithdrawalStateCache cache = new WithdrawalStateCache();
+
+    @Test
+    public void waitersAreForgottenOnceAllTimeOut() throws Exception {
+        WithdrawalService.WithdrawalId unwatched = new WithdrawalService.WithdrawalId(UUID.randomUUID());
+        CompletableFuture<WithdrawalService.WithdrawalState> shortWait = cache.awaitTerminal(unwatched, 10, WithdrawalService.WithdrawalState.PROCESSING);
+        CompletableFuture<WithdrawalService.WithdrawalState> longWait = cache.awaitTerminal(unwatched, 60_000, WithdrawalService.WithdrawalState.PROCESSING);
+
+        assertThat(shortWait.get()).isEqualTo(WithdrawalService.WithdrawalState.PROCESSING);
+        // the other caller still waits for the same withdrawal
+        assertThat(cache.waiterCount()).isEqualTo(1);
+        cache.put(unwatched, WithdrawalService.WithdrawalState.COMPLETED);
+        assertThat(longWait.get()).isEqualTo(WithdrawalService.WithdrawalState.COMPLETED);
+        assertThat(cache.waiterCount()).isEqualTo(0);
+
+        WithdrawalService.WithdrawalId another = new WithdrawalService.WithdrawalId(UUID.randomUUID());
+        assertThat(cache.awaitTerminal(another, 10, WithdrawalService.WithdrawalState.PROCESSING).get()).isEqualTo(WithdrawalService.WithdrawalState.PROCESSING);
+        assertThat(cache.waiterCount()).isEqualTo(0);
+    }
+}